@@ -0,0 +1,113 @@
+package com.shopwave.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopwave.service.ProductService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Caffeine-backed caches, each with its own size bound and TTL.
+ *
+ *  - products / products-by-slug: entity by id / slug, evicted per key after
+ *    a product commits (see ProductCacheInvalidator), so one edit no longer
+ *    flushes the rest. Loads are single-flight and hot keys are refreshed
+ *    early, before they expire (see {@link EarlyRefreshCaffeineCache}).
+ *    Callers must use {@code @Cacheable(sync = true)} for both.
+ *  - featured-products / bestseller-products / trending-products: one list each, refreshed in
+ *    the background once older than {@code refresh}; readers keep getting
+ *    the previous list while it reloads (stale-while-revalidate). The TTL
+ *    only drops a list nobody has asked for in a while.
+ *
+ * All caches record stats; Spring Boot binds them to Micrometer, so hit/miss
+ * counts, evictions and load time show up under /actuator/metrics/cache.*.
+ */
+@Configuration
+public class CacheConfig {
+
+    public static final String PRODUCTS = "products";
+    public static final String PRODUCTS_BY_SLUG = "products-by-slug";
+    public static final String FEATURED_PRODUCTS = "featured-products";
+    public static final String BESTSELLER_PRODUCTS = "bestseller-products";
+    public static final String TRENDING_PRODUCTS = "trending-products";
+
+    @Value("${cache.products.max-size:10000}")
+    private long productsMaxSize;
+
+    @Value("${cache.products.ttl:30m}")
+    private Duration productsTtl;
+
+    @Value("${cache.early-refresh.beta:1.0}")
+    private double earlyRefreshBeta;
+
+    @Value("${cache.lists.refresh:1m}")
+    private Duration listsRefresh;
+
+    @Value("${cache.lists.ttl:30m}")
+    private Duration listsTtl;
+
+    @Value("${cache.default.max-size:1000}")
+    private long defaultMaxSize;
+
+    @Value("${cache.default.ttl:10m}")
+    private Duration defaultTtl;
+
+    @Bean
+    public CacheManager cacheManager(ObjectProvider<ProductService> productService) {
+        CaffeineCacheManager manager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                if (name.equals(PRODUCTS) || name.equals(PRODUCTS_BY_SLUG)) {
+                    return new EarlyRefreshCaffeineCache(name, cache, isAllowNullValues(), earlyRefreshBeta);
+                }
+                return super.adaptCaffeineCache(name, cache);
+            }
+        };
+        // Any cache not registered below
+        manager.setCaffeine(Caffeine.newBuilder()
+            .maximumSize(defaultMaxSize)
+            .expireAfterWrite(defaultTtl)
+            .recordStats());
+
+        manager.registerCustomCache(PRODUCTS, Caffeine.newBuilder()
+            .maximumSize(productsMaxSize)
+            .expireAfterWrite(productsTtl)
+            .recordStats()
+            .build());
+
+        manager.registerCustomCache(PRODUCTS_BY_SLUG, Caffeine.newBuilder()
+            .maximumSize(productsMaxSize)
+            .expireAfterWrite(productsTtl)
+            .recordStats()
+            .build());
+
+        // The loaders call the uncached queries; keys are SimpleKey.EMPTY (no-arg methods).
+        manager.registerCustomCache(FEATURED_PRODUCTS, Caffeine.newBuilder()
+            .maximumSize(1)
+            .refreshAfterWrite(listsRefresh)
+            .expireAfterWrite(listsTtl)
+            .recordStats()
+            .build(key -> productService.getObject().loadFeaturedProducts()));
+
+        manager.registerCustomCache(BESTSELLER_PRODUCTS, Caffeine.newBuilder()
+            .maximumSize(1)
+            .refreshAfterWrite(listsRefresh)
+            .expireAfterWrite(listsTtl)
+            .recordStats()
+            .build(key -> productService.getObject().loadBestsellerProducts()));
+
+        manager.registerCustomCache(TRENDING_PRODUCTS, Caffeine.newBuilder()
+            .maximumSize(1)
+            .refreshAfterWrite(listsRefresh)
+            .expireAfterWrite(listsTtl)
+            .recordStats()
+            .build(key -> productService.getObject().loadTrendingProducts()));
+        return manager;
+    }
+}
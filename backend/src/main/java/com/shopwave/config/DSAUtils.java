@@ -8,6 +8,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 
 /**
  * DSAUtils — 10 data structures / algorithms with production business use.
@@ -36,6 +37,10 @@ public class DSAUtils {
     /**
      * Thread-safe Trie using ReadWriteLock.
      * Multiple concurrent reads allowed; writes are exclusive.
+     *
+     * Superseded on the request path by {@link com.shopwave.index.CompactTrie}
+     * (radix trie, primitive char edges, lock-free reads). Kept as the
+     * reference implementation.
      */
     public static class Trie {
         private final TrieNode root = new TrieNode();
@@ -86,6 +91,8 @@ public class DSAUtils {
 
     // ════════════════════════════════════════════════════════════
     // 2. MERGE SORT — Sort Products by Price   O(n log n) stable
+    //    Category listings use the primitive columns and presorted
+    //    permutations in index.ColumnarCatalogIndex instead (2–5, 10).
     // ════════════════════════════════════════════════════════════
     public static List<Product> mergeSortByPrice(List<Product> products, boolean ascending) {
         if (products.size() <= 1) return products;
@@ -216,13 +223,45 @@ public class DSAUtils {
     // 7. GRAPH + BFS — Related Product Recommendations   O(V+E)
     //    BFS chosen: explores closest relationships first (depth 1
     //    neighbors are more related than depth 2).
+    //    Edges are weighted by how often the two products were bought
+    //    together; strongestNeighbours() is a bounded top-k over one
+    //    adjacency map, O(d log k) for degree d.
     // ════════════════════════════════════════════════════════════
+
+    /**
+     * Mutable accumulator for co-purchase weights. Superseded on the request
+     * path by {@link com.shopwave.index.CsrGraph}, an immutable primitive-array
+     * snapshot built from {@link #forEachEdge}.
+     */
     public static class ProductGraph {
-        private final Map<Long, List<Long>> adj = new ConcurrentHashMap<>();
+        /** product → (neighbour → co-purchase weight); symmetric until {@link #prune} caps degrees. */
+        private final Map<Long, Map<Long, Integer>> adj = new ConcurrentHashMap<>();
 
         public void addEdge(Long a, Long b) {
-            adj.computeIfAbsent(a, k -> Collections.synchronizedList(new ArrayList<>())).add(b);
-            adj.computeIfAbsent(b, k -> Collections.synchronizedList(new ArrayList<>())).add(a);
+            addEdge(a, b, 1);
+        }
+
+        /** Adds {@code weight} to the undirected edge a–b. Self-loops are ignored. */
+        public void addEdge(Long a, Long b, int weight) {
+            if (a.equals(b)) return;
+            adj.computeIfAbsent(a, k -> new ConcurrentHashMap<>()).merge(b, weight, Integer::sum);
+            adj.computeIfAbsent(b, k -> new ConcurrentHashMap<>()).merge(a, weight, Integer::sum);
+        }
+
+        public int weight(Long a, Long b) {
+            return adj.getOrDefault(a, Collections.emptyMap()).getOrDefault(b, 0);
+        }
+
+        public int nodeCount() { return adj.size(); }
+
+        @FunctionalInterface
+        public interface EdgeVisitor {
+            void edge(long from, long to, int weight);
+        }
+
+        /** Visits every directed edge once; a weakly consistent view if edges are being added. */
+        public void forEachEdge(EdgeVisitor visitor) {
+            adj.forEach((from, edges) -> edges.forEach((to, w) -> visitor.edge(from, to, w)));
         }
 
         public List<Long> getRelatedProducts(Long productId, int maxDepth) {
@@ -239,7 +278,7 @@ public class DSAUtils {
                 int d = depth.get(current);
                 if (d > 0) result.add(current);
                 if (d < maxDepth) {
-                    for (Long neighbor : adj.getOrDefault(current, Collections.emptyList())) {
+                    for (Long neighbor : adj.getOrDefault(current, Collections.emptyMap()).keySet()) {
                         if (visited.add(neighbor)) {
                             queue.add(neighbor);
                             depth.put(neighbor, d + 1);
@@ -249,6 +288,55 @@ public class DSAUtils {
             }
             return result;
         }
+
+        public List<Long> strongestNeighbours(Long productId, int k) {
+            return strongestNeighbours(productId, k, 1, id -> true);
+        }
+
+        /**
+         * Up to {@code k} direct neighbours with weight at least {@code minWeight}
+         * that pass {@code include}, heaviest first, ties by lower id.
+         */
+        public List<Long> strongestNeighbours(Long productId, int k, int minWeight, Predicate<Long> include) {
+            Map<Long, Integer> edges = adj.get(productId);
+            if (edges == null || k <= 0) return new ArrayList<>();
+            PriorityQueue<Map.Entry<Long, Integer>> top = new PriorityQueue<>(WEAKEST_FIRST);
+            for (Map.Entry<Long, Integer> e : edges.entrySet()) {
+                if (e.getValue() < minWeight || !include.test(e.getKey())) continue;
+                top.offer(Map.entry(e.getKey(), e.getValue()));
+                if (top.size() > k) top.poll();
+            }
+            List<Long> out = new ArrayList<>(top.size());
+            while (!top.isEmpty()) out.add(top.poll().getKey());
+            Collections.reverse(out);
+            return out;
+        }
+
+        /**
+         * Drops the long tail: edges lighter than {@code minWeight}, then all but
+         * each product's {@code maxDegree} heaviest edges. The cap is applied per
+         * side, so a bestseller keeps a short list while a niche product can still
+         * point at it. Not atomic with respect to concurrent addEdge calls; prune
+         * a graph before publishing it.
+         */
+        public void prune(int minWeight, int maxDegree) {
+            for (Iterator<Map.Entry<Long, Map<Long, Integer>>> it = adj.entrySet().iterator(); it.hasNext(); ) {
+                Map<Long, Integer> edges = it.next().getValue();
+                edges.values().removeIf(w -> w < minWeight);
+                if (edges.size() > maxDegree) {
+                    List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(edges.entrySet());
+                    ranked.sort(WEAKEST_FIRST.reversed());
+                    for (Map.Entry<Long, Integer> e : ranked.subList(maxDegree, ranked.size())) {
+                        edges.remove(e.getKey());
+                    }
+                }
+                if (edges.isEmpty()) it.remove();
+            }
+        }
+
+        private static final Comparator<Map.Entry<Long, Integer>> WEAKEST_FIRST =
+            Map.Entry.<Long, Integer>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Integer>comparingByKey().reversed());
     }
 
     // ════════════════════════════════════════════════════════════
@@ -267,7 +355,7 @@ public class DSAUtils {
     // 9. HASH MAP (ConcurrentHashMap) — O(1) SKU Lookup
     //    FIXED: was plain HashMap in ProductService singleton (data race).
     //    buildSkuIndex() used at startup; incremental updates via
-    //    ConcurrentHashMap in ProductService.
+    //    ConcurrentHashMap in ProductSearchService.
     // ════════════════════════════════════════════════════════════
     public static Map<String, Product> buildSkuIndex(List<Product> products) {
         Map<String, Product> index = new ConcurrentHashMap<>();
@@ -281,6 +369,7 @@ public class DSAUtils {
     // 10. QUICK SELECT — Find Median Price Product   O(n) avg, O(n²) worst
     //     Works on a defensive copy to avoid mutating caller's list.
     //     For production, add shuffle before partition to avoid worst-case.
+    //     Per-category percentiles: ColumnarCatalogIndex.percentile(), O(1).
     // ════════════════════════════════════════════════════════════
     public static Product findMedianPriceProduct(List<Product> products) {
         if (products == null || products.isEmpty()) return null;
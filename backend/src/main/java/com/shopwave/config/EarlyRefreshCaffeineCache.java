@@ -0,0 +1,92 @@
+package com.shopwave.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * CaffeineCache with single-flight loads and probabilistic early refresh.
+ *
+ *  - Single flight: {@code @Cacheable(sync = true)} reads go through
+ *    {@link #get(Object, Callable)}, which Caffeine computes atomically per
+ *    key, so concurrent misses for one key run the loader once and share it.
+ *  - Early refresh (XFetch): a read recomputes the entry ahead of its TTL
+ *    with probability rising towards expiry,
+ *    {@code age + delta · beta · −ln(rand) ≥ ttl}, where delta is the
+ *    cache's recent load time. Hot keys are therefore reloaded by one reader
+ *    shortly before they expire, while every other reader keeps getting the
+ *    current value, instead of all of them missing together at expiry.
+ *
+ * Only one early refresh per key runs at a time; if it fails the current
+ * value is served and the entry simply expires as usual. The refreshed
+ * value replaces the entry only if it is still the one read before
+ * loading, so an eviction that lands while the loader runs is not undone.
+ */
+@Slf4j
+public class EarlyRefreshCaffeineCache extends CaffeineCache {
+
+    private final double beta;
+    private final DoubleSupplier random;
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+    /** Smoothed loader latency (nanos), the XFetch delta. */
+    private volatile long loadNanos;
+
+    public EarlyRefreshCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                                     boolean allowNullValues, double beta) {
+        this(name, cache, allowNullValues, beta, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    EarlyRefreshCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                              boolean allowNullValues, double beta, DoubleSupplier random) {
+        super(name, cache, allowNullValues);
+        this.beta = beta;
+        this.random = random;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (shouldRefreshEarly(key) && refreshing.add(key)) {
+            try {
+                Object current = getNativeCache().getIfPresent(key);
+                T value = timed(valueLoader).call();
+                // Only over the very entry we read: an evict or reload meanwhile (e.g. an
+                // after-commit invalidation) wins, so a pre-commit value is never re-installed
+                Object fresh = toStoreValue(value);
+                getNativeCache().asMap().computeIfPresent(key, (k, v) -> v == current ? fresh : v);
+                return value;
+            } catch (Exception e) {
+                log.warn("Early refresh of {}[{}] failed, serving cached value: {}", getName(), key, e.getMessage());
+            } finally {
+                refreshing.remove(key);
+            }
+        }
+        return super.get(key, timed(valueLoader));
+    }
+
+    private boolean shouldRefreshEarly(Object key) {
+        var expiry = getNativeCache().policy().expireAfterWrite();
+        if (expiry.isEmpty()) return false;
+        Duration age = expiry.get().ageOf(key).orElse(null);
+        if (age == null) return false;
+        long ttl = expiry.get().getExpiresAfter().toNanos();
+        double gap = loadNanos * beta * -Math.log(random.getAsDouble());
+        return age.toNanos() + gap >= ttl;
+    }
+
+    private <T> Callable<T> timed(Callable<T> loader) {
+        return () -> {
+            long start = System.nanoTime();
+            T value = loader.call();
+            long took = System.nanoTime() - start;
+            long prev = loadNanos;
+            loadNanos = prev == 0 ? took : (prev * 7 + took) / 8;
+            return value;
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.shopwave.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.shopwave.model.Category;
+import com.shopwave.model.Coupon;
+import com.shopwave.model.Product;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * Regions for Hibernate's second-level cache (entity and query cache),
+ * held in a Caffeine-backed JCache manager of our own so each region gets a
+ * size bound and TTL.
+ *
+ *  - Product, Category, Coupon: READ_WRITE entity regions. Hibernate updates
+ *    them on entity writes; counter updates issued as native SQL (stock,
+ *    coupon usage) evict their one row instead of the whole region. Writes
+ *    on other replicas arrive via the invalidation bus
+ *    (see SecondLevelCacheInvalidator).
+ *  - Coupon natural ids: code to id, so a lookup by code lands in the
+ *    entity region.
+ *  - query results: category lookups. Hibernate drops a cached result once
+ *    one of its tables is written.
+ *  - update timestamps: backs the query cache; never bounded or expired,
+ *    or stale results could be served.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    @Value("${hibernate-cache.products.max-size:10000}")
+    private long productsMaxSize;
+
+    @Value("${hibernate-cache.reference.max-size:1000}")
+    private long referenceMaxSize;
+
+    @Value("${hibernate-cache.queries.max-size:1000}")
+    private long queriesMaxSize;
+
+    @Value("${hibernate-cache.ttl:30m}")
+    private Duration ttl;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        // A provider of our own, so two contexts in one JVM don't share regions
+        CacheManager manager = new CaffeineCachingProvider()
+            .getCacheManager(URI.create("shopwave-hibernate"), getClass().getClassLoader());
+        region(manager, Product.class.getName(), productsMaxSize, ttl);
+        region(manager, Category.class.getName(), referenceMaxSize, ttl);
+        region(manager, Coupon.class.getName(), referenceMaxSize, ttl);
+        region(manager, Coupon.class.getName() + "##NaturalId", referenceMaxSize, ttl);
+        region(manager, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, queriesMaxSize, ttl);
+        region(manager, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, 0, null);
+        return manager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    /** A maxSize of 0 and a null ttl leave the region unbounded and eternal. */
+    private static void region(CacheManager manager, String name, long maxSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> config = new CaffeineConfiguration<>();
+        config.setStoreByValue(false);
+        if (maxSize > 0) config.setMaximumSize(OptionalLong.of(maxSize));
+        if (ttl != null) config.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        manager.createCache(name, config);
+    }
+}
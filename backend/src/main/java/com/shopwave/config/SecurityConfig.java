@@ -1,8 +1,10 @@
 package com.shopwave.config;
 
+import com.shopwave.security.IdempotencyFilter;
 import com.shopwave.security.JwtAuthFilter;
 import com.shopwave.security.RateLimitFilter;
 import com.shopwave.service.CustomUserDetailsService;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -36,6 +38,7 @@ public class SecurityConfig {
 
     private final JwtAuthFilter jwtAuthFilter;
     private final RateLimitFilter rateLimitFilter;
+    private final IdempotencyFilter idempotencyFilter;
     private final CustomUserDetailsService userDetailsService;
 
     @Value("${cors.allowed-origins:http://localhost:3000,http://localhost:5500,http://127.0.0.1:5500}")
@@ -52,6 +55,9 @@ public class SecurityConfig {
                 // Without this, Spring Security intercepts OPTIONS requests and
                 // returns 403 before the CORS filter can respond with 200.
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                // Async dispatches (SSE order status) resume a request that
+                // was already authorized; the JWT filter doesn't run again
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
                 .requestMatchers("/actuator/health", "/actuator/info").permitAll()
                 .requestMatchers("/auth/**").permitAll()
@@ -62,7 +68,8 @@ public class SecurityConfig {
             )
             .authenticationProvider(authenticationProvider())
             .addFilterBefore(rateLimitFilter, UsernamePasswordAuthenticationFilter.class)
-            .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+            .addFilterAfter(idempotencyFilter, JwtAuthFilter.class);
 
         return http.build();
     }
@@ -4,6 +4,7 @@ import com.shopwave.dto.AddToCartRequest;
 import com.shopwave.exception.ResourceNotFoundException;
 import com.shopwave.model.*;
 import com.shopwave.repository.*;
+import com.shopwave.service.InventoryEngine;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -25,6 +26,7 @@ public class CartController {
     private final CartRepository cartRepository;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final InventoryEngine inventory;
 
     @GetMapping
     @Operation(summary = "Get current user's cart")
@@ -49,7 +51,12 @@ public class CartController {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found: " + productId));
 
-        if (product.getStock() < quantity)
+        // The engine checks live leased + free stock (leasing more if needed); the
+        // entity's stock may be a cached copy
+        boolean available = inventory.isEnabled()
+                ? inventory.ensureAvailable(productId, quantity)
+                : product.getStock() >= quantity;
+        if (!available)
             throw new RuntimeException("Insufficient stock for: " + product.getName());
 
         Cart cart = cartRepository.findByUserId(user.getId())
@@ -2,6 +2,7 @@ package com.shopwave.controller;
 
 import com.shopwave.dto.OrderRequest;
 import com.shopwave.model.Order;
+import com.shopwave.service.OrderPipeline;
 import com.shopwave.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -9,11 +10,15 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.*;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.net.URI;
 import java.util.Map;
 
 @RestController
@@ -23,16 +28,48 @@ import java.util.Map;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderPipeline orderPipeline;
 
+    /**
+     * With {@code Prefer: respond-async} and the pipeline enabled, the order
+     * is queued and answered with 202, its status and a Location to poll;
+     * otherwise it is placed before responding.
+     */
     @PostMapping
     @Operation(summary = "Place an order from cart")
-    public ResponseEntity<Order> placeOrder(
+    public ResponseEntity<?> placeOrder(
             @Valid @RequestBody OrderRequest request,
+            @RequestHeader(value = "Prefer", required = false) String prefer,
             Authentication auth) {
+        if (orderPipeline.isEnabled() && prefer != null && prefer.contains("respond-async")) {
+            OrderPipeline.Status status = orderPipeline.submit(request, auth.getName());
+            URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/orders/requests/{trackingId}").buildAndExpand(status.trackingId()).toUri();
+            return ResponseEntity.accepted()
+                .location(location)
+                .header("Preference-Applied", "respond-async")
+                .body(status);
+        }
         Order order = orderService.placeOrder(request, auth.getName());
         return ResponseEntity.status(HttpStatus.CREATED).body(order);
     }
 
+    @GetMapping("/requests/{trackingId}")
+    @Operation(summary = "Status of an order placed asynchronously")
+    public ResponseEntity<OrderPipeline.Status> getOrderRequest(
+            @PathVariable String trackingId,
+            Authentication auth) {
+        return ResponseEntity.ok(orderPipeline.status(trackingId, auth.getName()));
+    }
+
+    @GetMapping(value = "/requests/{trackingId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Status changes of an order placed asynchronously, as server-sent events")
+    public SseEmitter watchOrderRequest(
+            @PathVariable String trackingId,
+            Authentication auth) {
+        return orderPipeline.watch(trackingId, auth.getName());
+    }
+
     @GetMapping
     @Operation(summary = "Get my orders")
     public ResponseEntity<Page<Order>> getMyOrders(
@@ -1,6 +1,12 @@
 package com.shopwave.controller;
 
+import com.shopwave.dto.CursorPage;
 import com.shopwave.dto.ProductRequest;
+import com.shopwave.dto.StockShardsRequest;
+import com.shopwave.dto.SuggestionRankingRequest;
+import com.shopwave.index.ColumnarCatalogIndex;
+import com.shopwave.index.CompactTrie;
+import com.shopwave.index.FacetIndex;
 import com.shopwave.model.Product;
 import com.shopwave.model.User;
 import com.shopwave.repository.UserRepository;
@@ -16,6 +22,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Set;
 
@@ -51,15 +58,31 @@ public class ProductController {
         return ResponseEntity.ok(productService.searchProducts("", pageable));
     }
 
+    // ── SCROLL ALL PRODUCTS: keyset paging (public) ──────────
+    @GetMapping("/scroll")
+    @Operation(summary = "Cursor-paged active products; pass nextCursor back as cursor for the next slice")
+    public ResponseEntity<CursorPage<Product>> scrollProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir) {
+        if (!ALLOWED_SORT_FIELDS.contains(sortBy)) {
+            sortBy = "createdAt";
+        }
+        return ResponseEntity.ok(productService.scrollProducts(
+                null, sortBy, sortDir.equalsIgnoreCase("asc"), cursor, size));
+    }
+
     // ── GET PRODUCT BY ID (public) ────────────────────────────
     @GetMapping("/{id}")
     @Operation(summary = "Get product by ID")
     public ResponseEntity<Product> getById(@PathVariable Long id, Authentication auth) {
         Product product = productService.getProductById(id);
-        // Track recently viewed per-user when logged in
-        if (auth != null) {
-            userRepository.findByEmail(auth.getName()).ifPresent(user ->
-                productService.trackRecentlyViewed(user.getId(), id, product));
+        productService.trackView(id);
+        // Track recently viewed per-user when logged in; the principal already
+        // carries the id and the write is buffered, so this adds no I/O here
+        if (auth != null && auth.getPrincipal() instanceof User user) {
+            productService.trackRecentlyViewed(user.getId(), id);
         }
         return ResponseEntity.ok(product);
     }
@@ -68,25 +91,44 @@ public class ProductController {
     @GetMapping("/slug/{slug}")
     @Operation(summary = "Get product by slug")
     public ResponseEntity<Product> getBySlug(@PathVariable String slug) {
-        return ResponseEntity.ok(productService.getProductBySlug(slug));
+        Product product = productService.getProductBySlug(slug);
+        productService.trackView(product.getId());
+        return ResponseEntity.ok(product);
     }
 
     // ── SEARCH (public) ───────────────────────────────────────
     @GetMapping("/search")
-    @Operation(summary = "Search products by keyword")
-    public ResponseEntity<Page<Product>> search(
+    @Operation(summary = "Search products by keyword; facets=brand,category,price,freeShipping,rating (or all) adds counts")
+    public ResponseEntity<?> search(
             @RequestParam String q,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String facets) {
         Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(productService.searchProducts(q, pageable));
+        Set<FacetIndex.Facet> requested = FacetIndex.Facet.parse(facets);
+        if (requested.isEmpty() || q.isBlank()) {
+            return ResponseEntity.ok(productService.searchProducts(q, pageable));
+        }
+        return ResponseEntity.ok(productService.searchProducts(q, pageable, requested));
     }
 
     // ── SEARCH SUGGESTIONS / AUTOCOMPLETE (public) ───────────
     @GetMapping("/search/suggestions")
-    @Operation(summary = "Trie-powered autocomplete suggestions")
-    public ResponseEntity<List<String>> suggestions(@RequestParam String prefix) {
-        return ResponseEntity.ok(productService.getSearchSuggestions(prefix));
+    @Operation(summary = "Trie-powered autocomplete suggestions, ranked by popularity")
+    public ResponseEntity<List<String>> suggestions(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "true") boolean fuzzy) {
+        return ResponseEntity.ok(productService.getSearchSuggestions(prefix, fuzzy));
+    }
+
+    // ── SUGGESTION RANKING WEIGHTS (Admin only) ──────────────
+    @PutMapping("/search/suggestions/ranking")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    @Operation(summary = "Update autocomplete ranking weights (stored; re-ranks in place on every replica)")
+    public ResponseEntity<CompactTrie.RankingWeights> updateSuggestionRanking(
+            @Valid @RequestBody SuggestionRankingRequest request) {
+        return ResponseEntity.ok(productService.updateSuggestionWeights(
+                request.getSold(), request.getViews(), request.getRating()));
     }
 
     // ── FEATURED PRODUCTS (public) ───────────────────────────
@@ -103,9 +145,25 @@ public class ProductController {
         return ResponseEntity.ok(productService.getBestsellerProducts());
     }
 
+    // ── TRENDING (public) ─────────────────────────────────────
+    @GetMapping("/trending")
+    @Operation(summary = "Get trending products (recent views and sales, decayed)")
+    public ResponseEntity<List<Product>> getTrending() {
+        return ResponseEntity.ok(productService.getTrendingProducts());
+    }
+
+    // ── FREQUENTLY BOUGHT TOGETHER (public) ──────────────────
+    @GetMapping("/{id}/related")
+    @Operation(summary = "Get products most often bought together with this one")
+    public ResponseEntity<List<Product>> getRelated(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "8") int limit) {
+        return ResponseEntity.ok(productService.getRelatedProducts(id, Math.min(Math.max(limit, 1), 24)));
+    }
+
     // ── RECENTLY VIEWED (auth required) ──────────────────────
     @GetMapping("/recently-viewed")
-    @Operation(summary = "Get recently viewed products (LRU Cache — per user)")
+    @Operation(summary = "Get recently viewed products (most recent first, per user)")
     public ResponseEntity<List<Product>> getRecentlyViewed(Authentication auth) {
         if (auth == null) return ResponseEntity.ok(java.util.Collections.emptyList());
         return userRepository.findByEmail(auth.getName())
@@ -115,13 +173,54 @@ public class ProductController {
 
     // ── BY CATEGORY (public) ─────────────────────────────────
     @GetMapping("/category/{categoryId}")
-    @Operation(summary = "Get products by category")
-    public ResponseEntity<Page<Product>> getByCategory(
+    @Operation(summary = "Get products by category; facets=... adds counts for the filter sidebar")
+    public ResponseEntity<?> getByCategory(
             @PathVariable Long categoryId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String facets) {
         Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(productService.getProductsByCategory(categoryId, pageable));
+        Set<FacetIndex.Facet> requested = FacetIndex.Facet.parse(facets);
+        if (requested.isEmpty()) {
+            return ResponseEntity.ok(productService.getProductsByCategory(categoryId, pageable));
+        }
+        return ResponseEntity.ok(productService.getProductsByCategory(categoryId, pageable, requested));
+    }
+
+    // ── SCROLL CATEGORY: keyset paging (public) ──────────────
+    @GetMapping("/category/{categoryId}/scroll")
+    @Operation(summary = "Cursor-paged active products in a category")
+    public ResponseEntity<CursorPage<Product>> scrollCategory(
+            @PathVariable Long categoryId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir) {
+        if (!ALLOWED_SORT_FIELDS.contains(sortBy)) {
+            sortBy = "createdAt";
+        }
+        return ResponseEntity.ok(productService.scrollProducts(
+                categoryId, sortBy, sortDir.equalsIgnoreCase("asc"), cursor, size));
+    }
+
+    // ── BROWSE CATEGORY: sort + price range (public) ─────────
+    @GetMapping("/category/{categoryId}/browse")
+    @Operation(summary = "Category listing sorted by price_asc, price_desc or rating, with optional price range")
+    public ResponseEntity<Page<Product>> browseCategory(
+            @PathVariable Long categoryId,
+            @RequestParam(defaultValue = "price_asc") String sort,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "false") boolean inStock,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        ColumnarCatalogIndex.Order order = switch (sort.toLowerCase()) {
+            case "price_desc" -> ColumnarCatalogIndex.Order.PRICE_DESC;
+            case "rating" -> ColumnarCatalogIndex.Order.RATING_DESC;
+            default -> ColumnarCatalogIndex.Order.PRICE_ASC;
+        };
+        return ResponseEntity.ok(productService.browseCategory(
+                categoryId, order, minPrice, maxPrice, inStock, PageRequest.of(page, size)));
     }
 
     // ── CREATE PRODUCT (Admin/Seller) ─────────────────────────
@@ -146,6 +245,16 @@ public class ProductController {
         return ResponseEntity.ok(productService.updateProduct(id, request, auth.getName()));
     }
 
+    // ── HOT-ITEM STOCK SHARDS (Admin only) ───────────────────
+    @PutMapping("/{id}/stock-shards")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    @Operation(summary = "Split a hot product's stock over N counters (1 turns it off)")
+    public ResponseEntity<Product> setStockShards(
+            @PathVariable Long id,
+            @Valid @RequestBody StockShardsRequest request) {
+        return ResponseEntity.ok(productService.setStockShards(id, request.getShards()));
+    }
+
     // ── DELETE PRODUCT (Admin only) ───────────────────────────
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
@@ -0,0 +1,19 @@
+package com.shopwave.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One keyset-paged slice of a listing. {@code nextCursor} is an opaque token
+ * to pass back as {@code cursor=} for the following slice; it is null on the
+ * last one. There is deliberately no total count.
+ */
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class CursorPage<T> {
+
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+    private boolean hasNext;
+}
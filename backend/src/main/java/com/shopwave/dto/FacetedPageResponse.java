@@ -0,0 +1,27 @@
+package com.shopwave.dto;
+
+import lombok.*;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of results plus facet counts (facet → value → count) over the
+ * whole result set, returned when a listing is called with {@code facets=}.
+ */
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class FacetedPageResponse<T> {
+
+    private List<T> content;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+    private Map<String, Map<String, Integer>> facets;
+
+    public static <T> FacetedPageResponse<T> of(Page<T> page, Map<String, Map<String, Integer>> facets) {
+        return new FacetedPageResponse<>(page.getContent(), page.getNumber(), page.getSize(),
+            page.getTotalElements(), page.getTotalPages(), facets);
+    }
+}
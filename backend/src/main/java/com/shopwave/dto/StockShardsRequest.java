@@ -0,0 +1,14 @@
+package com.shopwave.dto;
+
+import com.shopwave.service.InventoryEngine;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+@Data
+public class StockShardsRequest {
+
+    @Min(value = 1, message = "shards must be at least 1")
+    @Max(value = InventoryEngine.MAX_SHARDS, message = "shards must be at most " + InventoryEngine.MAX_SHARDS)
+    private int shards = 1;
+}
@@ -0,0 +1,17 @@
+package com.shopwave.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import lombok.Data;
+
+@Data
+public class SuggestionRankingRequest {
+
+    @DecimalMin(value = "0.0", message = "sold weight must be non-negative")
+    private double sold = 1.0;
+
+    @DecimalMin(value = "0.0", message = "views weight must be non-negative")
+    private double views = 0.3;
+
+    @DecimalMin(value = "0.0", message = "rating weight must be non-negative")
+    private double rating = 0.5;
+}
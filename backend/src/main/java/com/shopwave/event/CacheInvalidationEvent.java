@@ -0,0 +1,23 @@
+package com.shopwave.event;
+
+import java.util.Set;
+
+/**
+ * Entities changed on some replica (this one included) and committed;
+ * local caches and indexes should drop or reload their copies.
+ * SUGGESTION_RANKING is not an entity: it announces new autocomplete
+ * weights in suggestion_ranking, under the single key "weights".
+ *
+ * Published locally by {@link InvalidationBus} once per received batch, with
+ * the keys (entity ids) of one kind coalesced. An empty key set means any
+ * entity of that kind may have changed — sent after the bus (re)connects,
+ * because notifications issued while it was disconnected are lost.
+ */
+public record CacheInvalidationEvent(Kind kind, Set<String> keys) {
+
+    public enum Kind { PRODUCT, CATEGORY, COUPON, SUGGESTION_RANKING }
+
+    public boolean isFullResync() {
+        return keys.isEmpty();
+    }
+}
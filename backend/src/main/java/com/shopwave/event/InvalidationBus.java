@@ -0,0 +1,250 @@
+package com.shopwave.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Cross-replica cache invalidation over Postgres LISTEN/NOTIFY.
+ *
+ * Publishing: {@link #publish} collects changed keys per transaction and
+ * issues one {@code pg_notify} just before commit, on the transaction's own
+ * connection. Postgres delivers a NOTIFY only if its transaction commits, so
+ * replicas never hear about rolled-back changes, and a transaction that
+ * touches the same product many times sends it once.
+ *
+ * Receiving: every replica (the sender included — stock decrements have no
+ * other local signal) holds one dedicated LISTEN connection outside the
+ * Hikari pool. Notifications arriving within {@code batch-window} of each
+ * other are merged and re-published locally as one
+ * {@link CacheInvalidationEvent} per kind. After every (re)connect a full
+ * resync event is sent, covering anything missed while disconnected.
+ *
+ * Off unless {@code invalidation.bus.enabled=true} and the datasource is
+ * Postgres; {@link #publish} is then a no-op and local invalidation still
+ * runs from {@link ProductChangedEvent}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InvalidationBus implements SmartLifecycle {
+
+    /** pg_notify payloads are capped at 8000 bytes; stay well below. */
+    private static final int MAX_PAYLOAD = 7000;
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final TypeReference<Message> MESSAGE = new TypeReference<>() {};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+
+    @Value("${invalidation.bus.enabled:false}")
+    private boolean enabled;
+
+    @Value("${invalidation.bus.channel:shopwave_invalidation}")
+    private String channel;
+
+    @Value("${invalidation.bus.batch-window:100ms}")
+    private Duration batchWindow;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    /** Wire format: keys of each changed kind. */
+    record Message(Map<CacheInvalidationEvent.Kind, Set<String>> keys) {}
+
+    // ── Publishing ───────────────────────────────────────────────────────
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.product().getId() != null) publish(CacheInvalidationEvent.Kind.PRODUCT, event.product().getId());
+    }
+
+    /** Announces that an entity changed; sent when the current transaction commits, or now if there is none. */
+    public void publish(CacheInvalidationEvent.Kind kind, Object key) {
+        if (!isActive()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(Map.of(kind, Set.of(key.toString())));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<CacheInvalidationEvent.Kind, Set<String>> pending =
+            (Map<CacheInvalidationEvent.Kind, Set<String>>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<CacheInvalidationEvent.Kind, Set<String>> keys = new EnumMap<>(CacheInvalidationEvent.Kind.class);
+            TransactionSynchronizationManager.bindResource(this, keys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    send(keys);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(InvalidationBus.this);
+                }
+            });
+            pending = keys;
+        }
+        pending.computeIfAbsent(kind, k -> new LinkedHashSet<>()).add(key.toString());
+    }
+
+    private void send(Map<CacheInvalidationEvent.Kind, Set<String>> keys) {
+        Map<CacheInvalidationEvent.Kind, Set<String>> chunk = new EnumMap<>(CacheInvalidationEvent.Kind.class);
+        int size = 0;
+        for (Map.Entry<CacheInvalidationEvent.Kind, Set<String>> e : keys.entrySet()) {
+            for (String key : e.getValue()) {
+                if (size + key.length() + 3 > MAX_PAYLOAD - 64) {
+                    notify(chunk);
+                    chunk = new EnumMap<>(CacheInvalidationEvent.Kind.class);
+                    size = 0;
+                }
+                chunk.computeIfAbsent(e.getKey(), k -> new LinkedHashSet<>()).add(key);
+                size += key.length() + 3;
+            }
+        }
+        if (!chunk.isEmpty()) notify(chunk);
+    }
+
+    private void notify(Map<CacheInvalidationEvent.Kind, Set<String>> keys) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(new Message(keys));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode invalidation message", e);
+        }
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) rs -> null, channel, payload);
+    }
+
+    // ── Receiving ────────────────────────────────────────────────────────
+
+    @Override
+    public void start() {
+        if (!enabled) return;
+        String url = dataSourceProperties.determineUrl();
+        if (url == null || !url.startsWith("jdbc:postgresql:")) {
+            log.warn("Invalidation bus needs PostgreSQL; disabled for {}", url);
+            enabled = false;
+            return;
+        }
+        if (!CHANNEL.matcher(channel).matches()) {
+            throw new IllegalStateException("Invalid invalidation.bus.channel: " + channel);
+        }
+        running = true;
+        listener = new Thread(this::listen, "invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+            try {
+                listener.join(Duration.ofSeconds(5).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private boolean isActive() {
+        return enabled && running;
+    }
+
+    private void listen() {
+        long backoff = 1_000;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement st = connection.createStatement()) {
+                    st.execute("LISTEN " + channel);
+                }
+                log.info("Invalidation bus listening on channel {}", channel);
+                backoff = 1_000;
+                resync();
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] first = pg.getNotifications(1_000);
+                    if (first == null || first.length == 0) continue;
+                    Map<CacheInvalidationEvent.Kind, Set<String>> batch = new EnumMap<>(CacheInvalidationEvent.Kind.class);
+                    merge(batch, first);
+                    // Keep draining for the batch window so a burst becomes one dispatch
+                    long deadline = System.nanoTime() + batchWindow.toNanos();
+                    long remaining;
+                    while ((remaining = (deadline - System.nanoTime()) / 1_000_000) > 0) {
+                        merge(batch, pg.getNotifications((int) remaining));
+                    }
+                    dispatch(batch);
+                }
+            } catch (SQLException e) {
+                if (!running) break;
+                log.warn("Invalidation bus connection lost ({}); reconnecting in {} ms", e.getMessage(), backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = Math.min(backoff * 2, 30_000);
+            }
+        }
+    }
+
+    private void merge(Map<CacheInvalidationEvent.Kind, Set<String>> batch, PGNotification[] notifications) {
+        if (notifications == null) return;
+        for (PGNotification n : notifications) {
+            try {
+                Message m = objectMapper.readValue(n.getParameter(), MESSAGE);
+                m.keys().forEach((kind, keys) -> batch.computeIfAbsent(kind, k -> new HashSet<>()).addAll(keys));
+            } catch (JsonProcessingException e) {
+                log.warn("Ignoring malformed invalidation message: {}", n.getParameter());
+            }
+        }
+    }
+
+    private void resync() {
+        Map<CacheInvalidationEvent.Kind, Set<String>> all = new EnumMap<>(CacheInvalidationEvent.Kind.class);
+        for (CacheInvalidationEvent.Kind kind : CacheInvalidationEvent.Kind.values()) all.put(kind, Set.of());
+        dispatch(all);
+    }
+
+    private void dispatch(Map<CacheInvalidationEvent.Kind, Set<String>> batch) {
+        batch.forEach((kind, keys) -> {
+            try {
+                eventPublisher.publishEvent(new CacheInvalidationEvent(kind, Set.copyOf(keys)));
+            } catch (RuntimeException e) {
+                log.error("Applying {} invalidation for {} failed", kind, keys, e);
+            }
+        });
+    }
+}
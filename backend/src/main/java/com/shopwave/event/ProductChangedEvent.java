@@ -0,0 +1,13 @@
+package com.shopwave.event;
+
+import com.shopwave.model.Product;
+
+/**
+ * Published by ProductService whenever a product is created, updated or
+ * discontinued. In-memory indexes apply it after the transaction commits,
+ * so a rolled-back change never reaches search.
+ */
+public record ProductChangedEvent(Product product, Type type) {
+
+    public enum Type { CREATED, UPDATED, DISCONTINUED }
+}
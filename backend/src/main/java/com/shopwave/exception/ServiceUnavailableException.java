@@ -0,0 +1,16 @@
+package com.shopwave.exception;
+
+/** Temporarily out of capacity; answered with 503 and a Retry-After hint. */
+public class ServiceUnavailableException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public ServiceUnavailableException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
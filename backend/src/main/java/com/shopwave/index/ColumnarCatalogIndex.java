@@ -0,0 +1,381 @@
+package com.shopwave.index;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ColumnarCatalogIndex — per-category price/rating/stock columns for
+ * sorted listings, price-range filters, top-k and percentiles.
+ *
+ *  - Each category is a segment of parallel primitive arrays: id (long),
+ *    price in paise (long), rating (float, unrated = 0) and stock (int),
+ *    addressed by slot. No Product, BigDecimal or boxed Double is touched
+ *    on the read path.
+ *  - Sort orders are int permutations of the slots, kept sorted on every
+ *    write: price ascending and rating descending, ties broken by product
+ *    id so paging is stable. A price range is two binary searches over the
+ *    price permutation; top-k is its prefix; a percentile is one array read.
+ *  - Queries write product ids into a caller-provided buffer and return
+ *    how many were written, so a page costs no allocation here; callers
+ *    hydrate the ids.
+ *  - A single write shifts each permutation once (System.arraycopy, O(n)
+ *    in the category size). Bulk loads go through {@link #replaceAll},
+ *    which sorts each segment once.
+ *
+ * Reads take the read lock and run concurrently; writes are exclusive.
+ */
+public class ColumnarCatalogIndex {
+
+    public enum Order { PRICE_ASC, PRICE_DESC, RATING_DESC }
+
+    /** Sort and filter attributes of one product; a null category keeps it out of the index. */
+    public record Row(long id, Long categoryId, long priceCents, float rating, int stock) {}
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Segment> segments = new HashMap<>();
+    private final Map<Long, Long> categoryOf = new HashMap<>();
+
+    public void upsert(Row row) {
+        lock.writeLock().lock();
+        try {
+            Long current = categoryOf.get(row.id());
+            if (current != null && !current.equals(row.categoryId())) removeInternal(row.id());
+            if (row.categoryId() == null) return;
+            segments.computeIfAbsent(row.categoryId(), k -> new Segment(16)).upsert(row);
+            categoryOf.put(row.id(), row.categoryId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Swaps in the given rows as the whole index, building and sorting each segment once. */
+    public void replaceAll(Collection<Row> rows) {
+        Map<Long, List<Row>> byCategory = new HashMap<>();
+        for (Row r : rows) {
+            if (r.categoryId() != null) byCategory.computeIfAbsent(r.categoryId(), k -> new ArrayList<>()).add(r);
+        }
+        Map<Long, Segment> built = new HashMap<>(byCategory.size() * 2);
+        Map<Long, Long> owners = new HashMap<>(rows.size() * 2);
+        for (Map.Entry<Long, List<Row>> e : byCategory.entrySet()) {
+            built.put(e.getKey(), Segment.of(e.getValue()));
+            for (Row r : e.getValue()) owners.put(r.id(), e.getKey());
+        }
+        lock.writeLock().lock();
+        try {
+            segments.clear();
+            segments.putAll(built);
+            categoryOf.clear();
+            categoryOf.putAll(owners);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        replaceAll(List.of());
+    }
+
+    private void removeInternal(long id) {
+        Long categoryId = categoryOf.remove(id);
+        if (categoryId == null) return;
+        Segment s = segments.get(categoryId);
+        s.remove(id);
+        if (s.size == 0) segments.remove(categoryId);
+    }
+
+    /** Number of products in the category. */
+    public int size(long categoryId) {
+        lock.readLock().lock();
+        try {
+            Segment s = segments.get(categoryId);
+            return s == null ? 0 : s.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Products in the category priced within [minCents, maxCents], optionally
+     * only those in stock. O(log n) without the stock filter.
+     */
+    public int count(long categoryId, long minCents, long maxCents, boolean inStockOnly) {
+        lock.readLock().lock();
+        try {
+            Segment s = segments.get(categoryId);
+            if (s == null) return 0;
+            int lo = s.lowerBound(minCents), hi = s.upperBound(maxCents);
+            if (!inStockOnly) return Math.max(0, hi - lo);
+            int n = 0;
+            for (int i = lo; i < hi; i++) if (s.stock[s.byPrice[i]] > 0) n++;
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the ids of the matching products, in {@code order}, skipping the
+     * first {@code offset} matches, into {@code out} until it is full.
+     *
+     * @return number of ids written
+     */
+    public int select(long categoryId, Order order, long minCents, long maxCents, boolean inStockOnly,
+                      int offset, long[] out) {
+        lock.readLock().lock();
+        try {
+            Segment s = segments.get(categoryId);
+            if (s == null || out.length == 0) return 0;
+            int n = 0, skip = offset;
+            switch (order) {
+                case PRICE_ASC, PRICE_DESC -> {
+                    int lo = s.lowerBound(minCents), hi = s.upperBound(maxCents);
+                    boolean asc = order == Order.PRICE_ASC;
+                    for (int i = lo; i < hi && n < out.length; i++) {
+                        int slot = s.byPrice[asc ? i : lo + hi - 1 - i];
+                        if (inStockOnly && s.stock[slot] <= 0) continue;
+                        if (skip > 0) skip--;
+                        else out[n++] = s.id[slot];
+                    }
+                }
+                case RATING_DESC -> {
+                    for (int i = 0; i < s.size && n < out.length; i++) {
+                        int slot = s.byRating[i];
+                        long price = s.price[slot];
+                        if (price < minCents || price > maxCents) continue;
+                        if (inStockOnly && s.stock[slot] <= 0) continue;
+                        if (skip > 0) skip--;
+                        else out[n++] = s.id[slot];
+                    }
+                }
+            }
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Id of the product at the given price percentile (nearest rank, so 0.5 is
+     * the lower median), or -1 for an empty category.
+     */
+    public long percentile(long categoryId, double p) {
+        lock.readLock().lock();
+        try {
+            Segment s = segments.get(categoryId);
+            if (s == null) return -1;
+            int rank = (int) Math.ceil(p * s.size) - 1;
+            return s.id[s.byPrice[Math.max(0, Math.min(s.size - 1, rank))]];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ── Segment ──────────────────────────────────────────────────────────
+
+    private static final class Segment {
+        long[] id;
+        long[] price;
+        float[] rating;
+        int[] stock;
+        /** Slots by (price asc, id asc). */
+        int[] byPrice;
+        /** Slots by (rating desc, id asc). */
+        int[] byRating;
+        int size;
+        final Map<Long, Integer> slotOf = new HashMap<>();
+
+        Segment(int capacity) {
+            id = new long[capacity];
+            price = new long[capacity];
+            rating = new float[capacity];
+            stock = new int[capacity];
+            byPrice = new int[capacity];
+            byRating = new int[capacity];
+        }
+
+        static Segment of(List<Row> rows) {
+            Segment s = new Segment(Math.max(16, rows.size()));
+            for (Row r : rows) {
+                int slot = s.slotOf.computeIfAbsent(r.id(), k -> s.size++);
+                s.set(slot, r);
+            }
+            for (int i = 0; i < s.size; i++) {
+                s.byPrice[i] = i;
+                s.byRating[i] = i;
+            }
+            sort(s.byPrice, s.size, s::comparePrice);
+            sort(s.byRating, s.size, s::compareRating);
+            return s;
+        }
+
+        void upsert(Row r) {
+            Integer existing = slotOf.get(r.id());
+            int slot;
+            if (existing != null) {
+                slot = existing;
+                unlink(slot);
+            } else {
+                if (size == id.length) grow();
+                slot = size++;
+                slotOf.put(r.id(), slot);
+            }
+            set(slot, r);
+            link(slot, size - 1);
+        }
+
+        void remove(long productId) {
+            Integer boxed = slotOf.remove(productId);
+            if (boxed == null) return;
+            int slot = boxed, last = size - 1;
+            unlink(slot);
+            if (slot != last) {
+                // Move the last slot into the hole; its keys don't change, so it
+                // keeps its place in both permutations and only the label changes.
+                int p = pricePosition(price[last], id[last], last);
+                int q = ratingPosition(rating[last], id[last], last);
+                id[slot] = id[last];
+                price[slot] = price[last];
+                rating[slot] = rating[last];
+                stock[slot] = stock[last];
+                byPrice[p] = slot;
+                byRating[q] = slot;
+                slotOf.put(id[slot], slot);
+            }
+            size--;
+        }
+
+        private void set(int slot, Row r) {
+            id[slot] = r.id();
+            price[slot] = r.priceCents();
+            rating[slot] = r.rating();
+            stock[slot] = r.stock();
+        }
+
+        /** Inserts {@code slot} into both permutations, which currently hold {@code n} slots. */
+        private void link(int slot, int n) {
+            int p = pricePosition(price[slot], id[slot], n);
+            System.arraycopy(byPrice, p, byPrice, p + 1, n - p);
+            byPrice[p] = slot;
+            int q = ratingPosition(rating[slot], id[slot], n);
+            System.arraycopy(byRating, q, byRating, q + 1, n - q);
+            byRating[q] = slot;
+        }
+
+        /** Removes {@code slot} from both permutations. */
+        private void unlink(int slot) {
+            int p = pricePosition(price[slot], id[slot]);
+            System.arraycopy(byPrice, p + 1, byPrice, p, size - p - 1);
+            int q = ratingPosition(rating[slot], id[slot]);
+            System.arraycopy(byRating, q + 1, byRating, q, size - q - 1);
+        }
+
+        private void grow() {
+            int cap = id.length * 2;
+            id = Arrays.copyOf(id, cap);
+            price = Arrays.copyOf(price, cap);
+            rating = Arrays.copyOf(rating, cap);
+            stock = Arrays.copyOf(stock, cap);
+            byPrice = Arrays.copyOf(byPrice, cap);
+            byRating = Arrays.copyOf(byRating, cap);
+        }
+
+        private int comparePrice(int a, int b) {
+            int c = Long.compare(price[a], price[b]);
+            return c != 0 ? c : Long.compare(id[a], id[b]);
+        }
+
+        private int compareRating(int a, int b) {
+            int c = Float.compare(rating[b], rating[a]);
+            return c != 0 ? c : Long.compare(id[a], id[b]);
+        }
+
+        private int pricePosition(long cents, long productId) {
+            return pricePosition(cents, productId, size);
+        }
+
+        /** First position in byPrice[0, n) whose (price, id) is not below the key. */
+        private int pricePosition(long cents, long productId, int n) {
+            int lo = 0, hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int s = byPrice[mid];
+                if (price[s] < cents || (price[s] == cents && id[s] < productId)) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        private int ratingPosition(float r, long productId) {
+            return ratingPosition(r, productId, size);
+        }
+
+        /** First position in byRating[0, n) whose (rating desc, id) is not ahead of the key. */
+        private int ratingPosition(float r, long productId, int n) {
+            int lo = 0, hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int s = byRating[mid];
+                int c = Float.compare(rating[s], r);
+                if (c > 0 || (c == 0 && id[s] < productId)) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        /** First price position with price >= cents. */
+        int lowerBound(long cents) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (price[byPrice[mid]] < cents) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        /** First price position with price > cents. */
+        int upperBound(long cents) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (price[byPrice[mid]] <= cents) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    // ── Primitive sort ───────────────────────────────────────────────────
+
+    private interface SlotComparator {
+        int compare(int a, int b);
+    }
+
+    /** Bottom-up merge sort of {@code a[0, n)}; used only for bulk builds. */
+    private static void sort(int[] a, int n, SlotComparator cmp) {
+        int[] src = a, dst = new int[n];
+        for (int width = 1; width < n; width <<= 1) {
+            for (int lo = 0; lo < n; lo += width << 1) {
+                int mid = Math.min(lo + width, n), hi = Math.min(lo + (width << 1), n);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) dst[k++] = cmp.compare(src[i], src[j]) <= 0 ? src[i++] : src[j++];
+                while (i < mid) dst[k++] = src[i++];
+                while (j < hi) dst[k++] = src[j++];
+            }
+            int[] t = src;
+            src = dst;
+            dst = t;
+        }
+        if (src != a) System.arraycopy(src, 0, a, 0, n);
+    }
+}
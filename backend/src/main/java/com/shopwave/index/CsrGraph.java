@@ -0,0 +1,195 @@
+package com.shopwave.index;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * CsrGraph — immutable weighted product graph in compressed-sparse-row form.
+ *
+ *  - Nodes are dense ints; {@code nodes[i]} is the product id of node i,
+ *    sorted, so id → node is one binary search.
+ *  - Node i's edges are {@code targets[offsets[i] .. offsets[i+1])} with the
+ *    parallel {@code weights}. Each row is sorted heaviest first, ties by
+ *    product id, so top-k neighbours is a row prefix.
+ *  - Traversal reuses one per-thread frontier: an int queue and an int
+ *    visited array stamped with a generation number, so starting a new
+ *    search costs one increment instead of clearing a set. Results are
+ *    written into a caller-provided buffer; a query allocates nothing.
+ *  - Never modified after {@link Builder#build()}; publish a new instance
+ *    through a volatile field to change it. Reads need no locking.
+ */
+public final class CsrGraph {
+
+    public static final CsrGraph EMPTY = new Builder().build();
+
+    private static final ThreadLocal<Frontier> FRONTIER = ThreadLocal.withInitial(Frontier::new);
+
+    private final long[] nodes;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+
+    private CsrGraph(long[] nodes, int[] offsets, int[] targets, int[] weights) {
+        this.nodes = nodes;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    public int nodeCount() { return nodes.length; }
+
+    public int edgeCount() { return targets.length; }
+
+    /** Weight of the directed edge from → to, 0 if absent. */
+    public int weight(long from, long to) {
+        int u = indexOf(from), v = indexOf(to);
+        if (u < 0 || v < 0) return 0;
+        for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+            if (targets[e] == v) return weights[e];
+        }
+        return 0;
+    }
+
+    /**
+     * Writes up to {@code out.length} direct neighbours of {@code productId}
+     * that pass {@code include}, heaviest first; returns how many were written.
+     */
+    public int neighbours(long productId, LongPredicate include, long[] out) {
+        int u = indexOf(productId);
+        if (u < 0) return 0;
+        int n = 0;
+        for (int e = offsets[u]; e < offsets[u + 1] && n < out.length; e++) {
+            long id = nodes[targets[e]];
+            if (include.test(id)) out[n++] = id;
+        }
+        return n;
+    }
+
+    /**
+     * Breadth-first from {@code productId} up to {@code maxDepth} hops: all
+     * of depth 1 before depth 2, and within a depth in order of each parent's
+     * rank and then edge weight, so the strongest neighbours come first and
+     * further hops only fill what is left of {@code out}. Nodes failing
+     * {@code include} are still traversed, just not returned. Returns how
+     * many ids were written.
+     */
+    public int related(long productId, int maxDepth, LongPredicate include, long[] out) {
+        int start = indexOf(productId);
+        if (start < 0 || out.length == 0) return 0;
+        Frontier f = FRONTIER.get();
+        int gen = f.begin(nodes.length);
+        int[] mark = f.mark, queue = f.queue;
+
+        int head = 0, tail = 0, n = 0;
+        mark[start] = gen;
+        queue[tail++] = start;
+        for (int depth = 0; depth < maxDepth && head < tail; depth++) {
+            int levelEnd = tail;
+            while (head < levelEnd) {
+                int u = queue[head++];
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    int v = targets[e];
+                    if (mark[v] == gen) continue;
+                    mark[v] = gen;
+                    queue[tail++] = v;
+                    if (include.test(nodes[v])) {
+                        out[n++] = nodes[v];
+                        if (n == out.length) return n;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    private int indexOf(long productId) {
+        int i = Arrays.binarySearch(nodes, productId);
+        return i < 0 ? -1 : i;
+    }
+
+    /** Per-thread traversal scratch, grown to the largest graph seen. */
+    private static final class Frontier {
+        int[] mark = new int[0];
+        int[] queue = new int[0];
+        int generation;
+
+        int begin(int size) {
+            if (mark.length < size) {
+                mark = new int[size];
+                queue = new int[size];
+                generation = 0;
+            }
+            if (++generation == 0) {            // wrapped: old stamps could collide
+                Arrays.fill(mark, 0);
+                generation = 1;
+            }
+            return generation;
+        }
+    }
+
+    /**
+     * Collects directed edges into primitive arrays and lays them out once.
+     * Each (from, to) pair should be added at most once; edges with weight
+     * below 1 are rejected.
+     */
+    public static final class Builder {
+        private long[] from = new long[64];
+        private long[] to = new long[64];
+        private int[] weight = new int[64];
+        private int size;
+
+        public Builder addEdge(long fromId, long toId, int w) {
+            if (w < 1) throw new IllegalArgumentException("Edge weight must be positive: " + w);
+            if (size == from.length) {
+                int cap = size * 2;
+                from = Arrays.copyOf(from, cap);
+                to = Arrays.copyOf(to, cap);
+                weight = Arrays.copyOf(weight, cap);
+            }
+            from[size] = fromId;
+            to[size] = toId;
+            weight[size] = w;
+            size++;
+            return this;
+        }
+
+        public CsrGraph build() {
+            long[] ids = new long[size * 2];
+            System.arraycopy(from, 0, ids, 0, size);
+            System.arraycopy(to, 0, ids, size, size);
+            Arrays.sort(ids);
+            int n = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (n == 0 || ids[i] != ids[n - 1]) ids[n++] = ids[i];
+            }
+            long[] nodes = Arrays.copyOf(ids, n);
+
+            int[] offsets = new int[n + 1];
+            int[] src = new int[size];
+            for (int e = 0; e < size; e++) {
+                src[e] = Arrays.binarySearch(nodes, from[e]);
+                offsets[src[e] + 1]++;
+            }
+            for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+
+            // Key = (MAX - weight) << 32 | target, so an ascending sort of a
+            // row is heaviest first and then by target, i.e. by product id.
+            long[] keys = new long[size];
+            int[] cursor = Arrays.copyOf(offsets, n);
+            for (int e = 0; e < size; e++) {
+                int dst = Arrays.binarySearch(nodes, to[e]);
+                keys[cursor[src[e]]++] = ((long) (Integer.MAX_VALUE - weight[e]) << 32) | dst;
+            }
+            int[] targets = new int[size];
+            int[] weights = new int[size];
+            for (int i = 0; i < n; i++) {
+                Arrays.sort(keys, offsets[i], offsets[i + 1]);
+            }
+            for (int e = 0; e < size; e++) {
+                targets[e] = (int) keys[e];
+                weights[e] = Integer.MAX_VALUE - (int) (keys[e] >>> 32);
+            }
+            return new CsrGraph(nodes, offsets, targets, weights);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.shopwave.index;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * FacetIndex — one RoaringBitmap of product ids per facet value.
+ *
+ * Given the bitmap of a result set (search matches, a category), every
+ * facet count is one intersection cardinality, so drawing the whole filter
+ * sidebar costs a single pass over the facet bitmaps instead of a query per
+ * facet value.
+ *
+ * Facets: brand, category, price bucket, free shipping and rating band.
+ * Rating bands are cumulative ("4+" includes 4.5), matching how the
+ * storefront filter reads. Products a category page lists (status ACTIVE)
+ * are tracked in one more bitmap, so category counts can leave out the
+ * searchable but unlisted ones.
+ */
+public class FacetIndex {
+
+    public enum Facet {
+        BRAND("brand"),
+        CATEGORY("category"),
+        PRICE("price"),
+        FREE_SHIPPING("freeShipping"),
+        RATING("rating");
+
+        private final String param;
+
+        Facet(String param) {
+            this.param = param;
+        }
+
+        public String param() {
+            return param;
+        }
+
+        /** Parses a comma separated {@code facets=} value; unknown names are ignored. */
+        public static EnumSet<Facet> parse(String csv) {
+            EnumSet<Facet> out = EnumSet.noneOf(Facet.class);
+            if (csv == null) return out;
+            for (String s : csv.split(",")) {
+                String name = s.trim();
+                if (name.equalsIgnoreCase("all")) return EnumSet.allOf(Facet.class);
+                for (Facet f : values()) if (f.param.equalsIgnoreCase(name)) out.add(f);
+            }
+            return out;
+        }
+    }
+
+    /** Facet-relevant attributes of one product; {@code listed} means status ACTIVE. */
+    public record FacetDocument(int id, String brand, Long categoryId, double price,
+                                boolean freeShipping, Double rating, boolean listed) {}
+
+    /** Upper bounds (exclusive) of the price buckets; the last bucket is open-ended. */
+    private static final int[] PRICE_BOUNDS = {500, 1000, 5000, 10000, 25000, 50000};
+    private static final int[] RATING_BANDS = {4, 3, 2, 1};
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final EnumMap<Facet, Map<String, RoaringBitmap>> bitmaps = new EnumMap<>(Facet.class);
+    private final Map<Integer, List<List<String>>> valuesOf = new HashMap<>();
+    private RoaringBitmap listed = new RoaringBitmap();
+
+    public FacetIndex() {
+        for (Facet f : Facet.values()) bitmaps.put(f, new HashMap<>());
+    }
+
+    public void upsert(FacetDocument doc) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(doc.id());
+            List<List<String>> values = new ArrayList<>(Facet.values().length);
+            for (Facet f : Facet.values()) {
+                values.add(valuesFor(f, doc));
+                for (String v : values.get(f.ordinal())) {
+                    bitmaps.get(f).computeIfAbsent(v, k -> new RoaringBitmap()).add(doc.id());
+                }
+            }
+            valuesOf.put(doc.id(), values);
+            if (doc.listed()) listed.add(doc.id());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            bitmaps.values().forEach(Map::clear);
+            valuesOf.clear();
+            listed = new RoaringBitmap();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeInternal(int id) {
+        List<List<String>> values = valuesOf.remove(id);
+        if (values == null) return;
+        listed.remove(id);
+        for (Facet f : Facet.values()) {
+            Map<String, RoaringBitmap> byValue = bitmaps.get(f);
+            for (String v : values.get(f.ordinal())) {
+                RoaringBitmap bm = byValue.get(v);
+                bm.remove(id);
+                if (bm.isEmpty()) byValue.remove(v);
+            }
+        }
+    }
+
+    /** Copy of the ids carrying a facet value, e.g. every product in a category. */
+    public RoaringBitmap members(Facet facet, String value) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap bm = bitmaps.get(facet).get(value);
+            return bm != null ? bm.copy() : new RoaringBitmap();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Ids carrying a facet value that a category page lists, i.e. with status ACTIVE. */
+    public RoaringBitmap listedMembers(Facet facet, String value) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap bm = bitmaps.get(facet).get(value);
+            return bm != null ? bm.and(listed) : new RoaringBitmap();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts per value for each requested facet over {@code results}; values
+     * are ordered by descending count (price and rating keep their natural
+     * order) and zero counts are left out.
+     */
+    public Map<String, Map<String, Integer>> counts(RoaringBitmap results, Set<Facet> facets) {
+        Map<String, Map<String, Integer>> out = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Facet f : facets) {
+                List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+                for (Map.Entry<String, RoaringBitmap> e : bitmaps.get(f).entrySet()) {
+                    int n = results.andCardinality(e.getValue());
+                    if (n > 0) entries.add(Map.entry(e.getKey(), n));
+                }
+                if (f == Facet.PRICE) entries.sort(Comparator.comparingInt(e -> priceOrder(e.getKey())));
+                else if (f == Facet.RATING) entries.sort(Map.Entry.<String, Integer>comparingByKey().reversed());
+                else entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()));
+                Map<String, Integer> counts = new LinkedHashMap<>();
+                entries.forEach(e -> counts.put(e.getKey(), e.getValue()));
+                out.put(f.param(), counts);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return out;
+    }
+
+    private static List<String> valuesFor(Facet f, FacetDocument doc) {
+        return switch (f) {
+            case BRAND -> doc.brand() == null || doc.brand().isBlank() ? List.of() : List.of(doc.brand().trim());
+            case CATEGORY -> doc.categoryId() == null ? List.of() : List.of(doc.categoryId().toString());
+            case PRICE -> List.of(priceBucket(doc.price()));
+            case FREE_SHIPPING -> List.of(Boolean.toString(doc.freeShipping()));
+            case RATING -> ratingBands(doc.rating());
+        };
+    }
+
+    static String priceBucket(double price) {
+        int lower = 0;
+        for (int bound : PRICE_BOUNDS) {
+            if (price < bound) return lower + "-" + bound;
+            lower = bound;
+        }
+        return lower + "+";
+    }
+
+    private static int priceOrder(String bucket) {
+        int dash = bucket.indexOf('-');
+        return Integer.parseInt(dash > 0 ? bucket.substring(0, dash) : bucket.substring(0, bucket.length() - 1));
+    }
+
+    private static List<String> ratingBands(Double rating) {
+        if (rating == null) return List.of();
+        List<String> bands = new ArrayList<>(RATING_BANDS.length);
+        for (int band : RATING_BANDS) if (rating >= band) bands.add(band + "+");
+        return bands;
+    }
+}
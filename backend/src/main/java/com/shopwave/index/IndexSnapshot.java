@@ -0,0 +1,148 @@
+package com.shopwave.index;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * IndexSnapshot — versioned binary dump of the indexed catalog.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int    magic      "SWIX"
+ *   int    version
+ *   long   watermark  max products.updated_at covered (epoch millis, UTC wall clock)
+ *   int    count
+ *   count × record    id, updatedAt, categoryId (-1 = none), price, rating (NaN = none),
+ *                     sold, views, stock, flags (free shipping, listed), then name, brand,
+ *                     sku, description, specifications as (int length, UTF-8 bytes),
+ *                     length -1 = null
+ *   long   crc32      of every preceding byte
+ * </pre>
+ *
+ * Written to a temp file and atomically moved into place, so a crash never
+ * leaves a half-written snapshot under the real name. Read through a
+ * read-only memory map: the page cache serves the bytes directly, with no
+ * heap copy of the file and no stream decoding overhead. Any mismatch —
+ * magic, version, checksum, truncation — is reported as an IOException and
+ * the caller falls back to a full rebuild.
+ */
+public final class IndexSnapshot {
+
+    public static final int MAGIC = 0x53574958;   // "SWIX"
+    public static final int VERSION = 3;
+
+    private static final byte FREE_SHIPPING = 1;
+    private static final byte LISTED = 2;
+
+    public record Contents(long watermark, List<IndexedProduct> products) {}
+
+    private IndexSnapshot() {}
+
+    public static void write(Path file, long watermark, List<IndexedProduct> products) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16);
+                 DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(watermark);
+                out.writeInt(products.size());
+                for (IndexedProduct p : products) writeRecord(out, p);
+                out.flush();
+                new DataOutputStream(raw).writeLong(crc.getValue());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static Contents read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < 28 || size > Integer.MAX_VALUE) throw new IOException("Snapshot size out of range: " + size);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int body = (int) size - Long.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(0, body));
+            if (crc.getValue() != buf.getLong(body)) throw new IOException("Snapshot checksum mismatch");
+
+            if (buf.getInt() != MAGIC) throw new IOException("Not a search snapshot");
+            int version = buf.getInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+            long watermark = buf.getLong();
+            int count = buf.getInt();
+            if (count < 0) throw new IOException("Negative record count");
+            List<IndexedProduct> products = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) products.add(readRecord(buf));
+            if (buf.position() != body) throw new IOException("Trailing bytes in snapshot");
+            return new Contents(watermark, products);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated or malformed snapshot", e);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, IndexedProduct p) throws IOException {
+        out.writeLong(p.id());
+        out.writeLong(p.updatedAt());
+        out.writeLong(p.categoryId() != null ? p.categoryId() : -1);
+        out.writeDouble(p.price());
+        out.writeDouble(p.rating() != null ? p.rating() : Double.NaN);
+        out.writeInt(p.sold());
+        out.writeInt(p.views());
+        out.writeInt(p.stock());
+        out.writeByte((p.freeShipping() ? FREE_SHIPPING : 0) | (p.listed() ? LISTED : 0));
+        writeString(out, p.name());
+        writeString(out, p.brand());
+        writeString(out, p.sku());
+        writeString(out, p.description());
+        writeString(out, p.specifications());
+    }
+
+    private static IndexedProduct readRecord(ByteBuffer buf) {
+        long id = buf.getLong();
+        long updatedAt = buf.getLong();
+        long categoryId = buf.getLong();
+        double price = buf.getDouble();
+        double rating = buf.getDouble();
+        int sold = buf.getInt();
+        int views = buf.getInt();
+        int stock = buf.getInt();
+        byte flags = buf.get();
+        return new IndexedProduct(id, readString(buf), readString(buf), readString(buf), readString(buf),
+            readString(buf), categoryId >= 0 ? categoryId : null, price, (flags & FREE_SHIPPING) != 0,
+            (flags & LISTED) != 0, Double.isNaN(rating) ? null : rating, sold, views, stock, updatedAt);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        if (len > buf.remaining()) throw new BufferUnderflowException();
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,59 @@
+package com.shopwave.index;
+
+/**
+ * Everything the in-memory search structures need to know about one product.
+ *
+ * Built from the entity (or read back from an {@link IndexSnapshot}) and used
+ * to derive the inverted-index, facet, autocomplete and SKU entries, so the
+ * indexes can be rebuilt without touching the database.
+ *
+ * @param id             products.id; the facet bitmaps hold ints, so it must fit in one
+ * @param price          list price in rupees; {@link #priceCents()} is the exact integer form
+ * @param listed         status ACTIVE, i.e. shown on category pages (searchable products
+ *                       may also be OUT_OF_STOCK)
+ *
+ * @param specifications specification map flattened to "key value ..." text
+ * @param updatedAt      products.updated_at as epoch millis (UTC wall clock), 0 if unknown
+ */
+public record IndexedProduct(
+    long id,
+    String name,
+    String brand,
+    String sku,
+    String description,
+    String specifications,
+    Long categoryId,
+    double price,
+    boolean freeShipping,
+    boolean listed,
+    Double rating,
+    int sold,
+    int views,
+    int stock,
+    long updatedAt) {
+
+    public IndexedProduct {
+        if (id < 0 || id > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Product id " + id + " is outside the facet index's int range");
+    }
+
+    public InvertedIndex.SearchDocument searchDocument() {
+        return new InvertedIndex.SearchDocument(id, name, brand, description, specifications);
+    }
+
+    public FacetIndex.FacetDocument facetDocument() {
+        return new FacetIndex.FacetDocument(Math.toIntExact(id), brand, categoryId, price, freeShipping, rating, listed);
+    }
+
+    public long priceCents() {
+        return Math.round(price * 100);
+    }
+
+    public ColumnarCatalogIndex.Row catalogRow() {
+        return new ColumnarCatalogIndex.Row(id, categoryId, priceCents(), rating != null ? rating.floatValue() : 0f, stock);
+    }
+
+    public CompactTrie.TermStats termStats() {
+        return CompactTrie.TermStats.of(sold, views, rating);
+    }
+}
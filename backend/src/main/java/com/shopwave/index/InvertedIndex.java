@@ -0,0 +1,558 @@
+package com.shopwave.index;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * InvertedIndex — in-process full-text index over the product catalog.
+ *
+ *  - Fields: name, brand, description, specifications, each with its own
+ *    BM25F boost and length normalisation.
+ *  - Positional postings: one PostingList per term, holding ascending doc
+ *    slots plus a flat int[] of positions encoded as (field << 24 | offset).
+ *    Positions drive a phrase boost when query terms appear adjacently.
+ *  - Slots are append-only: an update is remove + add under a fresh slot, so
+ *    every posting list stays sorted without shifting. Dead slots are skipped
+ *    at query time and compacted away in bulk once they exceed a quarter of
+ *    the index.
+ *  - Queries are evaluated document-at-a-time across the query terms' cursors
+ *    with a bounded heap of (offset + limit), so cost is O(sum of matched
+ *    postings) and independent of catalog size for selective terms.
+ *  - Matching is conjunctive; if no product has every term the query is
+ *    re-run disjunctively. The last token also matches as a prefix
+ *    ("sams" → samsung) when it is not a term itself.
+ *
+ * Reads take the read lock and run concurrently; writes are exclusive.
+ */
+public class InvertedIndex {
+
+    public enum Field {
+        NAME(3.0f, 0.5f),
+        BRAND(2.0f, 0.3f),
+        DESCRIPTION(1.0f, 0.75f),
+        SPECIFICATIONS(0.8f, 0.75f);
+
+        final float boost;
+        final float b;
+
+        Field(float boost, float b) {
+            this.boost = boost;
+            this.b = b;
+        }
+    }
+
+    /** The text of one product as seen by the index. */
+    public record SearchDocument(long id, String name, String brand, String description, String specifications) {
+
+        String text(Field f) {
+            return switch (f) {
+                case NAME -> name;
+                case BRAND -> brand;
+                case DESCRIPTION -> description;
+                case SPECIFICATIONS -> specifications;
+            };
+        }
+    }
+
+    /** One page of hits plus the total number of matching products. */
+    public record SearchHits(long total, long[] productIds, float[] scores) {
+        public static final SearchHits EMPTY = new SearchHits(0, new long[0], new float[0]);
+    }
+
+    /** A document tokenized outside the write lock: term → encoded positions. */
+    public record AnalyzedDocument(long id, Map<String, int[]> termPositions, int[] fieldLengths) {}
+
+    private static final Field[] FIELDS = Field.values();
+    private static final int FIELD_SHIFT = 24;
+    private static final int MAX_OFFSET = (1 << FIELD_SHIFT) - 1;
+    private static final float K1 = 1.2f;
+    private static final float PHRASE_BOOST = 0.25f;
+    private static final int MAX_QUERY_TERMS = 16;
+    private static final int MAX_PREFIX_EXPANSIONS = 32;
+    private static final int COMPACT_MIN_DEAD = 1024;
+
+    static final class PostingList {
+        int size;
+        int[] slots = new int[2];
+        int[] posEnd = new int[2];      // positions of entry i: [posEnd[i-1], posEnd[i])
+        int[] positions = new int[4];
+        int posSize;
+        int liveDf;
+
+        void append(int slot, int[] pos) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                posEnd = Arrays.copyOf(posEnd, size * 2);
+            }
+            if (posSize + pos.length > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(positions.length * 2, posSize + pos.length));
+            }
+            System.arraycopy(pos, 0, positions, posSize, pos.length);
+            posSize += pos.length;
+            slots[size] = slot;
+            posEnd[size] = posSize;
+            size++;
+            liveDf++;
+        }
+
+        int posStart(int i) {
+            return i == 0 ? 0 : posEnd[i - 1];
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TreeMap<String, Integer> termIds = new TreeMap<>();
+    private PostingList[] postings = new PostingList[256];
+    private int termCount;
+
+    private final Map<Long, Integer> slotOf = new HashMap<>();
+    private long[] slotProduct = new long[256];
+    private int[] fieldLen = new int[256 * FIELDS.length];
+    private int[][] slotTerms = new int[256][];
+    private BitSet live = new BitSet();
+    private int slotCount;
+    private int liveCount;
+    private int deadCount;
+    private final long[] totalFieldLen = new long[FIELDS.length];
+
+    // ── Writes ───────────────────────────────────────────────────────────
+
+    /** Tokenizes a document; safe to call from any thread without the index lock. */
+    public static AnalyzedDocument analyze(SearchDocument doc) {
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        int[] lengths = new int[FIELDS.length];
+        for (Field f : FIELDS) {
+            List<String> tokens = Tokenizer.tokenize(doc.text(f));
+            lengths[f.ordinal()] = tokens.size();
+            for (int i = 0; i < tokens.size(); i++) {
+                int encoded = (f.ordinal() << FIELD_SHIFT) | Math.min(i, MAX_OFFSET);
+                positions.computeIfAbsent(tokens.get(i), k -> new ArrayList<>()).add(encoded);
+            }
+        }
+        Map<String, int[]> packed = new LinkedHashMap<>(positions.size() * 2);
+        positions.forEach((term, list) -> {
+            int[] arr = new int[list.size()];
+            for (int i = 0; i < arr.length; i++) arr[i] = list.get(i);
+            packed.put(term, arr);
+        });
+        return new AnalyzedDocument(doc.id(), packed, lengths);
+    }
+
+    public void upsert(SearchDocument doc) {
+        upsert(analyze(doc));
+    }
+
+    public void upsert(AnalyzedDocument doc) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(doc.id());
+            addInternal(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void upsertAll(Collection<AnalyzedDocument> docs) {
+        lock.writeLock().lock();
+        try {
+            for (AnalyzedDocument doc : docs) {
+                removeInternal(doc.id());
+                addInternal(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long productId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            termIds.clear();
+            postings = new PostingList[256];
+            termCount = 0;
+            slotOf.clear();
+            slotProduct = new long[256];
+            fieldLen = new int[256 * FIELDS.length];
+            slotTerms = new int[256][];
+            live = new BitSet();
+            slotCount = liveCount = deadCount = 0;
+            Arrays.fill(totalFieldLen, 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addInternal(AnalyzedDocument doc) {
+        int slot = slotCount++;
+        if (slot == slotProduct.length) {
+            int cap = slot * 2;
+            slotProduct = Arrays.copyOf(slotProduct, cap);
+            fieldLen = Arrays.copyOf(fieldLen, cap * FIELDS.length);
+            slotTerms = Arrays.copyOf(slotTerms, cap);
+        }
+        slotProduct[slot] = doc.id();
+        for (int f = 0; f < FIELDS.length; f++) {
+            fieldLen[slot * FIELDS.length + f] = doc.fieldLengths()[f];
+            totalFieldLen[f] += doc.fieldLengths()[f];
+        }
+        int[] terms = new int[doc.termPositions().size()];
+        int t = 0;
+        for (Map.Entry<String, int[]> e : doc.termPositions().entrySet()) {
+            int id = termIdFor(e.getKey());
+            postings[id].append(slot, e.getValue());
+            terms[t++] = id;
+        }
+        slotTerms[slot] = terms;
+        slotOf.put(doc.id(), slot);
+        live.set(slot);
+        liveCount++;
+    }
+
+    private int termIdFor(String term) {
+        Integer id = termIds.get(term);
+        if (id != null) return id;
+        if (termCount == postings.length) postings = Arrays.copyOf(postings, termCount * 2);
+        postings[termCount] = new PostingList();
+        termIds.put(term, termCount);
+        return termCount++;
+    }
+
+    private void removeInternal(long productId) {
+        Integer slot = slotOf.remove(productId);
+        if (slot == null) return;
+        live.clear(slot);
+        liveCount--;
+        deadCount++;
+        for (int t : slotTerms[slot]) postings[t].liveDf--;
+        for (int f = 0; f < FIELDS.length; f++) totalFieldLen[f] -= fieldLen[slot * FIELDS.length + f];
+        slotTerms[slot] = null;
+        if (deadCount >= COMPACT_MIN_DEAD && deadCount * 4 > slotCount) compact();
+    }
+
+    /** Renumbers live slots densely and drops dead postings and unused terms. */
+    private void compact() {
+        int[] newSlot = new int[slotCount];
+        int n = 0;
+        for (int s = live.nextSetBit(0); s >= 0; s = live.nextSetBit(s + 1)) newSlot[s] = n++;
+
+        int[] newTermId = new int[termCount];
+        PostingList[] newPostings = new PostingList[Math.max(256, termCount)];
+        TreeMap<String, Integer> oldIds = new TreeMap<>(termIds);
+        termIds.clear();
+        int nt = 0;
+        for (Map.Entry<String, Integer> e : oldIds.entrySet()) {
+            PostingList old = postings[e.getValue()];
+            if (old.liveDf == 0) {
+                newTermId[e.getValue()] = -1;
+                continue;
+            }
+            PostingList pl = new PostingList();
+            for (int i = 0; i < old.size; i++) {
+                int s = old.slots[i];
+                if (!live.get(s)) continue;
+                pl.append(newSlot[s], Arrays.copyOfRange(old.positions, old.posStart(i), old.posEnd[i]));
+            }
+            newTermId[e.getValue()] = nt;
+            newPostings[nt] = pl;
+            termIds.put(e.getKey(), nt++);
+        }
+
+        long[] sp = new long[Math.max(256, n * 2)];
+        int[] fl = new int[sp.length * FIELDS.length];
+        int[][] st = new int[sp.length][];
+        BitSet nl = new BitSet(n);
+        for (int s = live.nextSetBit(0); s >= 0; s = live.nextSetBit(s + 1)) {
+            int ns = newSlot[s];
+            sp[ns] = slotProduct[s];
+            System.arraycopy(fieldLen, s * FIELDS.length, fl, ns * FIELDS.length, FIELDS.length);
+            int[] terms = slotTerms[s];
+            for (int i = 0; i < terms.length; i++) terms[i] = newTermId[terms[i]];
+            st[ns] = terms;
+            nl.set(ns);
+            slotOf.put(sp[ns], ns);
+        }
+        postings = newPostings;
+        termCount = nt;
+        slotProduct = sp;
+        fieldLen = fl;
+        slotTerms = st;
+        live = nl;
+        slotCount = n;
+        deadCount = 0;
+    }
+
+    // ── Reads ────────────────────────────────────────────────────────────
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(long productId) {
+        lock.readLock().lock();
+        try {
+            return slotOf.containsKey(productId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Hits {@code [offset, offset + limit)} by descending BM25F score, plus the total match count. */
+    public SearchHits search(String query, int offset, int limit) {
+        return search(query, offset, limit, null);
+    }
+
+    /**
+     * As {@link #search(String, int, int)}, additionally handing every
+     * matching product id (not just the page) to {@code onMatch} — used to
+     * build the result bitmap for facet counts in the same pass.
+     */
+    public SearchHits search(String query, int offset, int limit, LongConsumer onMatch) {
+        List<String> tokens = Tokenizer.tokenize(query);
+        if (tokens.isEmpty()) return SearchHits.EMPTY;
+        LinkedHashSet<String> unique = new LinkedHashSet<>(tokens);
+        List<String> terms = new ArrayList<>(unique).subList(0, Math.min(unique.size(), MAX_QUERY_TERMS));
+
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) return SearchHits.EMPTY;
+            int[][] groups = resolveGroups(terms);
+            boolean anyEmpty = false, allEmpty = true;
+            for (int[] g : groups) {
+                if (g.length == 0) anyEmpty = true;
+                else allEmpty = false;
+            }
+            if (allEmpty) return SearchHits.EMPTY;
+
+            SearchHits hits = anyEmpty ? null : evaluate(groups, true, offset, limit, onMatch);
+            if ((hits == null || hits.total() == 0) && groups.length > 1) {
+                hits = evaluate(groups, false, offset, limit, onMatch);
+            }
+            return hits != null ? hits : SearchHits.EMPTY;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** One group of term ids per query token; the last token also expands as a prefix. */
+    private int[][] resolveGroups(List<String> terms) {
+        int[][] groups = new int[terms.size()][];
+        for (int g = 0; g < terms.size(); g++) {
+            String term = terms.get(g);
+            Integer id = termIds.get(term);
+            if (id != null && postings[id].liveDf > 0) {
+                groups[g] = new int[]{id};
+            } else if (g == terms.size() - 1 && term.length() >= 2) {
+                List<Integer> expansions = new ArrayList<>(termIds.subMap(term, term + Character.MAX_VALUE).values());
+                expansions.removeIf(t -> postings[t].liveDf == 0);
+                expansions.sort((a, b) -> Integer.compare(postings[b].liveDf, postings[a].liveDf));
+                int k = Math.min(expansions.size(), MAX_PREFIX_EXPANSIONS);
+                groups[g] = new int[k];
+                for (int i = 0; i < k; i++) groups[g][i] = expansions.get(i);
+            } else {
+                groups[g] = new int[0];
+            }
+        }
+        return groups;
+    }
+
+    private SearchHits evaluate(int[][] groups, boolean conjunctive, int offset, int limit, LongConsumer onMatch) {
+        int cursors = 0;
+        for (int[] g : groups) cursors += g.length;
+        int[] cTerm = new int[cursors], cGroup = new int[cursors], cIdx = new int[cursors];
+        float[] cIdf = new float[cursors];
+        int c = 0;
+        for (int g = 0; g < groups.length; g++) {
+            for (int t : groups[g]) {
+                cTerm[c] = t;
+                cGroup[c] = g;
+                int df = postings[t].liveDf;
+                cIdf[c] = (float) Math.log(1 + (liveCount - df + 0.5) / (df + 0.5));
+                c++;
+            }
+        }
+        long requiredMask = 0;
+        for (int g = 0; g < groups.length; g++) if (groups[g].length > 0) requiredMask |= 1L << g;
+
+        float[] avgLen = new float[FIELDS.length];
+        for (int f = 0; f < FIELDS.length; f++) avgLen[f] = Math.max(1f, (float) totalFieldLen[f] / liveCount);
+
+        int keep = offset + limit;
+        TopHeap heap = new TopHeap(keep);
+        int[] groupCursor = new int[groups.length];
+        int[] tf = new int[FIELDS.length];
+        long total = 0;
+
+        while (true) {
+            int doc = Integer.MAX_VALUE;
+            for (int i = 0; i < cursors; i++) {
+                PostingList pl = postings[cTerm[i]];
+                if (cIdx[i] < pl.size && pl.slots[cIdx[i]] < doc) doc = pl.slots[cIdx[i]];
+            }
+            if (doc == Integer.MAX_VALUE) break;
+
+            boolean alive = live.get(doc);
+            long matched = 0;
+            float score = 0;
+            Arrays.fill(groupCursor, -1);
+            for (int i = 0; i < cursors; i++) {
+                PostingList pl = postings[cTerm[i]];
+                if (cIdx[i] >= pl.size || pl.slots[cIdx[i]] != doc) continue;
+                if (alive) {
+                    score += cIdf[i] * bm25f(pl, cIdx[i], doc, tf, avgLen);
+                    matched |= 1L << cGroup[i];
+                    if (groupCursor[cGroup[i]] < 0) groupCursor[cGroup[i]] = i;
+                }
+                cIdx[i]++;
+            }
+            if (!alive || (conjunctive && matched != requiredMask)) continue;
+
+            for (int g = 0; g + 1 < groups.length; g++) {
+                int a = groupCursor[g], b = groupCursor[g + 1];
+                if (a >= 0 && b >= 0 && adjacent(postings[cTerm[a]], cIdx[a] - 1, postings[cTerm[b]], cIdx[b] - 1)) {
+                    score *= 1 + PHRASE_BOOST;
+                }
+            }
+            total++;
+            heap.offer(score, doc);
+            if (onMatch != null) onMatch.accept(slotProduct[doc]);
+        }
+
+        int n = heap.size;
+        int[] slots = new int[n];
+        float[] scores = new float[n];
+        for (int i = n - 1; i >= 0; i--) {
+            scores[i] = heap.topScore();
+            slots[i] = heap.poll();
+        }
+        int from = Math.min(offset, n), to = Math.min(keep, n);
+        long[] ids = new long[to - from];
+        float[] pageScores = new float[to - from];
+        for (int i = from; i < to; i++) {
+            ids[i - from] = slotProduct[slots[i]];
+            pageScores[i - from] = scores[i];
+        }
+        return new SearchHits(total, ids, pageScores);
+    }
+
+    /** Saturated, length-normalised term frequency summed over fields (BM25F). */
+    private float bm25f(PostingList pl, int entry, int slot, int[] tf, float[] avgLen) {
+        Arrays.fill(tf, 0);
+        for (int p = pl.posStart(entry); p < pl.posEnd[entry]; p++) tf[pl.positions[p] >>> FIELD_SHIFT]++;
+        float w = 0;
+        for (Field f : FIELDS) {
+            int i = f.ordinal();
+            if (tf[i] == 0) continue;
+            float norm = 1 - f.b + f.b * fieldLen[slot * FIELDS.length + i] / avgLen[i];
+            w += f.boost * tf[i] / norm;
+        }
+        return w / (K1 + w);
+    }
+
+    /** True when some position in {@code a} is immediately followed (same field) by one in {@code b}. */
+    private static boolean adjacent(PostingList a, int ea, PostingList b, int eb) {
+        int i = a.posStart(ea), iEnd = a.posEnd[ea];
+        int j = b.posStart(eb), jEnd = b.posEnd[eb];
+        while (i < iEnd && j < jEnd) {
+            int want = a.positions[i] + 1;
+            int have = b.positions[j];
+            if (have == want) return true;
+            if (have < want) j++;
+            else i++;
+        }
+        return false;
+    }
+
+    /** Bounded min-heap on (score, slot); the root is the weakest hit kept. */
+    private static final class TopHeap {
+        final int cap;
+        float[] score;
+        int[] slot;
+        int size;
+
+        TopHeap(int cap) {
+            this.cap = cap;
+            this.score = new float[Math.min(Math.max(cap, 1), 1 << 16)];
+            this.slot = new int[score.length];
+        }
+
+        /** Higher score wins; equal scores favour the older (lower) slot for stable paging. */
+        private boolean weaker(float s1, int d1, float s2, int d2) {
+            return s1 < s2 || (s1 == s2 && d1 > d2);
+        }
+
+        void offer(float s, int d) {
+            if (cap == 0) return;
+            if (size < cap) {
+                if (size == score.length) grow();
+                score[size] = s;
+                slot[size] = d;
+                siftUp(size++);
+            } else if (weaker(score[0], slot[0], s, d)) {
+                score[0] = s;
+                slot[0] = d;
+                siftDown(0);
+            }
+        }
+
+        float topScore() {
+            return score[0];
+        }
+
+        int poll() {
+            int d = slot[0];
+            size--;
+            score[0] = score[size];
+            slot[0] = slot[size];
+            siftDown(0);
+            return d;
+        }
+
+        private void grow() {
+            int n = Math.min(cap, score.length * 2);
+            score = Arrays.copyOf(score, n);
+            slot = Arrays.copyOf(slot, n);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (!weaker(score[i], slot[i], score[p], slot[p])) break;
+                swap(i, p);
+                i = p;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int l = 2 * i + 1, r = l + 1, m = i;
+                if (l < size && weaker(score[l], slot[l], score[m], slot[m])) m = l;
+                if (r < size && weaker(score[r], slot[r], score[m], slot[m])) m = r;
+                if (m == i) return;
+                swap(i, m);
+                i = m;
+            }
+        }
+
+        private void swap(int i, int j) {
+            float s = score[i]; score[i] = score[j]; score[j] = s;
+            int d = slot[i]; slot[i] = slot[j]; slot[j] = d;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.shopwave.index;
+
+/**
+ * RecentIdRing — the last {@code capacity} distinct ids seen, newest first,
+ * in a fixed {@code long[]} ring.
+ *
+ * A new id overwrites the oldest slot in O(1); seeing an id that is already
+ * held moves it to the front by shifting the newer ones down a slot. At the
+ * default capacity of 20 a ring is about 200 bytes, against several KB for
+ * a map of 20 full entities.
+ */
+public class RecentIdRing {
+
+    private final long[] ids;
+    private int head = -1;   // slot of the newest id
+    private int size;
+
+    public RecentIdRing(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.ids = new long[capacity];
+    }
+
+    public synchronized void push(long id) {
+        int at = indexOf(id);
+        if (at < 0) {
+            head = (head + 1) % ids.length;
+            ids[head] = id;
+            if (size < ids.length) size++;
+            return;
+        }
+        for (int i = at; i > 0; i--) ids[slot(i)] = ids[slot(i - 1)];
+        ids[head] = id;
+    }
+
+    public synchronized boolean remove(long id) {
+        int at = indexOf(id);
+        if (at < 0) return false;
+        // Close the gap by pulling the older ids up a slot
+        for (int i = at; i < size - 1; i++) ids[slot(i)] = ids[slot(i + 1)];
+        size--;
+        return true;
+    }
+
+    /** Held ids, most recent first. */
+    public synchronized long[] newestFirst() {
+        long[] out = new long[size];
+        for (int i = 0; i < size; i++) out[i] = ids[slot(i)];
+        return out;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return ids.length;
+    }
+
+    /** Approximate heap footprint: object header and fields plus the array. */
+    public static int bytes(int capacity) {
+        return 32 + 16 + 8 * capacity;
+    }
+
+    /** Logical position (0 = newest) of {@code id}, or -1. */
+    private int indexOf(long id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[slot(i)] == id) return i;
+        }
+        return -1;
+    }
+
+    private int slot(int i) {
+        return Math.floorMod(head - i, ids.length);
+    }
+}
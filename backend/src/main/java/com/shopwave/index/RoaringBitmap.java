@@ -0,0 +1,269 @@
+package com.shopwave.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * RoaringBitmap — compressed set of non-negative ints.
+ *
+ * Values are split into 2^16-wide chunks keyed by their high 16 bits. A
+ * sparse chunk is a sorted char[] (2 bytes per value); once it passes 4096
+ * values it becomes a 1024-word bitmap (8 KB, the break-even point), so
+ * memory stays near min(2 bytes/value, 1 bit/id-range). Intersections run
+ * chunk by chunk: array∧array merges, array∧bitmap probes, bitmap∧bitmap
+ * ANDs words with popcount — no per-value boxing anywhere.
+ *
+ * Not thread-safe; FacetIndex guards its bitmaps with a read/write lock.
+ */
+public class RoaringBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Object[] containers = new Object[4];   // char[] (array) or long[] (bitmap)
+    private int[] cardinalities = new int[4];
+    private int size;
+
+    public void add(int value) {
+        char hi = (char) (value >>> 16);
+        char lo = (char) value;
+        int i = indexOf(hi);
+        if (i < 0) {
+            i = -i - 1;
+            insertContainer(i, hi, new char[4]);
+        }
+        Object c = containers[i];
+        if (c instanceof long[] bits) {
+            long mask = 1L << lo;
+            if ((bits[lo >>> 6] & mask) == 0) {
+                bits[lo >>> 6] |= mask;
+                cardinalities[i]++;
+            }
+            return;
+        }
+        char[] arr = (char[]) c;
+        int card = cardinalities[i];
+        int pos = Arrays.binarySearch(arr, 0, card, lo);
+        if (pos >= 0) return;
+        pos = -pos - 1;
+        if (card == ARRAY_MAX) {
+            long[] bits = toBitmap(arr, card);
+            bits[lo >>> 6] |= 1L << lo;
+            containers[i] = bits;
+            cardinalities[i] = card + 1;
+            return;
+        }
+        if (card == arr.length) arr = Arrays.copyOf(arr, Math.min(ARRAY_MAX, card * 2));
+        System.arraycopy(arr, pos, arr, pos + 1, card - pos);
+        arr[pos] = lo;
+        containers[i] = arr;
+        cardinalities[i] = card + 1;
+    }
+
+    public void remove(int value) {
+        int i = indexOf((char) (value >>> 16));
+        if (i < 0) return;
+        char lo = (char) value;
+        Object c = containers[i];
+        if (c instanceof long[] bits) {
+            long mask = 1L << lo;
+            if ((bits[lo >>> 6] & mask) == 0) return;
+            bits[lo >>> 6] &= ~mask;
+            if (--cardinalities[i] == ARRAY_MAX) containers[i] = toArray(bits, ARRAY_MAX);
+        } else {
+            char[] arr = (char[]) c;
+            int card = cardinalities[i];
+            int pos = Arrays.binarySearch(arr, 0, card, lo);
+            if (pos < 0) return;
+            System.arraycopy(arr, pos + 1, arr, pos, card - pos - 1);
+            cardinalities[i] = card - 1;
+        }
+        if (cardinalities[i] == 0) removeContainer(i);
+    }
+
+    public boolean contains(int value) {
+        int i = indexOf((char) (value >>> 16));
+        if (i < 0) return false;
+        char lo = (char) value;
+        Object c = containers[i];
+        if (c instanceof long[] bits) return (bits[lo >>> 6] & (1L << lo)) != 0;
+        return Arrays.binarySearch((char[]) c, 0, cardinalities[i], lo) >= 0;
+    }
+
+    public int cardinality() {
+        int n = 0;
+        for (int i = 0; i < size; i++) n += cardinalities[i];
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** |this ∧ other| without materialising the intersection. */
+    public int andCardinality(RoaringBitmap other) {
+        int n = 0;
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) i++;
+            else if (keys[i] > other.keys[j]) j++;
+            else {
+                n += intersectCount(containers[i], cardinalities[i], other.containers[j], other.cardinalities[j]);
+                i++;
+                j++;
+            }
+        }
+        return n;
+    }
+
+    /** A new bitmap holding this ∧ other. */
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap out = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) i++;
+            else if (keys[i] > other.keys[j]) j++;
+            else {
+                Object a = containers[i], b = other.containers[j];
+                int ca = cardinalities[i], cb = other.cardinalities[j];
+                if (a instanceof long[] wa && b instanceof long[] wb) {
+                    long[] w = new long[WORDS];
+                    int card = 0;
+                    for (int k = 0; k < WORDS; k++) card += Long.bitCount(w[k] = wa[k] & wb[k]);
+                    if (card > 0) out.append(keys[i], card > ARRAY_MAX ? w : toArray(w, card), card);
+                } else {
+                    char[] arr = a instanceof char[] ar ? ar : (char[]) b;
+                    int card = a instanceof char[] ? ca : cb;
+                    Object probe = a instanceof char[] ? b : a;
+                    int probeCard = a instanceof char[] ? cb : ca;
+                    char[] res = new char[Math.min(card, probeCard)];
+                    int n = 0;
+                    for (int k = 0; k < card; k++) {
+                        if (containsLow(probe, probeCard, arr[k])) res[n++] = arr[k];
+                    }
+                    if (n > 0) out.append(keys[i], res, n);
+                }
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            int base = keys[i] << 16;
+            Object c = containers[i];
+            if (c instanceof long[] bits) {
+                for (int w = 0; w < WORDS; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] arr = (char[]) c;
+                for (int k = 0; k < cardinalities[i]; k++) action.accept(base | arr[k]);
+            }
+        }
+    }
+
+    public RoaringBitmap copy() {
+        RoaringBitmap out = new RoaringBitmap();
+        out.keys = Arrays.copyOf(keys, Math.max(4, size));
+        out.containers = new Object[out.keys.length];
+        out.cardinalities = Arrays.copyOf(cardinalities, out.keys.length);
+        for (int i = 0; i < size; i++) {
+            out.containers[i] = containers[i] instanceof long[] bits ? bits.clone() : ((char[]) containers[i]).clone();
+        }
+        out.size = size;
+        return out;
+    }
+
+    // ── internals ────────────────────────────────────────────────────────
+
+    private static int intersectCount(Object a, int ca, Object b, int cb) {
+        if (a instanceof long[] wa && b instanceof long[] wb) {
+            int n = 0;
+            for (int k = 0; k < WORDS; k++) n += Long.bitCount(wa[k] & wb[k]);
+            return n;
+        }
+        if (a instanceof char[] xa && b instanceof char[] xb) {
+            int n = 0, i = 0, j = 0;
+            while (i < ca && j < cb) {
+                if (xa[i] < xb[j]) i++;
+                else if (xa[i] > xb[j]) j++;
+                else { n++; i++; j++; }
+            }
+            return n;
+        }
+        char[] arr = a instanceof char[] x ? x : (char[]) b;
+        long[] bits = a instanceof long[] w ? w : (long[]) b;
+        int card = a instanceof char[] ? ca : cb;
+        int n = 0;
+        for (int k = 0; k < card; k++) {
+            char lo = arr[k];
+            if ((bits[lo >>> 6] & (1L << lo)) != 0) n++;
+        }
+        return n;
+    }
+
+    private static boolean containsLow(Object c, int card, char lo) {
+        if (c instanceof long[] bits) return (bits[lo >>> 6] & (1L << lo)) != 0;
+        return Arrays.binarySearch((char[]) c, 0, card, lo) >= 0;
+    }
+
+    private static long[] toBitmap(char[] arr, int card) {
+        long[] bits = new long[WORDS];
+        for (int k = 0; k < card; k++) bits[arr[k] >>> 6] |= 1L << arr[k];
+        return bits;
+    }
+
+    private static char[] toArray(long[] bits, int card) {
+        char[] arr = new char[card];
+        int n = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                arr[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return arr;
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    /** Appends a container whose key is greater than every existing key. */
+    private void append(char key, Object container, int card) {
+        insertContainer(size, key, container);
+        cardinalities[size - 1] = card;
+    }
+
+    private void insertContainer(int i, char key, Object container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+            cardinalities = Arrays.copyOf(cardinalities, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        System.arraycopy(cardinalities, i, cardinalities, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        cardinalities[i] = 0;
+        size++;
+    }
+
+    private void removeContainer(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        System.arraycopy(cardinalities, i + 1, cardinalities, i, size - i - 1);
+        size--;
+        containers[size] = null;
+    }
+}
@@ -0,0 +1,44 @@
+package com.shopwave.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Tokenizer shared by indexing and querying so both sides agree on terms.
+ *
+ * Splits on anything that is not a letter or digit, lower-cases with
+ * Locale.ROOT and drops a short list of English stop words. Single letters
+ * are dropped too, but single digits are kept ("iphone 5").
+ */
+public final class Tokenizer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is",
+        "it", "of", "on", "or", "the", "to", "with");
+
+    private Tokenizer() {}
+
+    public static List<String> tokenize(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (i > start) {
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (keep(token)) out.add(token);
+            }
+        }
+        return out;
+    }
+
+    private static boolean keep(String token) {
+        if (token.length() == 1) return Character.isDigit(token.charAt(0));
+        return !STOP_WORDS.contains(token);
+    }
+}
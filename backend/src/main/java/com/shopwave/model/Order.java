@@ -1,5 +1,7 @@
 package com.shopwave.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -13,8 +15,11 @@ import java.util.List;
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Order {
 
+    // Assigned before insert so orders placed in one transaction (OrderPipeline)
+    // are batched; 64-bit, so sent as a string to stay exact in JavaScript
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long id;
 
     @Column(name = "order_number", unique = true, nullable = false)
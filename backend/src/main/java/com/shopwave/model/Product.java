@@ -9,6 +9,8 @@ import lombok.Setter;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -19,6 +21,8 @@ import java.util.Map;
 
 @Entity
 @Table(name = "products")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -69,10 +73,17 @@ public class Product {
 
     private String sku;
 
-    @Column(name = "stock")
+    // Only changed through ProductStockRepository and the inventory engine, never by
+    // saving the entity: a stale copy must not overwrite sales folded in meanwhile
+    @Column(name = "stock", updatable = false)
     @Builder.Default
     private Integer stock = 0;
 
+    // Hot-item shard count; only changed through ProductService.setStockShards
+    @Column(name = "stock_shards", updatable = false)
+    @Builder.Default
+    private Integer stockShards = 1;
+
     @Column(name = "low_stock_threshold")
     @Builder.Default
     private Integer lowStockThreshold = 5;
@@ -97,7 +108,9 @@ public class Product {
     @Builder.Default
     private ProductStatus status = ProductStatus.ACTIVE;
 
-    @Column(name = "view_count")
+    // Counters are only ever incremented in bulk by ProductCounters; an entity
+    // save (possibly of a cached, older copy) must not write them back
+    @Column(name = "view_count", updatable = false)
     @Builder.Default
     private Integer viewCount = 0;
 
@@ -108,7 +121,7 @@ public class Product {
     @Builder.Default
     private Integer totalReviews = 0;
 
-    @Column(name = "total_sold")
+    @Column(name = "total_sold", updatable = false)
     @Builder.Default
     private Integer totalSold = 0;
 
@@ -0,0 +1,173 @@
+package com.shopwave.model;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style ids: time-ordered 64-bit longs issued without a database
+ * round trip or any coordination between instances.
+ *
+ * <pre>
+ *  0 | 41 bits: ms since 2024-01-01 | 10 bits: node | 12 bits: sequence
+ * </pre>
+ *
+ *  - Node: {@code SHOPWAVE_NODE_ID} (0..1023) if set, otherwise a hash of
+ *    the host name — the pod name under Kubernetes. Two pods can hash to
+ *    the same node; the sequence then starts at a random point each
+ *    millisecond, so they rarely meet, and the unique indexes on ids and
+ *    order numbers reject the rare duplicate instead of storing it.
+ *  - Issuance is one CAS on an AtomicLong holding (ms, sequence). More
+ *    than 4096 ids in a millisecond, or a clock that steps back, borrow
+ *    the next millisecond, so ids never repeat or go backwards here.
+ *  - {@link #orderNumber} spells an id in Crockford base32: 13 characters,
+ *    no I, L, O or U, sorting in issue order.
+ *
+ * Entities opt in with {@link SnowflakeId}; their inserts can then be
+ * JDBC-batched, which IDENTITY columns prevent.
+ */
+@Slf4j
+public final class SnowflakeIds {
+
+    static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    /** A new millisecond starts its sequence below this, leaving the rest for bursts. */
+    private static final int RANDOM_START = 1 << (SEQUENCE_BITS - 2);
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+    private static final String ORDER_PREFIX = "SW-";
+
+    private static final SnowflakeIds SHARED = new SnowflakeIds(nodeFromEnvironment(), System::currentTimeMillis);
+
+    private final long node;
+    private final LongSupplier clock;
+    /** Last issued (ms since epoch) << SEQUENCE_BITS | sequence. */
+    private final AtomicLong last = new AtomicLong();
+
+    SnowflakeIds(int node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) throw new IllegalArgumentException("Node id out of range: " + node);
+        this.node = node;
+        this.clock = clock;
+    }
+
+    /** The process-wide generator, also used by Hibernate. */
+    public static SnowflakeIds shared() {
+        return SHARED;
+    }
+
+    public long nextId() {
+        for (;;) {
+            long prev = last.get();
+            long now = clock.getAsLong() - EPOCH;
+            long next = now > prev >>> SEQUENCE_BITS
+                ? now << SEQUENCE_BITS | ThreadLocalRandom.current().nextInt(RANDOM_START)
+                : prev + 1;                             // same ms, burst or clock step-back
+            if (last.compareAndSet(prev, next)) {
+                long ms = next >>> SEQUENCE_BITS;
+                return ms << (NODE_BITS + SEQUENCE_BITS) | node << SEQUENCE_BITS | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /** A new order number, e.g. {@code SW-0G8X3M1KZ7Q2P}. */
+    public String nextOrderNumber() {
+        return orderNumber(nextId());
+    }
+
+    public static String orderNumber(long id) {
+        return ORDER_PREFIX + encode(id);
+    }
+
+    /**
+     * The canonical spelling of an order number as a person might type it:
+     * any case, O for 0 and I or L for 1. Other strings come back unchanged.
+     */
+    public static String canonicalOrderNumber(String typed) {
+        String s = typed.trim().toUpperCase();
+        if (!s.startsWith(ORDER_PREFIX) || s.length() != ORDER_PREFIX.length() + ENCODED_LENGTH) return typed;
+        StringBuilder out = new StringBuilder(ORDER_PREFIX);
+        for (int i = ORDER_PREFIX.length(); i < s.length(); i++) {
+            char c = switch (s.charAt(i)) {
+                case 'O' -> '0';
+                case 'I', 'L' -> '1';
+                default -> s.charAt(i);
+            };
+            if (digit(c) < 0) return typed;
+            out.append(c);
+        }
+        return out.toString();
+    }
+
+    /** Milliseconds since the Unix epoch at which {@code id} was issued. */
+    public static long timestamp(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    public static int node(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_NODE;
+    }
+
+    static String encode(long id) {
+        char[] out = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            out[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(out);
+    }
+
+    static long decode(String encoded) {
+        if (encoded.length() != ENCODED_LENGTH) throw new IllegalArgumentException("Not an encoded id: " + encoded);
+        long id = 0;
+        for (int i = 0; i < ENCODED_LENGTH; i++) {
+            int d = digit(encoded.charAt(i));
+            if (d < 0) throw new IllegalArgumentException("Not an encoded id: " + encoded);
+            id = id << 5 | d;
+        }
+        return id;
+    }
+
+    private static int digit(char c) {
+        for (int d = 0; d < ALPHABET.length; d++) {
+            if (ALPHABET[d] == c) return d;
+        }
+        return -1;
+    }
+
+    static int nodeFromEnvironment() {
+        String explicit = System.getenv("SHOPWAVE_NODE_ID");
+        if (explicit != null && !explicit.isBlank()) return Integer.parseInt(explicit.trim());
+        String host = System.getenv().getOrDefault("HOSTNAME", "shopwave");
+        int node = nodeFor(host);
+        log.info("Snowflake node {} derived from host name {}; set SHOPWAVE_NODE_ID to pin it", node, host);
+        return node;
+    }
+
+    /** FNV-1a of the name, folded to the node bits. */
+    static int nodeFor(String name) {
+        int h = 0x811c9dc5;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x01000193;
+        }
+        return (h ^ h >>> NODE_BITS ^ h >>> 2 * NODE_BITS) & MAX_NODE;
+    }
+
+    /** Hibernate side of {@link SnowflakeId}. */
+    public static class Generator implements IdentifierGenerator {
+        @Override
+        public Object generate(SharedSessionContractImplementor session, Object entity) {
+            return SHARED.nextId();
+        }
+    }
+}
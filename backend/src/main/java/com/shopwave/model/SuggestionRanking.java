@@ -0,0 +1,38 @@
+package com.shopwave.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/** Autocomplete ranking weights an admin last set; a single row shared by every replica. */
+@Entity
+@Table(name = "suggestion_ranking")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class SuggestionRanking {
+
+    /** Id of the one row. */
+    public static final short ID = 1;
+
+    @Id
+    @Builder.Default
+    private Short id = ID;
+
+    @Column(name = "weight_sold", nullable = false)
+    private double weightSold;
+
+    @Column(name = "weight_views", nullable = false)
+    private double weightViews;
+
+    @Column(name = "weight_rating", nullable = false)
+    private double weightRating;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
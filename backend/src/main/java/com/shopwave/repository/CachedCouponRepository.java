@@ -0,0 +1,22 @@
+package com.shopwave.repository;
+
+import com.shopwave.model.Coupon;
+
+import java.util.Optional;
+
+/**
+ * Coupon reads and writes routed through the second-level cache.
+ *
+ * Lookups by code resolve through the natural-id cache to the entity
+ * region rather than the query cache: a cached query result carries the
+ * whole row, so it would keep serving an old usage count, whereas the
+ * entity region loses just that row when the count moves
+ * (see {@link CounterUpdates}).
+ */
+public interface CachedCouponRepository {
+
+    Optional<Coupon> findByCodeAndActiveTrue(String code);
+
+    // Atomic increment — replaces the read-modify-write race in OrderService
+    int incrementUsedCount(Long id);
+}
@@ -0,0 +1,31 @@
+package com.shopwave.repository;
+
+import com.shopwave.model.Coupon;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+class CachedCouponRepositoryImpl implements CachedCouponRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Coupon> findByCodeAndActiveTrue(String code) {
+        return entityManager.unwrap(Session.class)
+            .bySimpleNaturalId(Coupon.class)
+            .loadOptional(code)
+            .filter(c -> Boolean.TRUE.equals(c.getActive()));
+    }
+
+    @Override
+    @Transactional
+    public int incrementUsedCount(Long id) {
+        return CounterUpdates.execute(entityManager, Coupon.class, id,
+            "UPDATE coupons SET used_count = used_count + 1 WHERE id = ?1", id);
+    }
+}
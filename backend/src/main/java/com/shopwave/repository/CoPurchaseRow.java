@@ -0,0 +1,10 @@
+package com.shopwave.repository;
+
+/**
+ * One order line reduced to the two ids the co-purchase graph needs.
+ */
+public interface CoPurchaseRow {
+
+    Long getOrderId();
+    Long getProductId();
+}
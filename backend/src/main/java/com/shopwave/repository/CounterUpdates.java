@@ -0,0 +1,52 @@
+package com.shopwave.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Single-row counter updates (stock, coupon usage) that keep the
+ * second-level cache warm.
+ *
+ * A JPQL bulk UPDATE makes Hibernate drop the entity's entire cache region,
+ * so every order would empty the product cache. These run as native SQL
+ * against a query space no entity maps to — nothing is invalidated
+ * wholesale — and evict just the updated row, once now and again after
+ * commit, so a reader that cached the old row in between doesn't keep it.
+ * Set-based updates run through JDBC use {@link #evict} the same way.
+ */
+final class CounterUpdates {
+
+    private static final String QUERY_SPACE = "shopwave_counters";
+
+    private CounterUpdates() {}
+
+    static int execute(EntityManager entityManager, Class<?> entity, Object id, String sql, Object... params) {
+        Query query = entityManager.createNativeQuery(sql);
+        for (int i = 0; i < params.length; i++) query.setParameter(i + 1, params[i]);
+        query.unwrap(NativeQuery.class).addSynchronizedQuerySpace(QUERY_SPACE);
+        int updated = query.executeUpdate();
+        if (updated > 0) evict(entityManager, entity, List.of(id));
+        return updated;
+    }
+
+    /** Evicts rows changed outside Hibernate, now and again after the transaction completes. */
+    static void evict(EntityManager entityManager, Class<?> entity, Collection<?> changed) {
+        List<?> ids = List.copyOf(changed);
+        jakarta.persistence.Cache cache = entityManager.getEntityManagerFactory().getCache();
+        ids.forEach(id -> cache.evict(entity, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(id -> cache.evict(entity, id));
+                }
+            });
+        }
+    }
+}
@@ -2,20 +2,6 @@ package com.shopwave.repository;
 
 import com.shopwave.model.Coupon;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
-
-public interface CouponRepository extends JpaRepository<Coupon, Long> {
-
-    Optional<Coupon> findByCodeAndActiveTrue(String code);
-
-    // FIXED: atomic increment — replaces read-modify-write race in OrderService
-    @Modifying
-    @Transactional
-    @Query("UPDATE Coupon c SET c.usedCount = c.usedCount + 1 WHERE c.id = :id")
-    int incrementUsedCount(@Param("id") Long id);
-}
\ No newline at end of file
+public interface CouponRepository extends JpaRepository<Coupon, Long>, CachedCouponRepository {
+}
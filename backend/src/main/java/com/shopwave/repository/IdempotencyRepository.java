@@ -0,0 +1,70 @@
+package com.shopwave.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Idempotency-key table (V14, V15). Plain JDBC, autocommitted unless the
+ * caller has a transaction: a claim must be visible to other instances at
+ * once, and a response is stored in the transaction of the request that
+ * produced it.
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyRepository {
+
+    /** A stored row; {@code status} is null while the request is still executing. */
+    public record Row(byte[] fingerprint, Integer status, String contentType, String location, byte[] body) {}
+
+    // Inserts a fresh claim, or takes over an expired row or an executing one
+    // whose claimant let its lock lapse; anything else is left alone.
+    private static final String CLAIM =
+        "INSERT INTO idempotency_keys (key_hash, fingerprint, claim_token, locked_until, expires_at) " +
+        "VALUES (?, ?, ?, now() + ? * INTERVAL '1 millisecond', now() + ? * INTERVAL '1 millisecond') " +
+        "ON CONFLICT (key_hash) DO UPDATE SET fingerprint = EXCLUDED.fingerprint, " +
+        "    claim_token = EXCLUDED.claim_token, status = NULL, " +
+        "    content_type = NULL, location = NULL, body = NULL, " +
+        "    locked_until = EXCLUDED.locked_until, expires_at = EXCLUDED.expires_at " +
+        "WHERE idempotency_keys.expires_at < now() " +
+        "   OR (idempotency_keys.status IS NULL AND idempotency_keys.locked_until < now())";
+
+    private static final String FIND =
+        "SELECT fingerprint, status, content_type, location, body FROM idempotency_keys " +
+        "WHERE key_hash = ? AND expires_at >= now()";
+
+    private static final String COMPLETE =
+        "UPDATE idempotency_keys SET status = ?, content_type = ?, location = ?, body = ? " +
+        "WHERE key_hash = ? AND claim_token = ? AND status IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Claims the key for execution under {@code token}; false if another request holds or completed it. */
+    public boolean claim(byte[] keyHash, byte[] fingerprint, byte[] token, Duration lock, Duration ttl) {
+        return jdbcTemplate.update(CLAIM, keyHash, fingerprint, token, lock.toMillis(), ttl.toMillis()) > 0;
+    }
+
+    public Row find(byte[] keyHash) {
+        List<Row> rows = jdbcTemplate.query(FIND, (rs, i) -> new Row(rs.getBytes(1),
+            rs.getObject(2, Integer.class), rs.getString(3), rs.getString(4), rs.getBytes(5)), keyHash);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /** Stores the response of the claim {@code token}; false if that claim was taken over meanwhile. */
+    public boolean complete(byte[] keyHash, byte[] token, int status, String contentType, String location, byte[] body) {
+        return jdbcTemplate.update(COMPLETE, status, contentType, location, body, keyHash, token) > 0;
+    }
+
+    /** Drops the claim {@code token} after its request failed, so a retry executes again. */
+    public void release(byte[] keyHash, byte[] token) {
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE key_hash = ? AND claim_token = ? AND status IS NULL",
+            keyHash, token);
+    }
+
+    public int purgeExpired() {
+        return jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at < now()");
+    }
+}
@@ -0,0 +1,235 @@
+package com.shopwave.repository;
+
+import com.shopwave.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lease, journal and holder tables behind the inventory engine (V12). Plain
+ * JDBC; every method runs in the caller's transaction.
+ *
+ * Lock order is always holder rows first, then the products row, then
+ * lease rows, so a lease refill, a journal fold and a reclaim can't
+ * deadlock each other. A refill share-locks its holder row and a reclaim
+ * locks the rows it takes over, so a holder is never refilled once
+ * reclaimed and never reclaimed while it is heartbeating.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InventoryRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String LOCK_POOL =
+        "SELECT COALESCE(p.stock, 0) - " +
+        "       (SELECT COALESCE(SUM(l.units), 0) FROM inventory_leases l WHERE l.product_id = p.id), " +
+        "       p.stock_shards " +
+        "FROM products p WHERE p.id = ? FOR UPDATE OF p";
+
+    private static final String ADD_LEASE =
+        "INSERT INTO inventory_leases (holder, product_id, units) VALUES (?, ?, ?) " +
+        "ON CONFLICT (holder, product_id) DO UPDATE SET units = inventory_leases.units + EXCLUDED.units";
+
+    private static final String RETURN_UNITS =
+        "UPDATE inventory_leases SET units = units - ? WHERE holder = ? AND product_id = ?";
+
+    private static final String JOURNAL =
+        "INSERT INTO inventory_journal (holder, product_id, quantity, order_id) VALUES (?, ?, ?, ?)";
+
+    private static final String LOCK_JOURNALED =
+        "SELECT p.id FROM products p " +
+        "WHERE p.id IN (SELECT j.product_id FROM inventory_journal j WHERE j.holder = ANY (?)) " +
+        "ORDER BY p.id FOR UPDATE";
+
+    // Restricted to the products locked above: a journal row committed since
+    // then for another product waits for the next fold.
+    private static final String FOLD =
+        "WITH j AS (" +
+        "    DELETE FROM inventory_journal WHERE holder = ANY (?) AND product_id = ANY (?)" +
+        "    RETURNING holder, product_id, quantity" +
+        "), per_lease AS (" +
+        "    SELECT holder, product_id, SUM(quantity) AS qty FROM j GROUP BY holder, product_id" +
+        "), leases AS (" +
+        "    UPDATE inventory_leases l SET units = l.units - s.qty FROM per_lease s" +
+        "    WHERE l.holder = s.holder AND l.product_id = s.product_id" +
+        ") " +
+        "UPDATE products p SET stock = p.stock - t.qty " +
+        "FROM (SELECT product_id, SUM(qty) AS qty FROM per_lease GROUP BY product_id) t " +
+        "WHERE p.id = t.product_id";
+
+    private static final String LOCK_PRODUCT =
+        "SELECT 1 FROM products WHERE id = ? FOR UPDATE";
+
+    // Every holder's journaled sales of the product are settled against
+    // their leases and dropped, since the new count already reflects them.
+    private static final String SET_STOCK =
+        "WITH j AS (" +
+        "    DELETE FROM inventory_journal WHERE product_id = ? RETURNING holder, quantity" +
+        "), per_lease AS (" +
+        "    SELECT holder, SUM(quantity) AS qty FROM j GROUP BY holder" +
+        "), leases AS (" +
+        "    UPDATE inventory_leases l SET units = l.units - s.qty FROM per_lease s" +
+        "    WHERE l.holder = s.holder AND l.product_id = ?" +
+        ") " +
+        "UPDATE products SET stock = ? WHERE id = ?";
+
+    private static final String REGISTER =
+        "INSERT INTO inventory_holders (holder, heartbeat_at) VALUES (?, now()) " +
+        "ON CONFLICT (holder) DO UPDATE SET heartbeat_at = now()";
+
+    // An update, not an upsert: a holder that was reclaimed must find out, not quietly come back
+    private static final String HEARTBEAT =
+        "UPDATE inventory_holders SET heartbeat_at = now() WHERE holder = ?";
+
+    private static final String LOCK_HOLDER =
+        "SELECT 1 FROM inventory_holders WHERE holder = ? FOR SHARE";
+
+    // Re-checked after the lock is granted, so a heartbeat that committed meanwhile counts
+    private static final String LOCK_HOLDERS =
+        "SELECT holder, heartbeat_at >= now() - ? * INTERVAL '1 second' FROM inventory_holders " +
+        "WHERE holder = ANY (?) ORDER BY holder FOR UPDATE";
+
+    // Silent holders, plus holders that left leases or journal rows without a
+    // holder row (e.g. reclaimed while an order of theirs was still committing)
+    private static final String DEAD_HOLDERS =
+        "SELECT holder FROM inventory_holders " +
+        "WHERE heartbeat_at < now() - ? * INTERVAL '1 second' AND holder <> ? " +
+        "UNION " +
+        "SELECT o.holder FROM (" +
+        "    SELECT holder FROM inventory_leases UNION SELECT holder FROM inventory_journal" +
+        ") o " +
+        "WHERE o.holder <> ? AND NOT EXISTS (SELECT 1 FROM inventory_holders h WHERE h.holder = o.holder)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * A product's units not held by any lease (negative if stock was cut
+     * below what is leased) and its hot-item shard count.
+     */
+    public record Pool(int free, int shards) {}
+
+    /** Locks the product row and reads its pool; null for an unknown product. */
+    public Pool lockPool(long productId) {
+        List<Pool> pool = jdbcTemplate.query(LOCK_POOL,
+            (rs, i) -> new Pool(rs.getInt(1), rs.getInt(2)), productId);
+        return pool.isEmpty() ? null : pool.get(0);
+    }
+
+    public void addLease(String holder, long productId, int units) {
+        jdbcTemplate.update(ADD_LEASE, holder, productId, units);
+    }
+
+    /** Gives unsold leased units back to the free pool. */
+    public void returnUnits(String holder, long productId, int units) {
+        jdbcTemplate.update(RETURN_UNITS, units, holder, productId);
+    }
+
+    /** Records an order's sales (product id → units) for a later fold; one batch. */
+    public void journal(String holder, Long orderId, Map<Long, Integer> lines) {
+        jdbcTemplate.batchUpdate(JOURNAL, List.copyOf(lines.entrySet()), BATCH_SIZE, (ps, line) -> {
+            ps.setString(1, holder);
+            ps.setLong(2, line.getKey());
+            ps.setInt(3, line.getValue());
+            ps.setObject(4, orderId);
+        });
+    }
+
+    /**
+     * Applies the holders' journaled sales to products.stock and to their
+     * leases, and deletes the rows. Returns the products whose stock changed.
+     */
+    public List<Long> fold(Collection<String> holders) {
+        if (holders.isEmpty()) return List.of();
+        List<Long> ids = jdbcTemplate.query(LOCK_JOURNALED,
+            ps -> ps.setArray(1, varchars(ps.getConnection(), holders)), (rs, i) -> rs.getLong(1));
+        if (ids.isEmpty()) return ids;
+        jdbcTemplate.update(FOLD, ps -> {
+            ps.setArray(1, varchars(ps.getConnection(), holders));
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", ids.toArray()));
+        });
+        CounterUpdates.evict(entityManager, Product.class, ids);
+        return ids;
+    }
+
+    /**
+     * Sets the product's stock to a counted value, folding the sales
+     * journaled for it so they aren't subtracted again. False for an
+     * unknown product.
+     */
+    public boolean setStock(long productId, int stock) {
+        if (jdbcTemplate.queryForList(LOCK_PRODUCT, Integer.class, productId).isEmpty()) return false;
+        jdbcTemplate.update(SET_STOCK, productId, productId, stock, productId);
+        CounterUpdates.evict(entityManager, Product.class, List.of(productId));
+        return true;
+    }
+
+    /** Removes units from products.stock; lock the row with {@link #lockPool} and check the free pool first. */
+    public void removeUnits(long productId, int units) {
+        jdbcTemplate.update("UPDATE products SET stock = stock - ? WHERE id = ?", units, productId);
+        CounterUpdates.evict(entityManager, Product.class, List.of(productId));
+    }
+
+    /** Drops the holders' holder rows and leases; fold their journals first. */
+    public void forget(Collection<String> holders) {
+        if (holders.isEmpty()) return;
+        jdbcTemplate.update("DELETE FROM inventory_holders WHERE holder = ANY (?)",
+            ps -> ps.setArray(1, varchars(ps.getConnection(), holders)));
+        jdbcTemplate.update("DELETE FROM inventory_leases WHERE holder = ANY (?)",
+            ps -> ps.setArray(1, varchars(ps.getConnection(), holders)));
+    }
+
+    /**
+     * Locks the holders' rows and returns those that may be reclaimed: all of
+     * them if {@code timeout} is null, otherwise the ones still silent for
+     * {@code timeout}, plus any without a holder row.
+     */
+    public List<String> lockReclaimable(Collection<String> holders, Duration timeout) {
+        if (holders.isEmpty()) return List.of();
+        List<String> alive = new ArrayList<>();
+        jdbcTemplate.query(LOCK_HOLDERS, ps -> {
+            ps.setLong(1, timeout != null ? timeout.toSeconds() : 0);
+            ps.setArray(2, varchars(ps.getConnection(), holders));
+        }, rs -> {
+            if (timeout != null && rs.getBoolean(2)) alive.add(rs.getString(1));
+        });
+        return holders.stream().filter(h -> !alive.contains(h)).toList();
+    }
+
+    /** Registers the holder, or takes its row back after it was reclaimed. */
+    public void register(String holder) {
+        jdbcTemplate.update(REGISTER, holder);
+    }
+
+    /** False if the holder row is gone, i.e. another instance reclaimed this holder. */
+    public boolean heartbeat(String holder) {
+        return jdbcTemplate.update(HEARTBEAT, holder) > 0;
+    }
+
+    /** Share-locks the holder row for a lease refill; false if the holder was reclaimed. */
+    public boolean lockHolder(String holder) {
+        return !jdbcTemplate.queryForList(LOCK_HOLDER, Integer.class, holder).isEmpty();
+    }
+
+    public List<String> deadHolders(String self, Duration timeout) {
+        return jdbcTemplate.queryForList(DEAD_HOLDERS, String.class, timeout.toSeconds(), self, self);
+    }
+
+    private static Array varchars(Connection c, Collection<String> values) throws SQLException {
+        return c.createArrayOf("varchar", values.toArray());
+    }
+}
@@ -1,14 +1,19 @@
 package com.shopwave.repository;
 
 import com.shopwave.model.Order;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
@@ -22,4 +27,13 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     Optional<Order> findByUserIdAndOrderNumber(
             @Param("userId") Long userId,
             @Param("orderNumber") String orderNumber);
-}
\ No newline at end of file
+
+    // Co-purchase graph build; ordered by order so each basket arrives as one consecutive run
+    @Query("SELECT i.order.id AS orderId, i.product.id AS productId FROM OrderItem i " +
+           "WHERE i.order.status NOT IN :excluded ORDER BY i.order.id")
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<CoPurchaseRow> streamCoPurchaseRows(@Param("excluded") Collection<Order.OrderStatus> excluded);
+}
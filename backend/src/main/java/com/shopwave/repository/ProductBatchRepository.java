@@ -0,0 +1,15 @@
+package com.shopwave.repository;
+
+import com.shopwave.model.Product;
+
+import java.util.List;
+
+/**
+ * Batched lookup by id that reads the second-level cache first and loads
+ * only the misses, in one IN query.
+ */
+public interface ProductBatchRepository {
+
+    /** Products for {@code ids}, in the same order; ids that no longer exist are skipped. */
+    List<Product> multiGet(List<Long> ids);
+}
@@ -0,0 +1,29 @@
+package com.shopwave.repository;
+
+import com.shopwave.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Objects;
+
+class ProductBatchRepositoryImpl implements ProductBatchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Product> multiGet(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        return entityManager.unwrap(Session.class)
+            .byMultipleIds(Product.class)
+            .enableOrderedReturn(true)
+            .multiLoad(ids)
+            .stream()
+            .filter(Objects::nonNull)
+            .toList();
+    }
+}
@@ -0,0 +1,55 @@
+package com.shopwave.repository;
+
+import com.shopwave.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Bulk increments of products.view_count / total_sold.
+ *
+ * One statement per flush, joining the table against three parallel
+ * arrays, instead of an UPDATE per view or sale — so a hot product row is
+ * written once per flush however popular it is. updated_at is left alone:
+ * counters are not catalog edits. The columns are not updatable through
+ * Hibernate, so the flushed rows are evicted from the second-level cache.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductCounterRepository {
+
+    private static final String ADD_COUNTS =
+        "UPDATE products AS p " +
+        "SET view_count = COALESCE(p.view_count, 0) + d.views, " +
+        "    total_sold = COALESCE(p.total_sold, 0) + d.sold " +
+        "FROM unnest(CAST(? AS bigint[]), CAST(? AS bigint[]), CAST(? AS bigint[])) AS d(id, views, sold) " +
+        "WHERE p.id = d.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Adds {@code views[i]} and {@code sold[i]} to product {@code ids[i]}; returns rows updated. */
+    public int addCounts(long[] ids, long[] views, long[] sold) {
+        if (ids.length == 0) return 0;
+        int updated = jdbcTemplate.update(ADD_COUNTS, ps -> {
+            Connection c = ps.getConnection();
+            ps.setArray(1, bigints(c, ids));
+            ps.setArray(2, bigints(c, views));
+            ps.setArray(3, bigints(c, sold));
+        });
+        CounterUpdates.evict(entityManager, Product.class, Arrays.stream(ids).boxed().toList());
+        return updated;
+    }
+
+    private static java.sql.Array bigints(Connection c, long[] values) throws SQLException {
+        return c.createArrayOf("bigint", Arrays.stream(values).boxed().toArray());
+    }
+}
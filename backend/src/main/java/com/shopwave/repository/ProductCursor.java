@@ -0,0 +1,95 @@
+package com.shopwave.repository;
+
+import com.shopwave.exception.BadRequestException;
+import com.shopwave.model.Product;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * Position in a keyset-paged product listing: the sort, its direction and
+ * the (sort key, id) of the last row already returned. A cursor with no
+ * last row is the first page.
+ *
+ * Clients only see it as an opaque URL-safe token ({@link #encode()}); the
+ * sort travels inside the token so a continuation cannot be replayed
+ * against a different ordering.
+ */
+public record ProductCursor(SortKey sort, boolean ascending, Object lastKey, Long lastId) {
+
+    /** Whitelisted sort fields, each with the HQL expression it seeks on. */
+    public enum SortKey {
+        CREATED_AT("createdAt", "p.createdAt", Product::getCreatedAt, LocalDateTime::parse),
+        PRICE("price", "p.price", Product::getPrice, BigDecimal::new),
+        NAME("name", "p.name", Product::getName, s -> s),
+        // Unrated / unsold rows sort as 0, matching the expression indexes in V9
+        AVERAGE_RATING("averageRating", "coalesce(p.averageRating, 0.0)",
+            p -> p.getAverageRating() != null ? p.getAverageRating() : 0.0, Double::valueOf),
+        TOTAL_SOLD("totalSold", "coalesce(p.totalSold, 0)",
+            p -> p.getTotalSold() != null ? p.getTotalSold() : 0, Integer::valueOf);
+
+        private final String param;
+        private final String expression;
+        private final Function<Product, Object> extractor;
+        private final Function<String, Object> parser;
+
+        SortKey(String param, String expression, Function<Product, Object> extractor, Function<String, Object> parser) {
+            this.param = param;
+            this.expression = expression;
+            this.extractor = extractor;
+            this.parser = parser;
+        }
+
+        public String param() {
+            return param;
+        }
+
+        public String expression() {
+            return expression;
+        }
+
+        public static SortKey fromParam(String param) {
+            for (SortKey k : values()) if (k.param.equals(param)) return k;
+            return null;
+        }
+    }
+
+    private static final String VERSION = "1";
+
+    public static ProductCursor first(SortKey sort, boolean ascending) {
+        return new ProductCursor(sort, ascending, null, null);
+    }
+
+    public boolean isFirst() {
+        return lastId == null;
+    }
+
+    /** The cursor continuing after {@code last}. */
+    public ProductCursor after(Product last) {
+        return new ProductCursor(sort, ascending, sort.extractor.apply(last), last.getId());
+    }
+
+    public String encode() {
+        String raw = String.join(":", VERSION, sort.param, ascending ? "a" : "d",
+            String.valueOf(lastId), String.valueOf(lastKey));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // The key is last and may itself contain ':' (names)
+            String[] parts = raw.split(":", 5);
+            SortKey sort = parts.length == 5 && VERSION.equals(parts[0]) ? SortKey.fromParam(parts[1]) : null;
+            if (sort == null || !(parts[2].equals("a") || parts[2].equals("d"))) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return new ProductCursor(sort, parts[2].equals("a"), sort.parser.apply(parts[4]), Long.valueOf(parts[3]));
+        } catch (IllegalArgumentException | java.time.format.DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
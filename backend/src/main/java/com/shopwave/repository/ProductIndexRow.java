@@ -0,0 +1,33 @@
+package com.shopwave.repository;
+
+import com.shopwave.model.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Narrow read-only view of a product row for building the search indexes.
+ *
+ * Skips images, highlights, pricing history and the category join, so no
+ * entity, proxy or persistence-context entry is created per row.
+ */
+public interface ProductIndexRow {
+
+    Long getId();
+    String getName();
+    String getBrand();
+    String getSku();
+    String getDescription();
+    Map<String, String> getSpecifications();
+    Long getCategoryId();
+    BigDecimal getPrice();
+    Boolean getFreeShipping();
+    Double getAverageRating();
+    Integer getTotalSold();
+    Integer getViewCount();
+    Integer getStock();
+    LocalDateTime getUpdatedAt();
+    Product.ProductStatus getStatus();
+    Boolean getIsActive();
+}
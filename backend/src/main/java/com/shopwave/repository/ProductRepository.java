@@ -1,18 +1,22 @@
 package com.shopwave.repository;
 
 import com.shopwave.model.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductSeekRepository, ProductStockRepository,
+        ProductBatchRepository {
 
     Optional<Product> findBySlug(String slug);
 
@@ -32,19 +36,34 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
            "LOWER(p.description) LIKE LOWER(CONCAT('%', :query, '%')))")
     Page<Product> searchProducts(@Param("query") String query, Pageable pageable);
 
-    @Query("SELECT p FROM Product p WHERE p.isActive = true ORDER BY p.totalReviews DESC, p.averageRating DESC")
+    // total_sold is kept current by ProductCounters; the coalesce matches idx_products_active_sold_id (V9)
+    @Query("SELECT p FROM Product p WHERE p.isActive = true ORDER BY coalesce(p.totalSold, 0) DESC, p.totalReviews DESC")
     List<Product> findBestsellerProducts(Pageable pageable);
 
     @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.isFeatured = true")
     List<Product> findFeaturedProducts(Pageable pageable);
 
-    @Modifying
-    @Transactional
-    @Query("UPDATE Product p SET p.stock = p.stock - :quantity WHERE p.id = :productId AND p.stock >= :quantity")
-    int decrementStock(@Param("productId") Long productId, @Param("quantity") int quantity);
+    String INDEX_ROW_SELECT =
+        "SELECT p.id AS id, p.name AS name, p.brand AS brand, p.sku AS sku, p.description AS description, " +
+        "p.specifications AS specifications, p.category.id AS categoryId, p.price AS price, " +
+        "p.freeShipping AS freeShipping, p.averageRating AS averageRating, p.totalSold AS totalSold, " +
+        "p.viewCount AS viewCount, p.stock AS stock, p.updatedAt AS updatedAt, p.status AS status, p.isActive AS isActive " +
+        "FROM Product p";
 
-    @Modifying
-    @Transactional
-    @Query("UPDATE Product p SET p.stock = p.stock + :quantity WHERE p.id = :productId")
-    int incrementStock(@Param("productId") Long productId, @Param("quantity") int quantity);
+    // Forward-only cursor for the search-index bootstrap: rows are fetched 500 at a
+    // time and never enter the persistence context. Must run inside a transaction.
+    @Query(INDEX_ROW_SELECT)
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<ProductIndexRow> streamIndexRows();
+
+    // Catch-up after restoring the search snapshot; backed by idx_products_updated_at (V8)
+    @Query(INDEX_ROW_SELECT + " WHERE p.updatedAt >= :since")
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<ProductIndexRow> streamIndexRowsUpdatedSince(@Param("since") LocalDateTime since);
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.shopwave.repository;
+
+import com.shopwave.model.Product;
+
+import java.util.List;
+
+/**
+ * Keyset ("seek") paging over the public product listings.
+ *
+ * Each page is {@code WHERE key >= :lastKey AND (key > :lastKey OR id > :lastId)
+ * ORDER BY key, id LIMIT n} (reversed for descending sorts) against a
+ * composite index on (key, id): the index is entered at the last row seen,
+ * so page 500 costs the same as page 1, and no COUNT(*) is run.
+ */
+public interface ProductSeekRepository {
+
+    /** Up to {@code limit} active products after {@code cursor}; {@code categoryId} null means the whole catalog. */
+    List<Product> seekActive(ProductCursor cursor, Long categoryId, int limit);
+}
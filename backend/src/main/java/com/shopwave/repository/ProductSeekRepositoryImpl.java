@@ -0,0 +1,44 @@
+package com.shopwave.repository;
+
+import com.shopwave.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.List;
+
+class ProductSeekRepositoryImpl implements ProductSeekRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Product> seekActive(ProductCursor cursor, Long categoryId, int limit) {
+        String key = cursor.sort().expression();
+        String dir = cursor.ascending() ? "ASC" : "DESC";
+        // Filters are literals, not parameters, so the planner can match the
+        // partial indexes in V9 even with a generic prepared-statement plan.
+        StringBuilder hql = new StringBuilder("SELECT p FROM Product p WHERE ");
+        hql.append(categoryId != null
+            ? "p.category.id = :categoryId AND p.status = com.shopwave.model.Product$ProductStatus.ACTIVE"
+            : "p.isActive = true");
+        if (!cursor.isFirst()) {
+            // (key, id) > (:lastKey, :lastId), spelled out: the leading range
+            // term is the index bound, the OR resolves ties on the key by id.
+            String op = cursor.ascending() ? ">" : "<";
+            hql.append(" AND ").append(key).append(' ').append(op).append("= :lastKey")
+               .append(" AND (").append(key).append(' ').append(op).append(" :lastKey")
+               .append(" OR p.id ").append(op).append(" :lastId)");
+        }
+        hql.append(" ORDER BY ").append(key).append(' ').append(dir).append(", p.id ").append(dir);
+
+        TypedQuery<Product> query = entityManager.createQuery(hql.toString(), Product.class)
+            .setMaxResults(limit);
+        if (categoryId != null) query.setParameter("categoryId", categoryId);
+        if (!cursor.isFirst()) {
+            query.setParameter("lastKey", cursor.lastKey());
+            query.setParameter("lastId", cursor.lastId());
+        }
+        return query.getResultList();
+    }
+}
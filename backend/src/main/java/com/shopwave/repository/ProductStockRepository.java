@@ -0,0 +1,33 @@
+package com.shopwave.repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Atomic stock adjustments; see {@link CounterUpdates} for how they stay
+ * friendly to the second-level cache.
+ */
+public interface ProductStockRepository {
+
+    /** Takes {@code quantity} units if that many are left; returns 0 when stock is short. */
+    int decrementStock(Long productId, int quantity);
+
+    /**
+     * Takes every quantity in {@code quantities} (product id → units) in one
+     * statement, or none of them. Rows are locked in ascending id order, so
+     * two checkouts with overlapping products queue instead of deadlocking.
+     * Returns the ids that were short or missing; empty means all were taken.
+     */
+    List<Long> decrementStock(Map<Long, Integer> quantities);
+
+    int incrementStock(Long productId, int quantity);
+
+    /** Sets an absolute stock count (inventory engine off; see InventoryEngine#setStock); returns rows updated. */
+    int setStock(Long productId, int stock);
+
+    /** Sets the hot-item shard count read by the inventory engine; returns rows updated. */
+    int setStockShards(Long productId, int shards);
+
+    /** Returns units to every product in {@code quantities}, locking rows in id order; returns rows updated. */
+    int incrementStock(Map<Long, Integer> quantities);
+}
@@ -0,0 +1,109 @@
+package com.shopwave.repository;
+
+import com.shopwave.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+class ProductStockRepositoryImpl implements ProductStockRepository {
+
+    // Lock every requested row in id order, find the lines that can't be
+    // met, and update only if there are none. The UPDATE's NOT EXISTS is an
+    // uncorrelated subquery, so the locks are all taken before it writes
+    // anything; FOR UPDATE reads the latest committed stock.
+    private static final String DECREMENT_ALL =
+        "WITH wanted AS (" +
+        "    SELECT id, qty FROM unnest(CAST(? AS bigint[]), CAST(? AS int[])) AS w(id, qty)" +
+        "), locked AS (" +
+        "    SELECT p.id, p.stock FROM products p" +
+        "    WHERE p.id IN (SELECT id FROM wanted)" +
+        "    ORDER BY p.id FOR UPDATE" +
+        "), lacking AS (" +
+        "    SELECT w.id FROM wanted w LEFT JOIN locked l ON l.id = w.id" +
+        "    WHERE l.id IS NULL OR COALESCE(l.stock, 0) < w.qty" +
+        "), taken AS (" +
+        "    UPDATE products p SET stock = p.stock - w.qty FROM wanted w" +
+        "    WHERE p.id = w.id AND NOT EXISTS (SELECT 1 FROM lacking)" +
+        "    RETURNING p.id" +
+        ") " +
+        "SELECT id FROM lacking ORDER BY id";
+
+    private static final String INCREMENT_ALL =
+        "WITH given AS (" +
+        "    SELECT id, qty FROM unnest(CAST(? AS bigint[]), CAST(? AS int[])) AS g(id, qty)" +
+        "), locked AS (" +
+        "    SELECT p.id FROM products p" +
+        "    WHERE p.id IN (SELECT id FROM given)" +
+        "    ORDER BY p.id FOR UPDATE" +
+        ") " +
+        "UPDATE products p SET stock = p.stock + g.qty FROM given g, locked l " +
+        "WHERE p.id = g.id AND l.id = p.id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    ProductStockRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public int decrementStock(Long productId, int quantity) {
+        return CounterUpdates.execute(entityManager, Product.class, productId,
+            "UPDATE products SET stock = stock - ?1 WHERE id = ?2 AND stock >= ?1", quantity, productId);
+    }
+
+    @Override
+    @Transactional
+    public List<Long> decrementStock(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) return List.of();
+        List<Long> shortIds = jdbcTemplate.query(DECREMENT_ALL, ps -> bind(ps, quantities), (rs, i) -> rs.getLong(1));
+        if (shortIds.isEmpty()) CounterUpdates.evict(entityManager, Product.class, quantities.keySet());
+        return shortIds;
+    }
+
+    @Override
+    @Transactional
+    public int incrementStock(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) return 0;
+        int updated = jdbcTemplate.update(INCREMENT_ALL, ps -> bind(ps, quantities));
+        if (updated > 0) CounterUpdates.evict(entityManager, Product.class, quantities.keySet());
+        return updated;
+    }
+
+    private static void bind(PreparedStatement ps, Map<Long, Integer> quantities) throws SQLException {
+        Connection c = ps.getConnection();
+        ps.setArray(1, c.createArrayOf("bigint", quantities.keySet().toArray()));
+        ps.setArray(2, c.createArrayOf("integer", quantities.values().toArray()));
+    }
+
+    @Override
+    @Transactional
+    public int incrementStock(Long productId, int quantity) {
+        return CounterUpdates.execute(entityManager, Product.class, productId,
+            "UPDATE products SET stock = stock + ?1 WHERE id = ?2", quantity, productId);
+    }
+
+    @Override
+    @Transactional
+    public int setStock(Long productId, int stock) {
+        return CounterUpdates.execute(entityManager, Product.class, productId,
+            "UPDATE products SET stock = ?1 WHERE id = ?2", stock, productId);
+    }
+
+    @Override
+    @Transactional
+    public int setStockShards(Long productId, int shards) {
+        return CounterUpdates.execute(entityManager, Product.class, productId,
+            "UPDATE products SET stock_shards = ?1 WHERE id = ?2", shards, productId);
+    }
+}
@@ -0,0 +1,65 @@
+package com.shopwave.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The recently_viewed table (V10). Plain JDBC: rows are written in batched
+ * upserts by the write-behind buffer and are never loaded as entities.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RecentlyViewedRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String UPSERT =
+        "INSERT INTO recently_viewed (user_id, product_id, viewed_at) VALUES (?, ?, ?) " +
+        "ON CONFLICT (user_id, product_id) DO UPDATE " +
+        "SET viewed_at = GREATEST(recently_viewed.viewed_at, EXCLUDED.viewed_at)";
+
+    // Keeps the newest `keep` rows of each listed user
+    private static final String TRIM =
+        "DELETE FROM recently_viewed WHERE (user_id, product_id) IN (" +
+        "  SELECT user_id, product_id FROM (" +
+        "    SELECT user_id, product_id," +
+        "           row_number() OVER (PARTITION BY user_id ORDER BY viewed_at DESC) AS rn" +
+        "    FROM recently_viewed WHERE user_id = ANY (?)) ranked" +
+        "  WHERE rn > ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record View(long userId, long productId, Instant viewedAt) {}
+
+    public void upsert(List<View> views) {
+        jdbcTemplate.batchUpdate(UPSERT, views, BATCH_SIZE, (ps, v) -> {
+            ps.setLong(1, v.userId());
+            ps.setLong(2, v.productId());
+            ps.setTimestamp(3, Timestamp.from(v.viewedAt()));
+        });
+    }
+
+    public int trim(Collection<Long> userIds, int keep) {
+        if (userIds.isEmpty()) return 0;
+        return jdbcTemplate.update(TRIM, ps -> {
+            Array users = ps.getConnection().createArrayOf("bigint", userIds.toArray());
+            ps.setArray(1, users);
+            ps.setInt(2, keep);
+        });
+    }
+
+    /** The user's newest {@code limit} views, most recent first. */
+    public List<View> findRecent(long userId, int limit) {
+        return jdbcTemplate.query(
+            "SELECT product_id, viewed_at FROM recently_viewed WHERE user_id = ? ORDER BY viewed_at DESC LIMIT ?",
+            (rs, i) -> new View(userId, rs.getLong(1), rs.getTimestamp(2).toInstant()),
+            userId, limit);
+    }
+}
@@ -0,0 +1,8 @@
+package com.shopwave.repository;
+
+import com.shopwave.model.SuggestionRanking;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/** The suggestion_ranking table (V16); at most the one row {@link SuggestionRanking#ID}. */
+public interface SuggestionRankingRepository extends JpaRepository<SuggestionRanking, Short> {
+}
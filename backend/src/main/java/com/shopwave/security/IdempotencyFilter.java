@@ -0,0 +1,171 @@
+package com.shopwave.security;
+
+import com.shopwave.service.IdempotencyStore;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Honours an {@code Idempotency-Key} header on POST /orders and
+ * POST /cart/items: the first request with a key runs, and a retry with
+ * the same key (per user) gets the stored response back with
+ * {@code Idempotent-Replayed: true} instead of running again. See
+ * {@link IdempotencyStore} for how keys are stored and waited on.
+ *
+ * Runs inside the security chain after the JWT filter, so the user is known.
+ * The response is buffered and only sent once it is stored and committed
+ * with the request's own transaction.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final IdempotencyStore store;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod()) || request.getHeader(HEADER) == null) return true;
+        String uri = request.getRequestURI();
+        return !(uri.endsWith("/orders") || uri.endsWith("/cart/items"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) {
+            chain.doFilter(request, response);          // rejected further down
+            return;
+        }
+        String key = request.getHeader(HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        byte[] body = request.getInputStream().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            reject(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request body too large for " + HEADER);
+            return;
+        }
+
+        String scope = auth.getName() + '\n' + request.getRequestURI() + '\n' + key;
+        ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+        IdempotencyStore.Outcome outcome;
+        try {
+            outcome = store.execute(scope, body, () -> {
+                try {
+                    chain.doFilter(new CachedBodyRequest(request, body), captured);
+                } catch (ServletException e) {
+                    throw new WrappedServletException(e);
+                }
+                return new IdempotencyStore.StoredResponse(captured.getStatus(), captured.getContentType(),
+                    captured.getHeader(HttpHeaders.LOCATION), captured.getContentAsByteArray());
+            });
+        } catch (WrappedServletException e) {
+            throw e.getCause();
+        } catch (IdempotencyStore.KeyReusedException e) {
+            reject(response, HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+            return;
+        } catch (IdempotencyStore.InProgressException e) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            reject(response, HttpStatus.CONFLICT, e.getMessage());
+            return;
+        }
+        if (outcome.replayed()) replay(response, outcome.response());
+        else captured.copyBodyToResponse();             // only now that it is committed
+    }
+
+    private static void replay(HttpServletResponse response, IdempotencyStore.StoredResponse stored) throws IOException {
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) response.setContentType(stored.contentType());
+        if (stored.location() != null) response.setHeader(HttpHeaders.LOCATION, stored.location());
+        response.setHeader("Idempotent-Replayed", "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType("application/json");
+        response.getWriter().write("{\"status\":" + status.value() + ",\"message\":\"" + message + "\"}");
+    }
+
+    /** Carries a ServletException out of the store's callback, which only passes IOException through. */
+    private static final class WrappedServletException extends RuntimeException {
+        WrappedServletException(ServletException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized ServletException getCause() {
+            return (ServletException) super.getCause();
+        }
+    }
+
+    /** The request with its body already read, so it can be fingerprinted and still handled. */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override public int read() { return in.read(); }
+                @Override public int read(byte[] b, int off, int len) { return in.read(b, off, len); }
+                @Override public boolean isFinished() { return in.available() == 0; }
+                @Override public boolean isReady() { return true; }
+                @Override public void setReadListener(ReadListener listener) {
+                    try {                               // the whole body is already here
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
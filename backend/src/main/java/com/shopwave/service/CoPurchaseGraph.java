@@ -0,0 +1,213 @@
+package com.shopwave.service;
+
+import com.shopwave.config.DSAUtils;
+import com.shopwave.index.CsrGraph;
+import com.shopwave.model.Order;
+import com.shopwave.repository.CoPurchaseRow;
+import com.shopwave.repository.OrderRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+/**
+ * "Bought together" graph over {@link DSAUtils.ProductGraph}: every pair of
+ * products in one order adds 1 to their edge.
+ *
+ * Built in the background once the application is ready (a build during
+ * context startup can deadlock with other beans' initialisation on the
+ * singleton lock) and every {@code rebuild-interval} after that, by
+ * streaming order_items ordered by order, so only one basket is held at a
+ * time. Cancelled, returned and refunded orders are skipped, and baskets are
+ * capped at {@code max-items-per-order} to keep one huge order from adding
+ * O(n²) edges. After a build the long tail is pruned — edges below
+ * {@code min-weight}, then all but each product's {@code max-degree}
+ * heaviest — and the new graph replaces the old one.
+ *
+ * Between builds, placed orders are added after commit; an order that
+ * commits during a build goes into both graphs so the swap doesn't lose it.
+ *
+ * Lookups never touch the mutable graph. They read an immutable
+ * {@link CsrGraph} snapshot holding only edges of at least
+ * {@code min-weight}, republished after each build and, when orders have
+ * come in, every {@code publish-interval}.
+ */
+@Component
+@Slf4j
+public class CoPurchaseGraph {
+
+    private static final List<Order.OrderStatus> EXCLUDED = List.of(
+        Order.OrderStatus.CANCELLED, Order.OrderStatus.RETURNED, Order.OrderStatus.REFUNDED);
+
+    private final OrderRepository orderRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final int minWeight;
+    private final int maxDegree;
+    private final int maxItemsPerOrder;
+    private final Duration rebuildInterval;
+    private final Duration publishInterval;
+    private final int depth;
+
+    private volatile DSAUtils.ProductGraph graph = new DSAUtils.ProductGraph();
+    /** The graph being built, if any; incremental updates go to it as well. */
+    private volatile DSAUtils.ProductGraph building;
+    private volatile CsrGraph snapshot = CsrGraph.EMPTY;
+    private volatile boolean dirty;
+    private ScheduledExecutorService rebuilder;
+
+    public CoPurchaseGraph(OrderRepository orderRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${graph.co-purchase.min-weight:2}") int minWeight,
+                           @Value("${graph.co-purchase.max-degree:50}") int maxDegree,
+                           @Value("${graph.co-purchase.max-items-per-order:40}") int maxItemsPerOrder,
+                           @Value("${graph.co-purchase.rebuild-interval:6h}") Duration rebuildInterval,
+                           @Value("${graph.co-purchase.publish-interval:30s}") Duration publishInterval,
+                           @Value("${graph.co-purchase.depth:2}") int depth) {
+        this.orderRepository = orderRepository;
+        this.transactionManager = transactionManager;
+        this.minWeight = minWeight;
+        this.maxDegree = maxDegree;
+        this.maxItemsPerOrder = maxItemsPerOrder;
+        this.rebuildInterval = rebuildInterval;
+        this.publishInterval = publishInterval;
+        this.depth = depth;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "co-purchase-graph");
+            t.setDaemon(true);
+            return t;
+        });
+        rebuilder.scheduleWithFixedDelay(this::rebuildQuietly, 0, rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+        long period = publishInterval.toMillis();
+        rebuilder.scheduleWithFixedDelay(this::publishIfDirty, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (rebuilder != null) rebuilder.shutdownNow();
+    }
+
+    /**
+     * Up to {@code k} products that pass {@code include}: those most often
+     * bought with {@code productId}, strongest first, topped up from further
+     * hops up to {@code depth}.
+     */
+    public List<Long> related(long productId, int k, LongPredicate include) {
+        long[] out = new long[k];
+        int n = snapshot.related(productId, depth, include, out);
+        List<Long> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) ids.add(out[i]);
+        return ids;
+    }
+
+    /** Adds one basket; deferred to after commit when a transaction is active. */
+    public void recordOrder(Collection<Long> productIds) {
+        List<Long> basket = List.copyOf(productIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addOrder(basket);
+                }
+            });
+        } else {
+            addOrder(basket);
+        }
+    }
+
+    private void addOrder(List<Long> basket) {
+        DSAUtils.ProductGraph next = building;
+        link(graph, basket);
+        if (next != null) link(next, basket);
+        dirty = true;
+    }
+
+    /** Republishes the lookup snapshot if orders were added since the last one. */
+    void publishIfDirty() {
+        if (!dirty) return;
+        dirty = false;
+        publish(graph);
+    }
+
+    private void publish(DSAUtils.ProductGraph source) {
+        CsrGraph.Builder b = new CsrGraph.Builder();
+        source.forEachEdge((from, to, w) -> {
+            if (w >= minWeight) b.addEdge(from, to, w);
+        });
+        snapshot = b.build();
+    }
+
+    public void rebuild() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        tx.executeWithoutResult(status -> {
+            try (Stream<CoPurchaseRow> rows = orderRepository.streamCoPurchaseRows(EXCLUDED)) {
+                rebuild(rows.iterator());
+            }
+        });
+    }
+
+    /** Builds from rows ordered by order id, prunes, and swaps the result in. */
+    void rebuild(Iterator<CoPurchaseRow> rows) {
+        DSAUtils.ProductGraph next = new DSAUtils.ProductGraph();
+        building = next;
+        try {
+            long orders = 0;
+            Long current = null;
+            List<Long> basket = new ArrayList<>();
+            while (rows.hasNext()) {
+                CoPurchaseRow row = rows.next();
+                if (!row.getOrderId().equals(current)) {
+                    link(next, basket);
+                    basket.clear();
+                    current = row.getOrderId();
+                    orders++;
+                }
+                basket.add(row.getProductId());
+            }
+            link(next, basket);
+            next.prune(minWeight, maxDegree);
+            graph = next;
+            publish(next);
+            log.info("Co-purchase graph built from {} orders: {} products, {} edges",
+                orders, snapshot.nodeCount(), snapshot.edgeCount());
+        } finally {
+            building = null;
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Co-purchase graph rebuild failed, keeping the previous graph: {}", e.getMessage());
+        }
+    }
+
+    /** Every pair among the basket's first {@code max-items-per-order} distinct products. */
+    private void link(DSAUtils.ProductGraph g, List<Long> basket) {
+        List<Long> items = basket.stream().distinct().limit(maxItemsPerOrder).toList();
+        for (int i = 0; i < items.size(); i++) {
+            for (int j = i + 1; j < items.size(); j++) {
+                g.addEdge(items.get(i), items.get(j));
+            }
+        }
+    }
+}
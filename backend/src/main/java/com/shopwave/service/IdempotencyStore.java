@@ -0,0 +1,265 @@
+package com.shopwave.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopwave.repository.IdempotencyRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Executes a request at most once per idempotency key and replays its
+ * response to every retry.
+ *
+ *  - Completed responses are kept in a Caffeine cache bounded by
+ *    {@code max-memory} and in the idempotency_keys table for {@code ttl},
+ *    so a retry landing on another instance, or after eviction, still
+ *    replays instead of executing again.
+ *  - A first execution claims the key in the table before running. A
+ *    duplicate arriving meanwhile waits up to {@code wait} for it: on the
+ *    same instance on the first execution's future, on another by polling
+ *    the row. If the first execution fails, or answers with anything but
+ *    2xx, the claim is dropped and a waiting duplicate executes in its place.
+ *  - The execution runs in a transaction that also stores its response,
+ *    so a request's effects (the order) and its stored response commit or
+ *    roll back together: an instance dying mid-request leaves either both
+ *    or neither, never an order behind a claim that a retry would run again.
+ *  - A claim whose instance died is taken over once {@code lock} has passed.
+ *    Each claim carries a random token, and storing the response checks it,
+ *    so an execution that outlived its lock and lost the claim rolls back
+ *    rather than committing alongside the one that took over.
+ *  - The same key with a different request body is rejected.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    /** What a retry gets back. */
+    public record StoredResponse(int status, String contentType, String location, byte[] body) {}
+
+    /** A stored response, and whether it comes from an earlier execution. */
+    public record Outcome(StoredResponse response, boolean replayed) {}
+
+    @FunctionalInterface
+    public interface Execution<E extends Exception> {
+        StoredResponse run() throws E;
+    }
+
+    /** The key was used before for a different request. */
+    public static class KeyReusedException extends RuntimeException {
+        KeyReusedException() {
+            super("Idempotency-Key was already used for a different request");
+        }
+    }
+
+    /** The first request with this key is still executing. */
+    public static class InProgressException extends RuntimeException {
+        InProgressException() {
+            super("A request with this Idempotency-Key is still in progress");
+        }
+    }
+
+    private static final long POLL_MILLIS = 50;
+    private static final int TOKEN_BYTES = 16;
+    /** Caffeine node, key string and record, on top of the body. */
+    private static final int ENTRY_OVERHEAD = 200;
+
+    private record Flight(byte[] fingerprint, CompletableFuture<StoredResponse> done) {}
+    private record Cached(byte[] fingerprint, StoredResponse response) {}
+
+    private final IdempotencyRepository repository;
+    private final TransactionTemplate transactions;
+    private final Duration ttl;
+    private final Duration lock;
+    private final Duration wait;
+    private final Cache<String, Cached> responses;
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private ScheduledExecutorService purger;
+
+    public IdempotencyStore(IdempotencyRepository repository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${idempotency.ttl:24h}") Duration ttl,
+                            @Value("${idempotency.lock:30s}") Duration lock,
+                            @Value("${idempotency.wait:10s}") Duration wait,
+                            @Value("${idempotency.max-memory:8MB}") DataSize maxMemory) {
+        this.repository = repository;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+        this.lock = lock;
+        this.wait = wait;
+        this.responses = Caffeine.newBuilder()
+            .maximumWeight(maxMemory.toBytes())
+            .weigher((String key, Cached c) -> ENTRY_OVERHEAD + key.length() + c.response().body().length)
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
+    @PostConstruct
+    void start() {
+        purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotency-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        purger.scheduleWithFixedDelay(this::purgeQuietly, 1, 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    void stop() {
+        purger.shutdownNow();
+    }
+
+    /**
+     * Runs {@code execution} unless a request with the same {@code key} has
+     * already run, in which case its response is returned instead. Only 2xx
+     * responses are kept.
+     */
+    public <E extends Exception> Outcome execute(String key, byte[] requestBody, Execution<E> execution) throws E {
+        byte[] fingerprint = sha256(requestBody);
+        long deadline = System.nanoTime() + wait.toNanos();
+        for (;;) {
+            Cached cached = responses.getIfPresent(key);
+            if (cached != null) return replay(cached.fingerprint(), cached.response(), fingerprint);
+
+            Flight mine = new Flight(fingerprint, new CompletableFuture<>());
+            Flight first = inFlight.putIfAbsent(key, mine);
+            if (first != null) {
+                if (!Arrays.equals(first.fingerprint(), fingerprint)) throw new KeyReusedException();
+                StoredResponse done = await(first.done(), deadline);
+                if (done != null) return new Outcome(done, true);
+                continue;                               // it failed; try to run it ourselves
+            }
+            try {
+                return executeOnce(key, fingerprint, deadline, execution, mine.done());
+            } finally {
+                inFlight.remove(key, mine);
+                mine.done().complete(null);             // no-op if it already completed with a response
+            }
+        }
+    }
+
+    private <E extends Exception> Outcome executeOnce(String key, byte[] fingerprint, long deadline,
+                                                      Execution<E> execution,
+                                                      CompletableFuture<StoredResponse> done) throws E {
+        byte[] hash = sha256(key.getBytes(StandardCharsets.UTF_8));
+        byte[] token = new byte[TOKEN_BYTES];
+        ThreadLocalRandom.current().nextBytes(token);
+        while (!repository.claim(hash, fingerprint, token, lock, ttl)) {
+            IdempotencyRepository.Row row = repository.find(hash);
+            if (row != null && !Arrays.equals(row.fingerprint(), fingerprint)) throw new KeyReusedException();
+            if (row != null && row.status() != null) {
+                StoredResponse stored = new StoredResponse(row.status(), row.contentType(), row.location(), row.body());
+                responses.put(key, new Cached(fingerprint, stored));
+                done.complete(stored);
+                return new Outcome(stored, true);
+            }
+            if (System.nanoTime() - deadline > 0) throw new InProgressException();
+            sleep();                                    // executing on another instance
+        }
+
+        StoredResponse response;
+        try {
+            response = transactions.execute(status -> {
+                StoredResponse r = run(execution);
+                if (r.status() / 100 != 2) {
+                    status.setRollbackOnly();
+                } else if (!repository.complete(hash, token, r.status(), r.contentType(), r.location(), r.body())) {
+                    throw new IllegalStateException("Idempotency-Key claim lapsed and was taken over");
+                }
+                return r;
+            });
+        } catch (ExecutionFailure e) {
+            repository.release(hash, token);
+            throw this.<E>rethrow(e.getCause());
+        } catch (RuntimeException | Error e) {
+            repository.release(hash, token);
+            throw e;
+        }
+        if (response.status() / 100 != 2) {
+            repository.release(hash, token);
+            return new Outcome(response, false);
+        }
+        responses.put(key, new Cached(fingerprint, response));
+        done.complete(response);
+        return new Outcome(response, false);
+    }
+
+    /** Carries a checked exception from the execution out of the transaction callback. */
+    private static final class ExecutionFailure extends RuntimeException {
+        ExecutionFailure(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private static StoredResponse run(Execution<?> execution) {
+        try {
+            return execution.run();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ExecutionFailure(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends Exception> E rethrow(Throwable checked) {
+        return (E) checked;
+    }
+
+    private static Outcome replay(byte[] storedFingerprint, StoredResponse response, byte[] fingerprint) {
+        if (!Arrays.equals(storedFingerprint, fingerprint)) throw new KeyReusedException();
+        return new Outcome(response, true);
+    }
+
+    private static StoredResponse await(CompletableFuture<StoredResponse> done, long deadline) {
+        try {
+            return done.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new InProgressException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InProgressException();
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InProgressException();
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            int purged = repository.purgeExpired();
+            if (purged > 0) log.debug("Purged {} expired idempotency keys", purged);
+        } catch (RuntimeException e) {
+            log.warn("Idempotency key purge failed: {}", e.getMessage());
+        }
+    }
+
+    static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package com.shopwave.service;
+
+import com.shopwave.event.CacheInvalidationEvent;
+import com.shopwave.event.InvalidationBus;
+import com.shopwave.repository.InventoryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Sellable stock per product held in memory, so checkout takes units with
+ * a compare-and-set instead of waiting on the products row lock.
+ *
+ * Several instances share one database, so none of them can own a
+ * product's whole stock. Each instance ({@code holder}) leases units from
+ * the free pool — products.stock minus everything leased — in chunks of up
+ * to {@code lease-chunk} (at most half the pool, so low stock isn't hoarded
+ * by one instance), and sells from its lease without touching the row.
+ * Only a refill locks the products row, once per chunk rather than once per
+ * order. Leases idle for {@code lease-idle} are handed back.
+ *
+ * A sale is journaled in the order's transaction (one batched insert per
+ * order), so it is durable with the order. Every {@code flush-interval} the
+ * journal is folded into products.stock and the lease in one transaction.
+ *
+ * Hot items: a product whose stock_shards is N > 1 has its leased units
+ * spread over N counters, each on its own cache line, and leases N chunks
+ * per refill. A buyer takes from a random shard; when that one runs dry the
+ * shards are drained and the units dealt out evenly again (rebalanced),
+ * refilling the lease only if the total is short. An instance picks up a
+ * new shard count on its next refill; {@link #available} reads the sum.
+ *
+ * Reconciliation: on startup an instance folds and drops whatever its
+ * holder name (the host name) left behind, and every flush also reclaims
+ * holders that stopped heartbeating for {@code holder-timeout} — their
+ * journaled sales reach stock and their unsold leased units return to the
+ * pool.
+ *
+ * Fencing: a reclaimed holder's units are back in the pool, so it must not
+ * sell them. The heartbeat runs on its own thread and commits on its own,
+ * so a slow or failing fold can't let it lapse. Once the last successful
+ * heartbeat is older than half of {@code holder-timeout} (a GC pause, a
+ * database outage) this instance refuses to take units until it heartbeats
+ * again; the other half covers orders already reserved and still
+ * committing. A heartbeat that finds the holder row gone means it was
+ * reclaimed anyway: the in-memory units are dropped, reservations taken
+ * before that no longer put units back, and the holder registers afresh.
+ * A refill share-locks the holder row, so it can't lease to a holder that
+ * is being or has been reclaimed.
+ *
+ * Stock edits go through here too: a counted value replaces products.stock
+ * after the product's journaled sales are folded, and a manual reduction
+ * only takes units no instance has leased.
+ */
+@Component
+@Slf4j
+public class InventoryEngine {
+
+    private final InventoryRepository repository;
+    private final InvalidationBus invalidationBus;
+    /** Lease refills from checkout: committed on their own, before the order transaction starts. */
+    private final TransactionTemplate ownTx;
+    /** Lease refills from the cart: join the caller's transaction. */
+    private final TransactionTemplate joinTx;
+    private final boolean enabled;
+    private final String holder;
+    private final int leaseChunk;
+    private final Duration flushInterval;
+    private final Duration leaseIdle;
+    private final Duration holderTimeout;
+
+    public static final int MAX_SHARDS = 64;
+    /** Ints between two shards' counters: 64 bytes, so shards don't share a cache line. */
+    private static final int STRIDE = 16;
+    /** Value left in a replaced shard array; a put-back seeing it retries on the new one. */
+    private static final int RETIRED = Integer.MIN_VALUE;
+
+    private static final class Slot {
+        /**
+         * Leased units not yet reserved, one counter per shard at i × STRIDE.
+         * Only replaced under the slot's monitor, and only after the new array
+         * is published are the old counters drained and retired.
+         */
+        volatile AtomicIntegerArray shards = cells(1);
+        volatile long lastUsed = System.nanoTime();
+    }
+
+    private record Refill(int units, int shards) {}
+
+    private final Map<Long, Slot> slots = new ConcurrentHashMap<>();
+    private final long fenceNanos;
+    /** When the last successful heartbeat was sent (System.nanoTime). */
+    private volatile long heartbeatAt = System.nanoTime();
+    /** Bumped when this holder finds it was reclaimed; older reservations can't put units back. */
+    private volatile int generation;
+    private volatile boolean closed;
+    private ScheduledExecutorService folder;
+    private ScheduledExecutorService heartbeater;
+
+    public InventoryEngine(InventoryRepository repository,
+                           InvalidationBus invalidationBus,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${inventory.engine.enabled:true}") boolean enabled,
+                           @Value("${inventory.holder:${HOSTNAME:shopwave}}") String holder,
+                           @Value("${inventory.lease-chunk:50}") int leaseChunk,
+                           @Value("${inventory.flush-interval:1s}") Duration flushInterval,
+                           @Value("${inventory.lease-idle:2m}") Duration leaseIdle,
+                           @Value("${inventory.holder-timeout:60s}") Duration holderTimeout) {
+        this.repository = repository;
+        this.invalidationBus = invalidationBus;
+        this.ownTx = new TransactionTemplate(transactionManager);
+        this.ownTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.joinTx = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.holder = holder;
+        this.leaseChunk = leaseChunk;
+        this.flushInterval = flushInterval;
+        this.leaseIdle = leaseIdle;
+        this.holderTimeout = holderTimeout;
+        this.fenceNanos = holderTimeout.toNanos() / 2;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) return;
+        reclaim(List.of(holder), null);
+        long sent = System.nanoTime();
+        ownTx.executeWithoutResult(s -> repository.register(holder));
+        heartbeatAt = sent;
+        folder = daemon("inventory-fold");
+        heartbeater = daemon("inventory-heartbeat");
+        long period = flushInterval.toMillis();
+        heartbeater.scheduleWithFixedDelay(this::heartbeatQuietly, period, period, TimeUnit.MILLISECONDS);
+        folder.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+        log.info("Inventory engine started as holder {}", holder);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (folder == null) return;
+        closed = true;
+        heartbeater.shutdownNow();
+        folder.shutdown();
+        folder.awaitTermination(5, TimeUnit.SECONDS);
+        try {
+            reclaim(List.of(holder), null);
+        } catch (RuntimeException e) {
+            log.warn("Inventory release on shutdown failed; another instance will reclaim holder {}: {}",
+                holder, e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private static ScheduledExecutorService daemon(String name) {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Whether the heartbeat may have lapsed, in which case other instances could be reclaiming this holder. */
+    boolean isFenced() {
+        return System.nanoTime() - heartbeatAt > fenceNanos;
+    }
+
+    /**
+     * Takes every line (product id → units) or none. Lines whose lease is
+     * short refill it in a transaction of their own, so call this outside
+     * any transaction. The result must be committed or released.
+     */
+    public Reservation reserve(Map<Long, Integer> lines) {
+        int gen = generation;
+        Map<Long, Integer> taken = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> line : new TreeMap<>(lines).entrySet()) {
+            if (closed || isFenced() || !take(line.getKey(), line.getValue())) {
+                taken.forEach((id, qty) -> putBack(id, qty, gen));
+                return new Reservation(Map.of(), line.getKey(), gen);
+            }
+            taken.put(line.getKey(), line.getValue());
+        }
+        return new Reservation(taken, null, gen);
+    }
+
+    /**
+     * Whether {@code quantity} units could be sold here now, leasing more in
+     * the caller's transaction if needed. Nothing is set aside for the caller.
+     */
+    public boolean ensureAvailable(long productId, int quantity) {
+        if (isFenced()) return false;
+        int have = available(productId);
+        if (have >= quantity) return true;
+        int gen = generation;
+        Refill refill = joinTx.execute(s -> lease(productId, quantity - have, 1));
+        if (refill == null || refill.units() == 0) return false;
+        afterCommit(() -> putBack(productId, refill.units(), gen));
+        return have + refill.units() >= quantity;
+    }
+
+    /** Unreserved units leased here, summed over the product's shards. */
+    public int available(long productId) {
+        Slot slot = slots.get(productId);
+        if (slot == null) return 0;
+        AtomicIntegerArray cells = slot.shards;
+        int sum = 0;
+        for (int i = 0; i < cells.length(); i += STRIDE) sum += Math.max(cells.get(i), 0);
+        return sum;
+    }
+
+    /** Number of shards this instance currently splits the product's lease into. */
+    public int shards(long productId) {
+        Slot slot = slots.get(productId);
+        return slot == null ? 1 : count(slot.shards);
+    }
+
+    /**
+     * Sets the product's stock to an absolute count in the caller's
+     * transaction. Sales journaled but not yet folded are settled first, so
+     * they aren't taken off the new count again. False for an unknown product.
+     */
+    public boolean setStock(long productId, int stock) {
+        if (!repository.setStock(productId, stock)) return false;
+        invalidationBus.publish(CacheInvalidationEvent.Kind.PRODUCT, productId);
+        return true;
+    }
+
+    /**
+     * Removes {@code quantity} units from the product's free pool in the
+     * caller's transaction; false, taking nothing, if fewer are unleased.
+     */
+    public boolean removeStock(long productId, int quantity) {
+        InventoryRepository.Pool pool = repository.lockPool(productId);
+        if (pool == null || pool.free() < quantity) return false;
+        repository.removeUnits(productId, quantity);
+        invalidationBus.publish(CacheInvalidationEvent.Kind.PRODUCT, productId);
+        return true;
+    }
+
+    /**
+     * Re-splits the product's leased units over {@code shards} counters now,
+     * rather than at the next refill. Clamped to 1..{@link #MAX_SHARDS}.
+     */
+    public void reshard(long productId, int shards) {
+        Slot slot = slot(productId);
+        synchronized (slot) {
+            reshard(slot, shards);
+        }
+    }
+
+    private boolean take(long productId, int quantity) {
+        Slot slot = slot(productId);
+        AtomicIntegerArray cells = slot.shards;
+        int home = pick(cells);
+        if (tryTake(cells, home, quantity)) return true;
+        synchronized (slot) {                       // one rebalance or refill per product at a time
+            cells = slot.shards;
+            if (tryTake(cells, pick(cells), quantity)) return true;
+            int units = drain(cells, 0);
+            if (units < quantity) {
+                int need = quantity - units;
+                Refill refill = ownTx.execute(s -> lease(productId, need, count(slot.shards)));
+                if (refill != null && refill.units() > 0) {
+                    units += refill.units();
+                    reshard(slot, refill.shards());
+                }
+            }
+            boolean taken = units >= quantity;
+            deal(slot.shards, taken ? units - quantity : units);
+            return taken;
+        }
+    }
+
+    private static boolean tryTake(AtomicIntegerArray cells, int i, int quantity) {
+        for (;;) {
+            int current = cells.get(i);
+            if (current < quantity) return false;
+            if (cells.compareAndSet(i, current, current - quantity)) return true;
+        }
+    }
+
+    /** Returns units taken in {@code gen}; units from before this holder was reclaimed are no longer its to sell. */
+    private void putBack(long productId, int quantity, int gen) {
+        if (gen != generation) return;
+        Slot slot = slot(productId);
+        for (;;) {
+            AtomicIntegerArray cells = slot.shards;
+            int i = pick(cells);
+            int current = cells.get(i);
+            if (current != RETIRED && cells.compareAndSet(i, current, current + quantity)) {
+                if (gen != generation) tryTake(cells, i, quantity);   // raced with dropSlots
+                return;
+            }
+        }
+    }
+
+    /** Replaces the slot's counters with {@code shards} new ones holding the same units; caller holds the monitor. */
+    private static void reshard(Slot slot, int shards) {
+        int n = Math.max(1, Math.min(shards, MAX_SHARDS));
+        AtomicIntegerArray old = slot.shards;
+        if (count(old) == n) return;
+        AtomicIntegerArray cells = cells(n);
+        slot.shards = cells;
+        deal(cells, drain(old, RETIRED));
+    }
+
+    private static AtomicIntegerArray cells(int shards) {
+        return new AtomicIntegerArray(shards == 1 ? 1 : shards * STRIDE);
+    }
+
+    private static int count(AtomicIntegerArray cells) {
+        return (cells.length() + STRIDE - 1) / STRIDE;
+    }
+
+    /** Index of a random shard's counter. */
+    private static int pick(AtomicIntegerArray cells) {
+        int n = count(cells);
+        return n == 1 ? 0 : ThreadLocalRandom.current().nextInt(n) * STRIDE;
+    }
+
+    /** Empties every shard, leaving {@code fill} behind; returns the units taken out. */
+    private static int drain(AtomicIntegerArray cells, int fill) {
+        int units = 0;
+        for (int i = 0; i < cells.length(); i += STRIDE) units += cells.getAndSet(i, fill);
+        return units;
+    }
+
+    /** Adds {@code units} spread evenly over the shards. */
+    private static void deal(AtomicIntegerArray cells, int units) {
+        int n = count(cells);
+        for (int s = 0; s < n; s++) {
+            int share = units / n + (s < units % n ? 1 : 0);
+            if (share > 0) cells.addAndGet(s * STRIDE, share);
+        }
+    }
+
+    private Slot slot(long productId) {
+        Slot slot = slots.computeIfAbsent(productId, k -> new Slot());
+        slot.lastUsed = System.nanoTime();
+        return slot;
+    }
+
+    /**
+     * Leases units for {@code needed} more under the products row lock: one
+     * chunk per shard, as the row says now. Returns the units granted and
+     * the product's current shard count.
+     */
+    private Refill lease(long productId, int needed, int shards) {
+        if (!repository.lockHolder(holder)) return new Refill(0, shards);   // reclaimed; the heartbeat re-registers
+        InventoryRepository.Pool pool = repository.lockPool(productId);
+        if (pool == null) return new Refill(0, shards);
+        int granted = grant(pool.free(), Math.max(needed, 1), leaseChunk * Math.max(pool.shards(), 1));
+        if (granted > 0) repository.addLease(holder, productId, granted);
+        return new Refill(granted, pool.shards());
+    }
+
+    /** Nothing unless the need can be met; otherwise up to a chunk, but never more than half the pool. */
+    static int grant(int free, int needed, int chunk) {
+        if (free < needed) return 0;
+        return Math.min(free, Math.max(needed, Math.min(chunk, free / 2)));
+    }
+
+    /**
+     * Heartbeats in a transaction of its own. If the holder row is gone this
+     * holder was reclaimed: its in-memory units are dropped and it registers
+     * again with no leases.
+     */
+    void heartbeat() {
+        long sent = System.nanoTime();
+        Boolean alive = ownTx.execute(s -> repository.heartbeat(holder));
+        if (!Boolean.TRUE.equals(alive)) {
+            log.warn("Inventory holder {} was reclaimed by another instance; dropping its leased units", holder);
+            dropSlots();
+            ownTx.executeWithoutResult(s -> repository.register(holder));
+        }
+        heartbeatAt = sent;
+    }
+
+    private void heartbeatQuietly() {
+        try {
+            heartbeat();
+        } catch (RuntimeException e) {
+            log.warn("Inventory heartbeat failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /** Forgets every in-memory unit; in-flight reservations can no longer put theirs back. */
+    private void dropSlots() {
+        generation++;
+        slots.values().forEach(slot -> {
+            synchronized (slot) {
+                drain(slot.shards, 0);
+            }
+        });
+    }
+
+    /** Fold this holder's journal, hand back idle leases and reclaim dead holders. */
+    void flush() {
+        ownTx.executeWithoutResult(s -> repository.fold(List.of(holder))
+            .forEach(id -> invalidationBus.publish(CacheInvalidationEvent.Kind.PRODUCT, id)));
+        returnIdleLeases();
+        List<String> dead = repository.deadHolders(holder, holderTimeout);
+        if (!dead.isEmpty()) reclaim(dead, holderTimeout);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Inventory fold failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    private void returnIdleLeases() {
+        long idleBefore = System.nanoTime() - leaseIdle.toNanos();
+        slots.forEach((productId, slot) -> {
+            if (slot.lastUsed - idleBefore > 0) return;
+            synchronized (slot) {
+                int units = drain(slot.shards, 0);
+                if (units == 0) return;
+                try {
+                    ownTx.executeWithoutResult(s -> repository.returnUnits(holder, productId, units));
+                } catch (RuntimeException e) {
+                    deal(slot.shards, units);
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies the holders' journals, then drops their leases and holder rows.
+     * With a {@code timeout}, holders that heartbeated since they were found
+     * silent are left alone.
+     */
+    private void reclaim(List<String> holders, Duration timeout) {
+        ownTx.executeWithoutResult(s -> {
+            List<String> gone = repository.lockReclaimable(holders, timeout);
+            if (gone.isEmpty()) return;
+            if (timeout != null) log.info("Reclaiming inventory leases of {}", gone);
+            repository.fold(gone)
+                .forEach(id -> invalidationBus.publish(CacheInvalidationEvent.Kind.PRODUCT, id));
+            repository.forget(gone);
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Units taken for one order. {@link #commit} journals them in the order's
+     * transaction; if that transaction rolls back, or {@link #release} is
+     * called first, the units go back to the lease.
+     */
+    public final class Reservation {
+        private final Map<Long, Integer> lines;
+        private final Long shortProductId;
+        private final int generation;
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Reservation(Map<Long, Integer> lines, Long shortProductId, int generation) {
+            this.lines = lines;
+            this.shortProductId = shortProductId;
+            this.generation = generation;
+        }
+
+        public boolean isComplete() {
+            return shortProductId == null;
+        }
+
+        /** The first product that couldn't be taken, or null. */
+        public Long shortProductId() {
+            return shortProductId;
+        }
+
+        public Map<Long, Integer> lines() {
+            return lines;
+        }
+
+        /** Journals the sale; must run inside the order's transaction. */
+        public void commit(Long orderId) {
+            repository.journal(holder, orderId, lines);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) settled.set(true);
+                    else release();
+                }
+            });
+        }
+
+        public void release() {
+            if (settled.compareAndSet(false, true)) lines.forEach((id, qty) -> putBack(id, qty, generation));
+        }
+    }
+}
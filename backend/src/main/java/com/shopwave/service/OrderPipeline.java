@@ -0,0 +1,288 @@
+package com.shopwave.service;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.shopwave.dto.OrderRequest;
+import com.shopwave.exception.ServiceUnavailableException;
+import com.shopwave.model.Order;
+import com.shopwave.model.SnowflakeIds;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Asynchronous checkout: {@link #submit} queues an order and returns at
+ * once with a tracking id (the order number it will get); workers place
+ * queued orders in micro-batches — up to {@code batch-size} orders, or what
+ * arrives within {@code linger} of the first — with one transaction and one
+ * commit per batch instead of per order, so a few pooled connections carry
+ * the checkout load.
+ *
+ * Stock is reserved per order before the batch transaction opens (see
+ * {@link OrderService#reserve}); an order that can't be reserved fails
+ * alone. If the batch transaction fails, it is rolled back and its orders
+ * are placed again one transaction each, so one bad order only fails itself.
+ *
+ * The queue holds at most {@code queue-capacity} orders; beyond that
+ * submit answers 503 with Retry-After. Status is kept in memory on the
+ * accepting instance for {@code status-ttl} after an order finishes; a
+ * placed order is also found by its number on any instance.
+ */
+@Component
+@Slf4j
+public class OrderPipeline {
+
+    public enum State { QUEUED, PROCESSING, PLACED, FAILED }
+
+    public record Status(String trackingId, State state,
+                         @JsonSerialize(using = ToStringSerializer.class) Long orderId, String error) {
+        public boolean isFinal() {
+            return state == State.PLACED || state == State.FAILED;
+        }
+    }
+
+    private static final long SSE_TIMEOUT_MS = Duration.ofMinutes(2).toMillis();
+
+    private final OrderService orderService;
+    private final TransactionTemplate batchTx;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration linger;
+    private final int workerCount;
+    private final Duration statusTtl;
+
+    private final BlockingQueue<Ticket> queue;
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean closed;
+    private ScheduledExecutorService reaper;
+
+    private static final class Ticket {
+        final String trackingId;
+        final String userEmail;
+        final OrderRequest request;
+        final List<SseEmitter> watchers = new CopyOnWriteArrayList<>();
+        volatile Status status;
+        volatile long finishedAt;
+        InventoryEngine.Reservation reservation;
+
+        Ticket(String trackingId, String userEmail, OrderRequest request) {
+            this.trackingId = trackingId;
+            this.userEmail = userEmail;
+            this.request = request;
+            this.status = new Status(trackingId, State.QUEUED, null, null);
+        }
+    }
+
+    public OrderPipeline(OrderService orderService,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${orders.async.enabled:false}") boolean enabled,
+                         @Value("${orders.async.queue-capacity:500}") int queueCapacity,
+                         @Value("${orders.async.batch-size:20}") int batchSize,
+                         @Value("${orders.async.linger:10ms}") Duration linger,
+                         @Value("${orders.async.workers:2}") int workerCount,
+                         @Value("${orders.async.status-ttl:15m}") Duration statusTtl) {
+        this.orderService = orderService;
+        this.batchTx = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.linger = linger;
+        this.workerCount = workerCount;
+        this.statusTtl = statusTtl;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) return;
+        for (int i = 0; i < workerCount; i++) {
+            Thread t = new Thread(this::work, "order-pipeline-" + i);
+            t.setDaemon(true);
+            t.start();
+            workers.add(t);
+        }
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "order-pipeline-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(statusTtl.toMillis() / 4, 1000);
+        reaper.scheduleWithFixedDelay(this::forgetFinished, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops accepting orders and lets the workers place what is already queued. */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (reaper == null) return;
+        closed = true;
+        reaper.shutdownNow();
+        for (Thread t : workers) t.join(10_000);
+        Ticket left;
+        while ((left = queue.poll()) != null) {
+            finish(left, new Status(left.trackingId, State.FAILED, null, "Checkout was interrupted, please try again"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Queues the order; throws {@link ServiceUnavailableException} when the queue is full. */
+    public Status submit(OrderRequest request, String userEmail) {
+        if (closed) throw new ServiceUnavailableException("Checkout is restarting, please retry", 1);
+        Ticket ticket = new Ticket(orderService.generateOrderNumber(), userEmail, request);
+        tickets.put(ticket.trackingId, ticket);
+        if (!queue.offer(ticket)) {
+            tickets.remove(ticket.trackingId);
+            throw new ServiceUnavailableException("Too many orders in progress, please retry", 1);
+        }
+        return ticket.status;
+    }
+
+    /**
+     * Status of the user's queued order. Falls back to the orders table once
+     * the in-memory status is gone or lives on another instance.
+     */
+    public Status status(String trackingId, String userEmail) {
+        Ticket ticket = tickets.get(SnowflakeIds.canonicalOrderNumber(trackingId));
+        if (ticket != null && ticket.userEmail.equals(userEmail)) return ticket.status;
+        Order order = orderService.getOrderByNumber(trackingId, userEmail);
+        return new Status(order.getOrderNumber(), State.PLACED, order.getId(), null);
+    }
+
+    /** Server-sent events: the current status now, then each change until it is final. */
+    public SseEmitter watch(String trackingId, String userEmail) {
+        Status current = status(trackingId, userEmail);
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        Ticket ticket = tickets.get(current.trackingId());
+        if (!current.isFinal() && ticket != null) {
+            ticket.watchers.add(emitter);
+            emitter.onCompletion(() -> ticket.watchers.remove(emitter));
+            emitter.onTimeout(() -> ticket.watchers.remove(emitter));
+            current = ticket.status;                    // may have finished before we registered
+        }
+        send(emitter, current);
+        return emitter;
+    }
+
+    private void work() {
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Ticket first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                List<Ticket> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + linger.toNanos();
+                while (batch.size() < batchSize) {
+                    Ticket next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Order pipeline batch failed", e);
+            }
+        }
+    }
+
+    /** Places whatever is queued now in batches of {@code batch-size}, on the calling thread. */
+    void processQueued() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    /** Places one batch: reserve each, then one shared transaction, then one by one if it fails. */
+    private void process(List<Ticket> batch) {
+        List<Ticket> ready = new ArrayList<>(batch.size());
+        for (Ticket t : batch) {
+            update(t, new Status(t.trackingId, State.PROCESSING, null, null));
+            try {
+                t.reservation = orderService.reserve(t.userEmail);
+                ready.add(t);
+            } catch (RuntimeException e) {
+                fail(t, e);
+            }
+        }
+        if (ready.isEmpty()) return;
+
+        Map<Ticket, Order> placed;
+        try {
+            placed = batchTx.execute(status -> {
+                Map<Ticket, Order> orders = new LinkedHashMap<>();
+                for (Ticket t : ready) {
+                    orders.put(t, orderService.placeOrder(t.request, t.userEmail, t.trackingId, t.reservation));
+                }
+                return orders;
+            });
+        } catch (RuntimeException e) {
+            // Reservations journaled in the batch went back on rollback; the rest go back here
+            ready.forEach(t -> { if (t.reservation != null) t.reservation.release(); });
+            if (ready.size() == 1) {
+                fail(ready.get(0), e);
+                return;
+            }
+            log.debug("Order batch of {} rolled back ({}), placing one by one", ready.size(), e.getMessage());
+            placeEach(ready);
+            return;
+        }
+        placed.forEach(this::placed);
+    }
+
+    private void placeEach(List<Ticket> tickets) {
+        for (Ticket t : tickets) {
+            try {
+                placed(t, orderService.placeOrder(t.request, t.userEmail, t.trackingId));
+            } catch (RuntimeException e) {
+                fail(t, e);
+            }
+        }
+    }
+
+    private void placed(Ticket t, Order order) {
+        finish(t, new Status(t.trackingId, State.PLACED, order.getId(), null));
+    }
+
+    private void fail(Ticket t, RuntimeException e) {
+        finish(t, new Status(t.trackingId, State.FAILED, null, e.getMessage()));
+    }
+
+    private void finish(Ticket t, Status status) {
+        t.finishedAt = System.nanoTime();
+        update(t, status);                              // final, so watchers are completed
+    }
+
+    private void update(Ticket t, Status status) {
+        t.status = status;
+        t.watchers.forEach(emitter -> send(emitter, status));
+    }
+
+    private static void send(SseEmitter emitter, Status status) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(status));
+            if (status.isFinal()) emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);               // client went away
+        }
+    }
+
+    private void forgetFinished() {
+        long before = System.nanoTime() - statusTtl.toNanos();
+        tickets.values().removeIf(t -> t.status.isFinal() && t.finishedAt - before < 0);
+    }
+}
@@ -2,6 +2,8 @@ package com.shopwave.service;
 
 import com.shopwave.config.DSAUtils;
 import com.shopwave.dto.OrderRequest;
+import com.shopwave.event.CacheInvalidationEvent;
+import com.shopwave.event.InvalidationBus;
 import com.shopwave.exception.ResourceNotFoundException;
 import com.shopwave.model.*;
 import com.shopwave.repository.*;
@@ -10,7 +12,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -26,9 +30,78 @@ public class OrderService {
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
     private final CouponRepository couponRepository;
+    private final InvalidationBus invalidationBus;
+    private final ProductCounters productCounters;
+    private final CoPurchaseGraph coPurchaseGraph;
+    private final InventoryEngine inventory;
+    private final PlatformTransactionManager transactionManager;
 
-    @Transactional
+    /**
+     * With the inventory engine on, stock is reserved in memory from the cart
+     * as read in a short read-only transaction, before the order transaction
+     * starts, and journaled with the order. Otherwise the order transaction
+     * takes it from the products rows.
+     */
     public Order placeOrder(OrderRequest request, String userEmail) {
+        return placeOrder(request, userEmail, generateOrderNumber());
+    }
+
+    /** {@link #placeOrder(OrderRequest, String)} under an order number chosen by the caller. */
+    Order placeOrder(OrderRequest request, String userEmail, String orderNumber) {
+        InventoryEngine.Reservation reservation = reserve(userEmail);
+        try {
+            return new TransactionTemplate(transactionManager)
+                .execute(status -> placeOrder(request, userEmail, orderNumber, reservation));
+        } catch (RuntimeException e) {
+            if (reservation != null) reservation.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Reserves the user's cart in the inventory engine; call outside any
+     * transaction. Null when the engine is off and the order transaction
+     * takes stock itself.
+     */
+    InventoryEngine.Reservation reserve(String userEmail) {
+        if (!inventory.isEnabled()) return null;
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Cart cart = readOnly.execute(status -> findCart(userEmail));
+        InventoryEngine.Reservation reservation = inventory.reserve(quantities(cart.getItems()));
+        if (!reservation.isComplete())
+            throw new RuntimeException("Insufficient stock: " + productName(cart, reservation.shortProductId()));
+        return reservation;
+    }
+
+    private Cart findCart(String userEmail) {
+        User user = userRepository.findByEmail(userEmail)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        return cartRepository.findByUserId(user.getId())
+            .orElseThrow(() -> new ResourceNotFoundException("Cart is empty"));
+    }
+
+    private static Map<Long, Integer> quantities(Collection<CartItem> items) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (CartItem cartItem : items)
+            quantities.merge(cartItem.getProduct().getId(), cartItem.getQuantity(), Integer::sum);
+        return quantities;
+    }
+
+    private static String productName(Cart cart, Long productId) {
+        return cart.getItems().stream()
+            .filter(ci -> ci.getProduct().getId().equals(productId))
+            .map(ci -> ci.getProduct().getName())
+            .findFirst().orElse(String.valueOf(productId));
+    }
+
+    /**
+     * Places the order inside the caller's transaction, taking stock from
+     * {@code reservation} (see {@link #reserve}) or, if null, from the
+     * products rows.
+     */
+    Order placeOrder(OrderRequest request, String userEmail, String orderNumber,
+                     InventoryEngine.Reservation reservation) {
         User user = userRepository.findByEmail(userEmail)
             .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
@@ -53,7 +126,7 @@ public class OrderService {
         BigDecimal totalAmount = subtotal.add(shippingCharge).subtract(discountAmount);
 
         Order order = Order.builder()
-            .orderNumber(generateOrderNumber())
+            .orderNumber(orderNumber)
             .user(user)
             .subtotal(subtotal)
             .shippingCharge(shippingCharge)
@@ -67,12 +140,20 @@ public class OrderService {
             .paymentStatus(Order.PaymentStatus.PENDING)
             .build();
 
+        Map<Long, Integer> quantities = quantities(cart.getItems());
+        if (reservation == null) {
+            // All lines in one statement, rows locked in id order; nothing is taken if any line is short
+            List<Long> shortIds = productRepository.decrementStock(quantities);
+            if (!shortIds.isEmpty())
+                throw new RuntimeException("Insufficient stock: " + productName(cart, shortIds.get(0)));
+            quantities.keySet().forEach(id -> invalidationBus.publish(CacheInvalidationEvent.Kind.PRODUCT, id));
+        } else if (!quantities.equals(reservation.lines())) {
+            throw new RuntimeException("Cart changed during checkout, please try again");
+        }
+
         List<OrderItem> orderItems = new ArrayList<>();
         for (CartItem cartItem : cart.getItems()) {
-            int updated = productRepository.decrementStock(
-                cartItem.getProduct().getId(), cartItem.getQuantity());
-            if (updated == 0)
-                throw new RuntimeException("Insufficient stock: " + cartItem.getProduct().getName());
+            productCounters.recordSold(cartItem.getProduct().getId(), cartItem.getQuantity());
 
             OrderItem item = OrderItem.builder()
                 .order(order)
@@ -89,6 +170,8 @@ public class OrderService {
         order.setItems(orderItems);
 
         Order saved = orderRepository.save(order);
+        if (reservation != null) reservation.commit(saved.getId());
+        coPurchaseGraph.recordOrder(orderItems.stream().map(i -> i.getProduct().getId()).toList());
         cart.getItems().clear();
         cartRepository.save(cart);
 
@@ -105,7 +188,7 @@ public class OrderService {
     public Order getOrderByNumber(String orderNumber, String userEmail) {
         User user = userRepository.findByEmail(userEmail)
             .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        return orderRepository.findByUserIdAndOrderNumber(user.getId(), orderNumber)
+        return orderRepository.findByUserIdAndOrderNumber(user.getId(), SnowflakeIds.canonicalOrderNumber(orderNumber))
             .orElseThrow(() -> new ResourceNotFoundException("Order not found: " + orderNumber));
     }
 
@@ -124,12 +207,14 @@ public class OrderService {
             order.getStatus() == Order.OrderStatus.SHIPPED)
             throw new RuntimeException("Cannot cancel order in status: " + order.getStatus());
 
-        for (OrderItem item : order.getItems()) {
-            int updated = productRepository.incrementStock(item.getProduct().getId(), item.getQuantity());
-            if (updated == 0) {
-                log.error("Failed to restore stock for product: {}", item.getProduct().getId());
-            }
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (OrderItem item : order.getItems())
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        int updated = productRepository.incrementStock(quantities);
+        if (updated < quantities.size()) {
+            log.error("Restored stock for {} of {} products in order {}", updated, quantities.size(), orderId);
         }
+        quantities.keySet().forEach(id -> invalidationBus.publish(CacheInvalidationEvent.Kind.PRODUCT, id));
 
         order.setStatus(Order.OrderStatus.CANCELLED);
         order.setPaymentStatus(Order.PaymentStatus.REFUNDED);
@@ -181,12 +266,17 @@ public class OrderService {
                     discount = coupon.getDiscountValue();
                 }
                 couponRepository.incrementUsedCount(coupon.getId());
+                invalidationBus.publish(CacheInvalidationEvent.Kind.COUPON, coupon.getId());
                 return discount;
             })
             .orElse(BigDecimal.ZERO);
     }
 
-    private String generateOrderNumber() {
-        return "SW-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    /**
+     * Time-ordered, so order_number index inserts append instead of scattering.
+     * Also the tracking id of an order queued in {@link OrderPipeline}, before it exists.
+     */
+    String generateOrderNumber() {
+        return SnowflakeIds.shared().nextOrderNumber();
     }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.shopwave.service;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.shopwave.config.CacheConfig;
+import com.shopwave.event.CacheInvalidationEvent;
+import com.shopwave.event.ProductChangedEvent;
+import com.shopwave.model.Product;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Evicts only the cache entries a product change can affect, after the
+ * change commits: the product's own entries (by id and slug). A cached
+ * featured, bestseller or trending list is refreshed in the background
+ * instead, and only if the product is on it (or has just become featured);
+ * readers keep the current list until the reload lands. Checking a list
+ * never loads it. Evicting after commit also means a concurrent read can't
+ * re-cache the pre-commit row.
+ *
+ * Changes made on other replicas arrive as {@link CacheInvalidationEvent}s
+ * carrying only ids, so slug entries are found by value there.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductCacheInvalidator {
+
+    private final CacheManager cacheManager;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Product product = event.product();
+        if (product.getId() == null) return;
+        evict(CacheConfig.PRODUCTS, product.getId());
+        if (product.getSlug() != null) evict(CacheConfig.PRODUCTS_BY_SLUG, product.getSlug());
+        if (Boolean.TRUE.equals(product.getIsFeatured()) || listContains(CacheConfig.FEATURED_PRODUCTS, product.getId())) {
+            refreshList(CacheConfig.FEATURED_PRODUCTS);
+        }
+        if (listContains(CacheConfig.BESTSELLER_PRODUCTS, product.getId())) {
+            refreshList(CacheConfig.BESTSELLER_PRODUCTS);
+        }
+        if (listContains(CacheConfig.TRENDING_PRODUCTS, product.getId())) {
+            refreshList(CacheConfig.TRENDING_PRODUCTS);
+        }
+    }
+
+    @EventListener
+    public void onInvalidation(CacheInvalidationEvent event) {
+        if (event.kind() != CacheInvalidationEvent.Kind.PRODUCT) return;
+        if (event.isFullResync()) {
+            for (String name : List.of(CacheConfig.PRODUCTS, CacheConfig.PRODUCTS_BY_SLUG,
+                    CacheConfig.FEATURED_PRODUCTS, CacheConfig.BESTSELLER_PRODUCTS, CacheConfig.TRENDING_PRODUCTS)) {
+                Cache cache = cacheManager.getCache(name);
+                if (cache != null) cache.clear();
+            }
+            return;
+        }
+        Set<Long> ids = event.keys().stream().map(Long::valueOf).collect(Collectors.toSet());
+        evictProducts(ids);
+        // A product newly featured elsewhere isn't on our list yet; the list's background refresh picks it up
+        if (ids.stream().anyMatch(id -> listContains(CacheConfig.FEATURED_PRODUCTS, id))) {
+            refreshList(CacheConfig.FEATURED_PRODUCTS);
+        }
+        if (ids.stream().anyMatch(id -> listContains(CacheConfig.BESTSELLER_PRODUCTS, id))) {
+            refreshList(CacheConfig.BESTSELLER_PRODUCTS);
+        }
+        if (ids.stream().anyMatch(id -> listContains(CacheConfig.TRENDING_PRODUCTS, id))) {
+            refreshList(CacheConfig.TRENDING_PRODUCTS);
+        }
+    }
+
+    /** Drops the products' own entries, by id and by slug, after a write that bypassed the entity. */
+    public void evictProducts(Set<Long> ids) {
+        ids.forEach(id -> evict(CacheConfig.PRODUCTS, id));
+        if (cacheManager.getCache(CacheConfig.PRODUCTS_BY_SLUG) instanceof CaffeineCache slugs) {
+            slugs.getNativeCache().asMap().values()
+                .removeIf(v -> v instanceof Product p && ids.contains(p.getId()));
+        }
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) cache.evict(key);
+    }
+
+    /**
+     * Reloads a cached list in the background; readers keep the current list
+     * meanwhile. An absent list is left alone, the next read loads it.
+     */
+    private void refreshList(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache instanceof CaffeineCache caffeine && caffeine.getNativeCache() instanceof LoadingCache<Object, Object> lists) {
+            if (lists.asMap().containsKey(SimpleKey.EMPTY)) lists.refresh(SimpleKey.EMPTY);
+        } else if (cache != null) {
+            cache.evict(SimpleKey.EMPTY);
+        }
+    }
+
+    /** Whether a cached list holds the product. Reads through the map view, so it never loads or refreshes the list. */
+    private boolean listContains(String cacheName, Long productId) {
+        if (!(cacheManager.getCache(cacheName) instanceof CaffeineCache cache)) return false;
+        Object cached = cache.getNativeCache().asMap().get(SimpleKey.EMPTY);
+        return cached instanceof List<?> list
+            && list.stream().anyMatch(p -> p instanceof Product product && productId.equals(product.getId()));
+    }
+}
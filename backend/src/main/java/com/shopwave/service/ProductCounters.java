@@ -0,0 +1,171 @@
+package com.shopwave.service;
+
+import com.shopwave.repository.ProductCounterRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * View and sales counters per product, kept in striped {@link LongAdder}s
+ * so concurrent views of one hot product don't contend, and flushed every
+ * {@code flush-interval} as one set-based UPDATE. A failed flush puts its
+ * deltas back for the next attempt.
+ *
+ * Each flush also feeds a trending score per product — views plus
+ * {@code sold-weight} × units sold, decayed with a {@code half-life} —
+ * from this replica's traffic. The bestseller list reads the flushed
+ * total_sold from the database. Flushed products are evicted from this
+ * replica's product caches, so cached entries show the new counts.
+ */
+@Component
+@Slf4j
+public class ProductCounters {
+
+    private static final double MIN_SCORE = 0.01;
+
+    private final ProductCounterRepository repository;
+    private final ProductCacheInvalidator cacheInvalidator;
+    private final Duration flushInterval;
+    private final double soldWeight;
+    private final double decay;
+
+    private static final class Deltas {
+        final LongAdder views = new LongAdder();
+        final LongAdder sold = new LongAdder();
+    }
+
+    // Entries are never removed, so an increment can't land on a detached
+    // adder; the map is bounded by the catalog size.
+    private final Map<Long, Deltas> deltas = new ConcurrentHashMap<>();
+    private final Map<Long, Double> trending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    public ProductCounters(ProductCounterRepository repository,
+                           ProductCacheInvalidator cacheInvalidator,
+                           @Value("${counters.flush-interval:10s}") Duration flushInterval,
+                           @Value("${counters.trending.sold-weight:5.0}") double soldWeight,
+                           @Value("${counters.trending.half-life:1h}") Duration halfLife) {
+        this.repository = repository;
+        this.cacheInvalidator = cacheInvalidator;
+        this.flushInterval = flushInterval;
+        this.soldWeight = soldWeight;
+        this.decay = Math.pow(0.5, (double) flushInterval.toMillis() / halfLife.toMillis());
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "product-counters-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flushQuietly();
+    }
+
+    public void recordView(long productId) {
+        deltas.computeIfAbsent(productId, k -> new Deltas()).views.increment();
+    }
+
+    /** Counts a sale once the surrounding transaction commits, so a rolled-back order counts nothing. */
+    public void recordSold(long productId, int quantity) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addSold(productId, quantity);
+                }
+            });
+        } else {
+            addSold(productId, quantity);
+        }
+    }
+
+    private void addSold(long productId, int quantity) {
+        deltas.computeIfAbsent(productId, k -> new Deltas()).sold.add(quantity);
+    }
+
+    /** Up to {@code k} product ids by trending score, highest first. */
+    public List<Long> trending(int k) {
+        PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<Long, Double> e : trending.entrySet()) {
+            top.offer(Map.entry(e.getKey(), e.getValue()));
+            if (top.size() > k) top.poll();
+        }
+        List<Long> out = new ArrayList<>(top.size());
+        while (!top.isEmpty()) out.add(top.poll().getKey());
+        Collections.reverse(out);
+        return out;
+    }
+
+    /** Writes the counts gathered since the last flush; returns the number of products touched. */
+    public synchronized int flush() {
+        int n = 0;
+        long[] ids = new long[deltas.size()], views = new long[ids.length], sold = new long[ids.length];
+        for (Map.Entry<Long, Deltas> e : deltas.entrySet()) {
+            if (n == ids.length) break;   // added since sizing; next flush
+            long v = e.getValue().views.sumThenReset();
+            long s = e.getValue().sold.sumThenReset();
+            if (v == 0 && s == 0) continue;
+            ids[n] = e.getKey();
+            views[n] = v;
+            sold[n] = s;
+            n++;
+        }
+        ids = Arrays.copyOf(ids, n);
+        views = Arrays.copyOf(views, n);
+        sold = Arrays.copyOf(sold, n);
+        try {
+            if (n > 0) {
+                repository.addCounts(ids, views, sold);
+                cacheInvalidator.evictProducts(Arrays.stream(ids).boxed().collect(Collectors.toSet()));
+            }
+        } catch (RuntimeException e) {
+            for (int i = 0; i < n; i++) {
+                Deltas d = deltas.get(ids[i]);
+                d.views.add(views[i]);
+                d.sold.add(sold[i]);
+            }
+            throw e;
+        }
+        decayTrending(ids, views, sold);
+        return n;
+    }
+
+    private void decayTrending(long[] ids, long[] views, long[] sold) {
+        trending.replaceAll((id, score) -> score * decay);
+        for (int i = 0; i < ids.length; i++) {
+            trending.merge(ids[i], views[i] + soldWeight * sold[i], Double::sum);
+        }
+        trending.values().removeIf(score -> score < MIN_SCORE);
+    }
+
+    private void flushQuietly() {
+        try {
+            int n = flush();
+            if (n > 0) log.debug("Flushed counters for {} products", n);
+        } catch (RuntimeException e) {
+            log.warn("Counter flush failed, will retry: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,560 @@
+package com.shopwave.service;
+
+import com.shopwave.dto.FacetedPageResponse;
+import com.shopwave.event.CacheInvalidationEvent;
+import com.shopwave.event.ProductChangedEvent;
+import com.shopwave.index.*;
+import com.shopwave.model.Product;
+import com.shopwave.model.SuggestionRanking;
+import com.shopwave.repository.ProductIndexRow;
+import com.shopwave.repository.ProductRepository;
+import com.shopwave.repository.SuggestionRankingRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Product search served from memory.
+ *
+ * Owns every in-memory search structure — the {@link InvertedIndex}, the
+ * {@link FacetIndex}, the {@link ColumnarCatalogIndex} behind sorted category
+ * listings, the autocomplete {@link CompactTrie} and the SKU index — all derived from one {@link IndexedProduct} per searchable product.
+ * Matching, ranking, counting and facets never borrow a connection from the
+ * pool; only a result page's own rows are hydrated, with one batched
+ * lookup that reads the Product second-level cache first. No entities are
+ * kept here, so pages show the same stock and price as the product API.
+ *
+ * Kept current incrementally: each {@link ProductChangedEvent} is applied
+ * after commit by diffing against what was last indexed for that product,
+ * so a rename or discontinue costs O(term length) per structure instead of
+ * a reload.
+ *
+ * Startup: the indexed products are restored from a memory-mapped
+ * {@link IndexSnapshot} and only rows with updated_at past the snapshot's
+ * watermark are read from the database. A missing or corrupt snapshot falls
+ * back to a full rebuild. A fresh snapshot is written after startup and on
+ * shutdown.
+ *
+ * Bulk loads never materialise the catalog: rows are streamed through a
+ * narrow {@link ProductIndexRow} projection on a forward-only cursor and
+ * indexed in fixed-size batches by one worker per core. A bounded number of
+ * batches is in flight at once, so peak heap beyond the indexes themselves
+ * is independent of catalog size.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchService {
+
+    /** Re-read rows this far behind the watermark to cover transactions that committed late. */
+    private static final Duration WATERMARK_SLACK = Duration.ofMinutes(5);
+    private static final int BOOTSTRAP_BATCH = 1_000;
+
+    private final ProductRepository productRepository;
+    private final SuggestionRankingRepository suggestionRankingRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    private final InvertedIndex index = new InvertedIndex();
+    private final FacetIndex facetIndex = new FacetIndex();
+    private final ColumnarCatalogIndex catalog = new ColumnarCatalogIndex();
+
+    // Radix trie with lock-free reads; bulk loads are built aside and swapped in.
+    private final CompactTrie searchTrie = new CompactTrie();
+    private final Map<String, Long> skuIndex = new ConcurrentHashMap<>();
+
+    /** What each product contributed to the indexes, so changes can be diffed and subtracted exactly. */
+    private final Map<Long, IndexedProduct> indexed = new ConcurrentHashMap<>();
+    private volatile long watermark;
+    // Applied by every bulk load; the stored weights if an admin set any, else the properties.
+    private volatile CompactTrie.RankingWeights suggestionWeights = CompactTrie.RankingWeights.DEFAULT;
+
+    @Value("${search.suggest.weight.sold:1.0}")
+    private double suggestWeightSold;
+
+    @Value("${search.suggest.weight.views:0.3}")
+    private double suggestWeightViews;
+
+    @Value("${search.suggest.weight.rating:0.5}")
+    private double suggestWeightRating;
+
+    @Value("${search.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
+    @Value("${search.snapshot.path:${java.io.tmpdir}/shopwave/search-index.snap}")
+    private Path snapshotPath;
+
+    // ── Queries ──────────────────────────────────────────────────────────
+
+    public Page<Product> search(String query, Pageable pageable) {
+        return toPage(index.search(query, offsetOf(pageable), pageable.getPageSize()), pageable);
+    }
+
+    /** One ranked page plus facet counts over every match, from a single index pass. */
+    public FacetedPageResponse<Product> search(String query, Pageable pageable, Set<FacetIndex.Facet> facets) {
+        RoaringBitmap matches = new RoaringBitmap();
+        InvertedIndex.SearchHits hits = index.search(query, offsetOf(pageable), pageable.getPageSize(),
+            id -> matches.add(Math.toIntExact(id)));
+        return FacetedPageResponse.of(toPage(hits, pageable), facetIndex.counts(matches, facets));
+    }
+
+    /** Facet counts over the products a category page lists: status ACTIVE, as in the page query. */
+    public Map<String, Map<String, Integer>> categoryFacets(Long categoryId, Set<FacetIndex.Facet> facets) {
+        RoaringBitmap members = facetIndex.listedMembers(FacetIndex.Facet.CATEGORY, String.valueOf(categoryId));
+        return facetIndex.counts(members, facets);
+    }
+
+    /**
+     * One page of a category's searchable products in {@code order}, optionally
+     * limited to a price range (null bounds are open) and to products in stock.
+     * The in-stock filter sees stock as of the product's last change event.
+     */
+    public Page<Product> categoryPage(Long categoryId, ColumnarCatalogIndex.Order order,
+                                      BigDecimal minPrice, BigDecimal maxPrice, boolean inStockOnly,
+                                      Pageable pageable) {
+        long min = minPrice != null ? cents(minPrice, RoundingMode.CEILING) : Long.MIN_VALUE;
+        long max = maxPrice != null ? cents(maxPrice, RoundingMode.FLOOR) : Long.MAX_VALUE;
+        int total = catalog.count(categoryId, min, max, inStockOnly);
+        int offset = offsetOf(pageable);
+        // Sized by what can match, never by the caller's page size alone
+        long[] ids = new long[Math.max(0, Math.min(pageable.getPageSize(), total - offset))];
+        int n = catalog.select(categoryId, order, min, max, inStockOnly, offset, ids);
+        return toPage(ids, n, pageable, total);
+    }
+
+    /** Every searchable product in the category; sized from the index rather than an unpaged query. */
+    public int categorySize(Long categoryId) {
+        return catalog.size(categoryId);
+    }
+
+    /** The product at the given price percentile of the category (0.5 = median), or null if it is empty. */
+    public Product pricePercentile(Long categoryId, double p) {
+        long id = catalog.percentile(categoryId, p);
+        return id < 0 ? null : hydrate(List.of(id)).get(id);
+    }
+
+    /** Whether the product is currently searchable (active and not discontinued). */
+    public boolean isListed(long productId) {
+        return indexed.containsKey(productId);
+    }
+
+    /** The listed products among {@code ids}, in the same order; unknown or delisted ids are skipped. */
+    public List<Product> listed(List<Long> ids) {
+        List<Long> live = ids.stream().filter(indexed::containsKey).toList();
+        Map<Long, Product> byId = hydrate(live);
+        List<Product> out = new ArrayList<>(live.size());
+        for (Long id : live) {
+            Product p = byId.get(id);
+            if (p != null) out.add(p);
+        }
+        return out;
+    }
+
+    public Product findBySku(String sku) {
+        Long id = skuIndex.get(sku);
+        if (id == null) return null;
+        return hydrate(List.of(id)).get(id);
+    }
+
+    public List<String> suggest(String prefix, boolean fuzzy) {
+        List<String> exact = searchTrie.getSuggestions(prefix, CompactTrie.DEFAULT_TOP_K);
+        if (!exact.isEmpty() || !fuzzy || prefix == null) return exact;
+        return searchTrie.getFuzzySuggestions(prefix, maxEditsFor(prefix.trim().length()), CompactTrie.DEFAULT_TOP_K);
+    }
+
+    /** Short prefixes are too ambiguous to correct; longer ones tolerate two typos. */
+    static int maxEditsFor(int length) {
+        if (length < 3) return 0;
+        return length < 6 ? 1 : 2;
+    }
+
+    public CompactTrie.RankingWeights getSuggestionWeights() {
+        return searchTrie.getWeights();
+    }
+
+    public void setSuggestionWeights(CompactTrie.RankingWeights weights) {
+        suggestionWeights = weights;
+        searchTrie.setWeights(weights);
+    }
+
+    /** Applies the weights stored in suggestion_ranking, or the configured ones if none are stored. */
+    public void reloadSuggestionWeights() {
+        CompactTrie.RankingWeights weights = suggestionRankingRepository.findById(SuggestionRanking.ID)
+            .map(r -> new CompactTrie.RankingWeights(r.getWeightSold(), r.getWeightViews(), r.getWeightRating()))
+            .orElseGet(() -> new CompactTrie.RankingWeights(suggestWeightSold, suggestWeightViews, suggestWeightRating));
+        if (!weights.equals(searchTrie.getWeights())) setSuggestionWeights(weights);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // ── Incremental maintenance ──────────────────────────────────────────
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        index(event.product());
+    }
+
+    /** Weights set on some replica, or a bus (re)connect: re-read the stored ones. */
+    @EventListener
+    public void onInvalidation(CacheInvalidationEvent event) {
+        if (event.kind() == CacheInvalidationEvent.Kind.SUGGESTION_RANKING) reloadSuggestionWeights();
+    }
+
+    /** Adds, refreshes or drops the product in every structure, depending on whether it is searchable. */
+    public void index(Product product) {
+        if (product.getId() == null) return;
+        advanceWatermark(epochMillis(product.getUpdatedAt()));
+        if (!isSearchable(product)) {
+            remove(product.getId());
+            return;
+        }
+        apply(toIndexed(product));
+    }
+
+    public void remove(Long productId) {
+        IndexedProduct before = indexed.remove(productId);
+        if (before == null) return;
+        index.remove(productId);
+        facetIndex.remove(Math.toIntExact(productId));
+        catalog.remove(productId);
+        searchTrie.remove(before.name(), before.termStats());
+        searchTrie.remove(before.brand(), before.termStats());
+        if (before.sku() != null) skuIndex.remove(before.sku(), productId);
+    }
+
+    private void apply(IndexedProduct now) {
+        IndexedProduct before = indexed.put(now.id(), now);
+        index.upsert(now.searchDocument());
+        facetIndex.upsert(now.facetDocument());
+        catalog.upsert(now.catalogRow());
+        if (before == null) {
+            searchTrie.insert(now.name(), now.termStats());
+            searchTrie.insert(now.brand(), now.termStats());
+        } else {
+            searchTrie.replace(before.name(), before.termStats(), now.name(), now.termStats());
+            searchTrie.replace(before.brand(), before.termStats(), now.brand(), now.termStats());
+            if (before.sku() != null && !before.sku().equals(now.sku())) skuIndex.remove(before.sku(), now.id());
+        }
+        if (now.sku() != null) skuIndex.put(now.sku(), now.id());
+    }
+
+    // ── Bulk load, snapshot and startup ──────────────────────────────────
+
+    /** Full rebuild streamed from the database; the watermark becomes the highest updated_at seen. */
+    public void rebuild() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        long mark;
+        try (BatchLoader loader = new BatchLoader()) {
+            mark = Objects.requireNonNull(tx.execute(status -> {
+                long max = 0;
+                try (Stream<ProductIndexRow> rows = productRepository.streamIndexRows()) {
+                    for (Iterator<ProductIndexRow> it = rows.iterator(); it.hasNext(); ) {
+                        ProductIndexRow row = it.next();
+                        max = Math.max(max, epochMillis(row.getUpdatedAt()));
+                        if (isSearchable(row)) loader.add(toIndexed(row));
+                    }
+                }
+                return max;
+            }));
+        }
+        watermark = mark;
+    }
+
+    private void rebuildFrom(List<IndexedProduct> products, long newWatermark) {
+        try (BatchLoader loader = new BatchLoader()) {
+            products.forEach(loader::add);
+        }
+        watermark = newWatermark;
+    }
+
+    /**
+     * Re-reads rows changed since the watermark (less the slack), for when
+     * change events may have been missed — e.g. while the invalidation bus
+     * was disconnected.
+     */
+    public int catchUpFromWatermark() {
+        LocalDateTime since = LocalDateTime.ofInstant(Instant.ofEpochMilli(watermark), ZoneOffset.UTC)
+            .minus(WATERMARK_SLACK);
+        return catchUp(since);
+    }
+
+    /** Rows changed since {@code since}, applied one by one like change events. */
+    private int catchUp(LocalDateTime since) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        return Objects.requireNonNull(tx.execute(status -> {
+            int n = 0;
+            try (Stream<ProductIndexRow> rows = productRepository.streamIndexRowsUpdatedSince(since)) {
+                for (Iterator<ProductIndexRow> it = rows.iterator(); it.hasNext(); n++) {
+                    ProductIndexRow row = it.next();
+                    advanceWatermark(epochMillis(row.getUpdatedAt()));
+                    if (isSearchable(row)) apply(toIndexed(row));
+                    else remove(row.getId());
+                }
+            }
+            return n;
+        }));
+    }
+
+    /**
+     * Clears every structure, then indexes products in parallel batches:
+     * tokenizing runs on all cores, and each batch takes the index locks
+     * once. {@link #add} blocks once {@code 2 × cores} batches are queued,
+     * which caps how far the reader can run ahead. {@link #close} waits for
+     * the workers and publishes the autocomplete trie in one swap.
+     */
+    private final class BatchLoader implements AutoCloseable {
+
+        private final int workers = Runtime.getRuntime().availableProcessors();
+        private final ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "search-index-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        private final Semaphore inFlight = new Semaphore(workers * 2);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Brand terms aggregate the popularity of every product that carries them.
+        private final Map<String, CompactTrie.TermStats> terms = new ConcurrentHashMap<>();
+        private List<IndexedProduct> batch = new ArrayList<>(BOOTSTRAP_BATCH);
+
+        BatchLoader() {
+            index.clear();
+            facetIndex.clear();
+            catalog.clear();
+            indexed.clear();
+            skuIndex.clear();
+        }
+
+        void add(IndexedProduct p) {
+            batch.add(p);
+            if (batch.size() == BOOTSTRAP_BATCH) flush();
+        }
+
+        private void flush() {
+            List<IndexedProduct> work = batch;
+            batch = new ArrayList<>(BOOTSTRAP_BATCH);
+            inFlight.acquireUninterruptibly();
+            pool.execute(() -> {
+                try {
+                    indexBatch(work);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        private void indexBatch(List<IndexedProduct> work) {
+            List<InvertedIndex.AnalyzedDocument> analyzed = new ArrayList<>(work.size());
+            for (IndexedProduct p : work) analyzed.add(InvertedIndex.analyze(p.searchDocument()));
+            index.upsertAll(analyzed);
+            for (IndexedProduct p : work) {
+                indexed.put(p.id(), p);
+                facetIndex.upsert(p.facetDocument());
+                if (p.sku() != null) skuIndex.put(p.sku(), p.id());
+                CompactTrie.TermStats stats = p.termStats();
+                if (p.name() != null) terms.merge(p.name(), stats, CompactTrie.TermStats::plus);
+                if (p.brand() != null) terms.merge(p.brand(), stats, CompactTrie.TermStats::plus);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!batch.isEmpty()) flush();
+            inFlight.acquireUninterruptibly(workers * 2);
+            pool.shutdown();
+            if (failure.get() != null) throw new IllegalStateException("Search index load failed", failure.get());
+            searchTrie.setWeights(suggestionWeights);
+            searchTrie.replaceAllRanked(terms);
+            // Sorted once per category here rather than shifted row by row in the workers.
+            catalog.replaceAll(indexed.values().stream().map(IndexedProduct::catalogRow).toList());
+            log.info("Search indexes built: {} products on {} workers", index.size(), workers);
+        }
+    }
+
+    /**
+     * Restores the indexes from the snapshot and replays rows changed since
+     * its watermark; falls back to a full load when there is no usable
+     * snapshot.
+     */
+    @PostConstruct
+    public void bootstrap() {
+        long start = System.nanoTime();
+        reloadSuggestionWeights();
+        IndexSnapshot.Contents snapshot = snapshotEnabled ? readSnapshot() : null;
+        if (snapshot != null) {
+            rebuildFrom(snapshot.products(), snapshot.watermark());
+            LocalDateTime since = LocalDateTime.ofInstant(Instant.ofEpochMilli(snapshot.watermark()), ZoneOffset.UTC)
+                .minus(WATERMARK_SLACK);
+            int changed = catchUp(since);
+            log.info("Search indexes restored from snapshot ({} products, {} changed since) in {} ms",
+                snapshot.products().size(), changed, (System.nanoTime() - start) / 1_000_000);
+        } else {
+            rebuild();
+            log.info("Search indexes rebuilt from database in {} ms", (System.nanoTime() - start) / 1_000_000);
+        }
+        writeSnapshot();
+    }
+
+    @PreDestroy
+    public void writeSnapshot() {
+        if (!snapshotEnabled) return;
+        // Watermark first: anything that changes while we copy is newer and gets replayed next start.
+        long mark = watermark;
+        try {
+            IndexSnapshot.write(snapshotPath, mark, new ArrayList<>(indexed.values()));
+            log.info("Search snapshot written: {} products → {}", indexed.size(), snapshotPath);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write search snapshot to {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    private IndexSnapshot.Contents readSnapshot() {
+        try {
+            return IndexSnapshot.read(snapshotPath);
+        } catch (NoSuchFileException e) {
+            log.info("No search snapshot at {}; doing a full rebuild", snapshotPath);
+        } catch (IOException e) {
+            log.warn("Discarding unusable search snapshot {}: {}", snapshotPath, e.getMessage());
+            try {
+                Files.deleteIfExists(snapshotPath);
+            } catch (IOException ignored) {
+                // rewritten after the rebuild anyway
+            }
+        }
+        return null;
+    }
+
+    // ── Helpers ──────────────────────────────────────────────────────────
+
+    private Page<Product> toPage(InvertedIndex.SearchHits hits, Pageable pageable) {
+        return toPage(hits.productIds(), hits.productIds().length, pageable, hits.total());
+    }
+
+    private Page<Product> toPage(long[] productIds, int n, Pageable pageable, long total) {
+        List<Long> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) ids.add(productIds[i]);
+        Map<Long, Product> byId = hydrate(ids);
+        List<Product> content = new ArrayList<>(n);
+        for (Long id : ids) {
+            Product p = byId.get(id);
+            if (p != null) content.add(p);
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /** Entities for {@code ids}: second-level cache first, the misses in one IN query. */
+    private Map<Long, Product> hydrate(List<Long> ids) {
+        Map<Long, Product> out = new HashMap<>(ids.size() * 2);
+        for (Product p : productRepository.multiGet(ids)) out.put(p.getId(), p);
+        return out;
+    }
+
+    private void advanceWatermark(long millis) {
+        if (millis > watermark) watermark = millis;
+    }
+
+    private static long epochMillis(LocalDateTime t) {
+        return t == null ? 0 : t.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static long cents(BigDecimal rupees, RoundingMode mode) {
+        return rupees.movePointRight(2).setScale(0, mode).longValue();
+    }
+
+    private static int offsetOf(Pageable pageable) {
+        return (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE - pageable.getPageSize());
+    }
+
+    static boolean isSearchable(Product p) {
+        return isSearchable(p.getIsActive(), p.getStatus());
+    }
+
+    static boolean isSearchable(ProductIndexRow r) {
+        return isSearchable(r.getIsActive(), r.getStatus());
+    }
+
+    private static boolean isSearchable(Boolean active, Product.ProductStatus status) {
+        return !Boolean.FALSE.equals(active)
+            && status != Product.ProductStatus.DISCONTINUED
+            && status != Product.ProductStatus.INACTIVE;
+    }
+
+    static IndexedProduct toIndexed(Product p) {
+        return new IndexedProduct(
+            p.getId(),
+            p.getName(),
+            p.getBrand(),
+            p.getSku(),
+            p.getDescription(),
+            flatten(p.getSpecifications()),
+            p.getCategory() != null ? p.getCategory().getId() : null,
+            p.getPrice() != null ? p.getPrice().doubleValue() : 0,
+            Boolean.TRUE.equals(p.getFreeShipping()),
+            p.getStatus() == Product.ProductStatus.ACTIVE,
+            p.getAverageRating(),
+            p.getTotalSold() != null ? p.getTotalSold() : 0,
+            p.getViewCount() != null ? p.getViewCount() : 0,
+            p.getStock() != null ? p.getStock() : 0,
+            epochMillis(p.getUpdatedAt()));
+    }
+
+    static IndexedProduct toIndexed(ProductIndexRow r) {
+        return new IndexedProduct(
+            r.getId(),
+            r.getName(),
+            r.getBrand(),
+            r.getSku(),
+            r.getDescription(),
+            flatten(r.getSpecifications()),
+            r.getCategoryId(),
+            r.getPrice() != null ? r.getPrice().doubleValue() : 0,
+            Boolean.TRUE.equals(r.getFreeShipping()),
+            r.getStatus() == Product.ProductStatus.ACTIVE,
+            r.getAverageRating(),
+            r.getTotalSold() != null ? r.getTotalSold() : 0,
+            r.getViewCount() != null ? r.getViewCount() : 0,
+            r.getStock() != null ? r.getStock() : 0,
+            epochMillis(r.getUpdatedAt()));
+    }
+
+    private static String flatten(Map<String, String> specs) {
+        if (specs == null || specs.isEmpty()) return null;
+        return specs.entrySet().stream()
+            .map(e -> e.getKey() + " " + e.getValue())
+            .collect(Collectors.joining(" "));
+    }
+}
@@ -1,26 +1,38 @@
 package com.shopwave.service;
 
+import com.shopwave.config.CacheConfig;
 import com.shopwave.config.DSAUtils;
+import com.shopwave.dto.CursorPage;
+import com.shopwave.dto.FacetedPageResponse;
 import com.shopwave.dto.ProductRequest;
+import com.shopwave.event.CacheInvalidationEvent;
+import com.shopwave.event.InvalidationBus;
+import com.shopwave.event.ProductChangedEvent;
 import com.shopwave.exception.ResourceNotFoundException;
+import com.shopwave.index.ColumnarCatalogIndex;
+import com.shopwave.index.CompactTrie;
+import com.shopwave.index.FacetIndex;
 import com.shopwave.model.Category;
 import com.shopwave.model.Product;
+import com.shopwave.model.SuggestionRanking;
 import com.shopwave.model.User;
 import com.shopwave.repository.CategoryRepository;
+import com.shopwave.repository.ProductCursor;
 import com.shopwave.repository.ProductRepository;
+import com.shopwave.repository.SuggestionRankingRepository;
 import com.shopwave.repository.UserRepository;
-import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -30,20 +42,21 @@ public class ProductService {
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final UserRepository userRepository;
+    private final SuggestionRankingRepository suggestionRankingRepository;
     private final DSAUtils dsaUtils;
+    private final ProductSearchService productSearchService;
+    private final RecentlyViewedStore recentlyViewedStore;
+    private final ProductCounters productCounters;
+    private final CoPurchaseGraph coPurchaseGraph;
+    private final InventoryEngine inventory;
 
-    private final DSAUtils.Trie searchTrie = new DSAUtils.Trie();
+    private final ApplicationEventPublisher eventPublisher;
+    private final InvalidationBus invalidationBus;
 
-    private final ConcurrentHashMap<Long, DSAUtils.LRUCache<Long, Product>> userRecentlyViewed = new ConcurrentHashMap<>();
-
-    private DSAUtils.LRUCache<Long, Product> getUserLRU(Long userId) {
-        return userRecentlyViewed.computeIfAbsent(userId, k -> new DSAUtils.LRUCache<>(20));
-    }
-
-    private final Map<String, Product> skuIndex = new ConcurrentHashMap<>();
+    private static final int MAX_SCROLL_SIZE = 100;
+    private static final int MAX_BROWSE_SIZE = 100;
 
     @Transactional
-    @CacheEvict(value = {"products", "featured-products", "bestseller-products"}, allEntries = true)
     public Product createProduct(ProductRequest request, String sellerEmail) {
         Category category = categoryRepository.findById(request.getCategoryId())
             .orElseThrow(() -> new ResourceNotFoundException("Category not found"));
@@ -70,48 +83,95 @@ public class ProductService {
 
         Product saved = productRepository.save(product);
 
-        searchTrie.insert(product.getName());
-        if (product.getBrand() != null) searchTrie.insert(product.getBrand());
-        if (saved.getSku() != null) skuIndex.put(saved.getSku(), saved);
+        eventPublisher.publishEvent(new ProductChangedEvent(saved, ProductChangedEvent.Type.CREATED));
 
         log.info("Product created: {} by {}", product.getName(), sellerEmail);
         return saved;
     }
 
     @Transactional(readOnly = true)
-    @Cacheable(value = "products", key = "#id")
+    @Cacheable(value = CacheConfig.PRODUCTS, key = "#id", sync = true)
     public Product getProductById(Long id) {
         return productRepository.findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Product not found: " + id));
     }
 
+    @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.PRODUCTS_BY_SLUG, key = "#slug", sync = true)
     public Product getProductBySlug(String slug) {
         return productRepository.findBySlug(slug)
             .orElseThrow(() -> new ResourceNotFoundException("Product not found: " + slug));
     }
 
     public Product getProductBySku(String sku) {
-        Product cached = skuIndex.get(sku);
+        Product cached = productSearchService.findBySku(sku);
         if (cached != null) return cached;
         return productRepository.findBySku(sku)
             .orElseThrow(() -> new ResourceNotFoundException("Product not found: " + sku));
     }
 
-    public void trackRecentlyViewed(Long userId, Long productId, Product product) {
-        getUserLRU(userId).put(productId, product);
+    /** Counts a product page view; buffered in memory and flushed in bulk. */
+    public void trackView(Long productId) {
+        productCounters.recordView(productId);
+    }
+
+    public void trackRecentlyViewed(Long userId, Long productId) {
+        recentlyViewedStore.record(userId, productId);
     }
 
+    /** The user's recent product ids, hydrated in one batched lookup (second-level cache first). */
     public List<Product> getRecentlyViewed(Long userId) {
-        return getUserLRU(userId).getAll();
+        long[] ids = recentlyViewedStore.recent(userId);
+        return productRepository.multiGet(Arrays.stream(ids).boxed().toList());
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Keyword search runs against the in-memory inverted index (BM25-ranked,
+     * paged in memory). A blank keyword is the plain catalog listing, which
+     * still honours the caller's sort and goes to the database.
+     */
     public Page<Product> searchProducts(String keyword, Pageable pageable) {
-        return productRepository.searchProducts(keyword, pageable);
+        if (keyword == null || keyword.isBlank()) {
+            return productRepository.searchProducts("", pageable);
+        }
+        return productSearchService.search(keyword, pageable);
+    }
+
+    /** Keyword search plus facet counts over the full result set. */
+    public FacetedPageResponse<Product> searchProducts(String keyword, Pageable pageable, Set<FacetIndex.Facet> facets) {
+        return productSearchService.search(keyword, pageable, facets);
     }
 
     public List<String> getSearchSuggestions(String prefix) {
-        return searchTrie.getSuggestions(prefix, 10);
+        return getSearchSuggestions(prefix, true);
+    }
+
+    /**
+     * Exact prefix completions; when there are none and {@code fuzzy} is set,
+     * falls back to typo-tolerant matching in memory so a misspelt prefix
+     * never turns into a LIKE '%q%' scan.
+     */
+    public List<String> getSearchSuggestions(String prefix, boolean fuzzy) {
+        return productSearchService.suggest(prefix, fuzzy);
+    }
+
+    public CompactTrie.RankingWeights getSuggestionWeights() {
+        return productSearchService.getSuggestionWeights();
+    }
+
+    /**
+     * Stores the weights and re-ranks cached suggestions in place — no trie
+     * rebuild. Other replicas reload the stored weights when the change
+     * reaches them over the invalidation bus; restarts start from them too.
+     */
+    public CompactTrie.RankingWeights updateSuggestionWeights(double sold, double views, double rating) {
+        CompactTrie.RankingWeights weights = new CompactTrie.RankingWeights(sold, views, rating);
+        suggestionRankingRepository.save(SuggestionRanking.builder()
+            .weightSold(sold).weightViews(views).weightRating(rating).build());
+        invalidationBus.publish(CacheInvalidationEvent.Kind.SUGGESTION_RANKING, "weights");
+        productSearchService.setSuggestionWeights(weights);
+        log.info("Suggestion ranking weights set to {}", weights);
+        return weights;
     }
 
     @Transactional(readOnly = true)
@@ -119,38 +179,112 @@ public class ProductService {
         return productRepository.findByCategoryAndStatus(categoryId, Product.ProductStatus.ACTIVE, pageable);
     }
 
+    /** Category page plus facet counts; the counts come from the in-memory bitmaps, not extra queries. */
+    @Transactional(readOnly = true)
+    public FacetedPageResponse<Product> getProductsByCategory(Long categoryId, Pageable pageable, Set<FacetIndex.Facet> facets) {
+        return FacetedPageResponse.of(getProductsByCategory(categoryId, pageable),
+            productSearchService.categoryFacets(categoryId, facets));
+    }
+
+    /**
+     * Sorted / price-filtered category listing served from the columnar
+     * catalog index: the page is picked from primitive columns and only its
+     * rows are hydrated. Pages are capped at {@value #MAX_BROWSE_SIZE} products.
+     */
+    public Page<Product> browseCategory(Long categoryId, ColumnarCatalogIndex.Order order,
+                                        BigDecimal min, BigDecimal max, boolean inStockOnly, Pageable pageable) {
+        Pageable capped = pageable.getPageSize() > MAX_BROWSE_SIZE
+            ? PageRequest.of(pageable.getPageNumber(), MAX_BROWSE_SIZE, pageable.getSort())
+            : pageable;
+        return productSearchService.categoryPage(categoryId, order, min, max, inStockOnly, capped);
+    }
+
+    /**
+     * Keyset-paged listing of active products, the whole catalog or one
+     * category. A null {@code cursor} starts at the first slice in the given
+     * sort; otherwise the cursor's own sort is used.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Product> scrollProducts(Long categoryId, String sortBy, boolean ascending,
+                                              String cursor, int size) {
+        ProductCursor position = cursor != null && !cursor.isBlank()
+            ? ProductCursor.decode(cursor)
+            : ProductCursor.first(Optional.ofNullable(ProductCursor.SortKey.fromParam(sortBy))
+                .orElse(ProductCursor.SortKey.CREATED_AT), ascending);
+        int limit = Math.max(1, Math.min(size, MAX_SCROLL_SIZE));
+        // One extra row tells us whether there is a next slice without a COUNT(*)
+        List<Product> rows = productRepository.seekActive(position, categoryId, limit + 1);
+        boolean hasNext = rows.size() > limit;
+        List<Product> content = hasNext ? rows.subList(0, limit) : rows;
+        String next = hasNext ? position.after(content.get(limit - 1)).encode() : null;
+        return new CursorPage<>(new ArrayList<>(content), content.size(), next, hasNext);
+    }
+
     public List<Product> getSortedProductsByPrice(Long categoryId, boolean ascending) {
-        List<Product> products = productRepository.findByCategoryId(categoryId, Pageable.unpaged()).getContent();
-        return DSAUtils.mergeSortByPrice(new ArrayList<>(products), ascending);
+        return productSearchService.categoryPage(categoryId, ascending ? ColumnarCatalogIndex.Order.PRICE_ASC : ColumnarCatalogIndex.Order.PRICE_DESC,
+            null, null, false, wholeCategory(categoryId)).getContent();
     }
 
     public List<Product> getSortedProductsByRating(Long categoryId) {
-        List<Product> products = productRepository.findByCategoryId(categoryId, Pageable.unpaged()).getContent();
-        return DSAUtils.mergeSortByRating(new ArrayList<>(products));
+        return productSearchService.categoryPage(categoryId, ColumnarCatalogIndex.Order.RATING_DESC,
+            null, null, false, wholeCategory(categoryId)).getContent();
     }
 
     public List<Product> filterByPriceRange(Long categoryId, BigDecimal min, BigDecimal max) {
-        List<Product> sorted = getSortedProductsByPrice(categoryId, true);
-        return DSAUtils.filterByPriceRange(sorted, min, max);
+        return productSearchService.categoryPage(categoryId, ColumnarCatalogIndex.Order.PRICE_ASC,
+            min, max, false, wholeCategory(categoryId)).getContent();
     }
 
     public List<Product> getTopKCheapest(Long categoryId, int k) {
-        List<Product> products = productRepository.findByCategoryId(categoryId, Pageable.unpaged()).getContent();
-        return DSAUtils.getTopKCheapest(products, k);
+        return productSearchService.categoryPage(categoryId, ColumnarCatalogIndex.Order.PRICE_ASC,
+            null, null, false, PageRequest.of(0, Math.max(k, 1))).getContent();
     }
 
-    @Cacheable("featured-products")
+    public Product getMedianPricedProduct(Long categoryId) {
+        return productSearchService.pricePercentile(categoryId, 0.5);
+    }
+
+    private Pageable wholeCategory(Long categoryId) {
+        return PageRequest.of(0, Math.max(productSearchService.categorySize(categoryId), 1));
+    }
+
+    @Cacheable(value = CacheConfig.FEATURED_PRODUCTS, sync = true)
     public List<Product> getFeaturedProducts() {
-        return productRepository.findFeaturedProducts(PageRequest.of(0, 12));
+        return loadFeaturedProducts();
     }
 
-    @Cacheable("bestseller-products")
+    @Cacheable(value = CacheConfig.BESTSELLER_PRODUCTS, sync = true)
     public List<Product> getBestsellerProducts() {
+        return loadBestsellerProducts();
+    }
+
+    @Cacheable(value = CacheConfig.TRENDING_PRODUCTS, sync = true)
+    public List<Product> getTrendingProducts() {
+        return loadTrendingProducts();
+    }
+
+    /** Products most often bought together with {@code productId}; served from memory. */
+    public List<Product> getRelatedProducts(Long productId, int limit) {
+        return productSearchService.listed(
+            coPurchaseGraph.related(productId, limit, productSearchService::isListed));
+    }
+
+    /** Uncached query behind {@link #getFeaturedProducts()}; also the cache's background refresh. */
+    public List<Product> loadFeaturedProducts() {
+        return productRepository.findFeaturedProducts(PageRequest.of(0, 12));
+    }
+
+    /** Uncached query behind {@link #getBestsellerProducts()}; also the cache's background refresh. */
+    public List<Product> loadBestsellerProducts() {
         return productRepository.findBestsellerProducts(PageRequest.of(0, 20));
     }
 
+    /** Top products by decayed view/sales score behind {@link #getTrendingProducts()}; also the cache's background refresh. */
+    public List<Product> loadTrendingProducts() {
+        return productRepository.multiGet(productCounters.trending(12));
+    }
+
     @Transactional
-    @CacheEvict(value = {"products", "featured-products", "bestseller-products"}, allEntries = true)
     public Product updateProduct(Long id, ProductRequest request, String email) {
         Product product = getProductById(id);
         if (request.getName()           != null) product.setName(request.getName());
@@ -158,40 +292,85 @@ public class ProductService {
         if (request.getPrice()          != null) product.setPrice(request.getPrice());
         if (request.getOriginalPrice()  != null) product.setOriginalPrice(request.getOriginalPrice());
         if (request.getDiscountPercent()!= null) product.setDiscountPercent(request.getDiscountPercent());
-        if (request.getStock()          != null) product.setStock(request.getStock());
+        if (request.getStock()          != null) {
+            setStock(id, request.getStock());
+            product.setStock(request.getStock());
+        }
         if (request.getBrand()          != null) product.setBrand(request.getBrand());
         if (request.getImages()         != null) product.setImages(request.getImages());
         if (request.getSpecifications() != null) product.setSpecifications(request.getSpecifications());
         log.info("Product updated: {} by {}", id, email);
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(saved, ProductChangedEvent.Type.UPDATED));
+        return saved;
+    }
+
+    /** Stock is never written through the entity; see {@link Product#getStock()}. */
+    private void setStock(Long id, int stock) {
+        if (inventory.isEnabled()) inventory.setStock(id, stock);
+        else productRepository.setStock(id, stock);
+    }
+
+    /**
+     * Hot-item mode: splits the product's in-memory stock over {@code shards}
+     * counters (1 turns it off). This instance re-splits now, the others at
+     * their next lease refill.
+     */
+    @Transactional
+    public Product setStockShards(Long id, int shards) {
+        if (!productRepository.existsById(id))
+            throw new ResourceNotFoundException("Product not found: " + id);
+        productRepository.setStockShards(id, shards);
+        invalidationBus.publish(CacheInvalidationEvent.Kind.PRODUCT, id);
+        if (inventory.isEnabled()) inventory.reshard(id, shards);
+        log.info("Product {} stock split over {} shards", id, shards);
+        return getProductById(id);
     }
 
     @Transactional
-    @CacheEvict(value = {"products", "featured-products", "bestseller-products"}, allEntries = true)
     public void deleteProduct(Long id) {
         Product product = getProductById(id);
         product.setStatus(Product.ProductStatus.DISCONTINUED);
         productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(product, ProductChangedEvent.Type.DISCONTINUED));
         log.info("Product discontinued: {}", id);
     }
 
+    /** Takes units off the shelf outside checkout; with the engine on, only units no instance has leased. */
     @Transactional
     public void reduceStock(Long productId, int quantity) {
-        int updated = productRepository.decrementStock(productId, quantity);
-        if (updated == 0)
+        boolean taken = inventory.isEnabled()
+            ? inventory.removeStock(productId, quantity)
+            : productRepository.decrementStock(productId, quantity) > 0;
+        if (!taken)
             throw new RuntimeException("Insufficient stock for product: " + productId);
+        if (!inventory.isEnabled()) invalidationBus.publish(CacheInvalidationEvent.Kind.PRODUCT, productId);
     }
 
-    @PostConstruct
-    public void loadAllProductsToTrie() {
-        List<Product> all = productRepository.findAll();
-        all.forEach(p -> {
-            searchTrie.insert(p.getName());
-            if (p.getBrand() != null) searchTrie.insert(p.getBrand());
+    /**
+     * Products changed on some replica: reload them into the search indexes,
+     * and drop ids that no longer exist from recently-viewed lists. A full resync
+     * replays everything changed since the index watermark.
+     */
+    @EventListener
+    @Transactional(readOnly = true)
+    public void onInvalidation(CacheInvalidationEvent event) {
+        if (event.kind() != CacheInvalidationEvent.Kind.PRODUCT) return;
+        if (event.isFullResync()) {
+            int changed = productSearchService.catchUpFromWatermark();
+            log.info("Search indexes resynced after invalidation bus (re)connect: {} changed", changed);
+            return;
+        }
+        Set<Long> ids = event.keys().stream().map(Long::valueOf).collect(Collectors.toSet());
+        Set<Long> missing = new HashSet<>(ids);
+        for (Product product : productRepository.findAllById(ids)) {
+            missing.remove(product.getId());
+            productSearchService.index(product);
+        }
+        missing.forEach(id -> {
+            productSearchService.remove(id);
+            recentlyViewedStore.forget(id);
         });
-        skuIndex.clear();
-        skuIndex.putAll(DSAUtils.buildSkuIndex(all));
-        log.info("Loaded {} products into Trie & SKU index", all.size());
     }
 
     private String generateSKU(String name) {
@@ -0,0 +1,91 @@
+package com.shopwave.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopwave.index.RecentIdRing;
+import com.shopwave.repository.RecentlyViewedRepository;
+import com.shopwave.repository.RecentlyViewedRepository.View;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Per-user recently-viewed product ids: durable in the recently_viewed
+ * table, with a near cache under one global memory budget.
+ *
+ * Each cached user holds a fixed-size {@link RecentIdRing} of ids — never
+ * the entities, which are multi-fetched when the list is read. Users are
+ * weighed by their ring's footprint; past {@code max-memory} the least
+ * valuable are evicted.
+ *
+ * Recording a view touches only memory: the user's ring if cached, and the
+ * {@link RecentlyViewedWriteBehind} buffer that persists it. A ring only
+ * sees views recorded on this replica, so it is reloaded from the table
+ * {@code ttl} after it was loaded, however often it is read: views made
+ * through another replica show up within {@code ttl} plus that replica's
+ * flush interval, at the cost of one indexed query per active user per
+ * {@code ttl}.
+ */
+@Component
+public class RecentlyViewedStore {
+
+    /** Caffeine node, boxed user id and map slot, on top of the ring itself. */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final RecentlyViewedRepository repository;
+    private final RecentlyViewedWriteBehind writeBehind;
+    private final int capacity;
+    private final Cache<Long, RecentIdRing> rings;
+
+    public RecentlyViewedStore(RecentlyViewedRepository repository,
+                               RecentlyViewedWriteBehind writeBehind,
+                               @Value("${recently-viewed.capacity:20}") int capacity,
+                               @Value("${recently-viewed.max-memory:16MB}") DataSize maxMemory,
+                               @Value("${recently-viewed.ttl:5s}") Duration ttl) {
+        this.repository = repository;
+        this.writeBehind = writeBehind;
+        this.capacity = capacity;
+        int weight = ENTRY_OVERHEAD + RecentIdRing.bytes(capacity);
+        this.rings = Caffeine.newBuilder()
+            .maximumWeight(maxMemory.toBytes())
+            .weigher((Long user, RecentIdRing ring) -> weight)
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
+    public void record(long userId, long productId) {
+        // An uncached user isn't loaded here; the next read merges this view in from the buffer
+        RecentIdRing ring = rings.getIfPresent(userId);
+        if (ring != null) ring.push(productId);
+        writeBehind.record(userId, productId, Instant.now());
+    }
+
+    /** Product ids the user viewed, most recent first. */
+    public long[] recent(long userId) {
+        return rings.get(userId, this::load).newestFirst();
+    }
+
+    /** Drops a product from every cached list (e.g. once it no longer exists). */
+    public void forget(long productId) {
+        rings.asMap().values().forEach(ring -> ring.remove(productId));
+    }
+
+    public long users() {
+        rings.cleanUp();
+        return rings.estimatedSize();
+    }
+
+    /** Stored history plus views still in the write-behind buffer, oldest pushed first. */
+    private RecentIdRing load(long userId) {
+        List<View> views = new ArrayList<>(repository.findRecent(userId, capacity));
+        views.addAll(writeBehind.pending(userId));
+        views.sort(Comparator.comparing(View::viewedAt));
+        RecentIdRing ring = new RecentIdRing(capacity);
+        views.forEach(v -> ring.push(v.productId()));
+        return ring;
+    }
+}
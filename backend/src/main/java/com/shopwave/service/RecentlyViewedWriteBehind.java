@@ -0,0 +1,126 @@
+package com.shopwave.service;
+
+import com.shopwave.repository.RecentlyViewedRepository;
+import com.shopwave.repository.RecentlyViewedRepository.View;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind buffer for recently-viewed history.
+ *
+ * A view is one map merge on the request thread — no I/O. Repeat views of a
+ * product by the same user coalesce into one pending row carrying the
+ * latest time. A background thread drains the buffer every
+ * {@code flush-interval} (sooner once {@code max-pending} rows are waiting)
+ * as one batched upsert, then trims the touched users to their newest
+ * {@code capacity} rows. History is best effort: a failed batch is logged
+ * and dropped rather than retried forever.
+ */
+@Component
+@Slf4j
+public class RecentlyViewedWriteBehind {
+
+    record Key(long userId, long productId) {}
+
+    private final RecentlyViewedRepository repository;
+    private final int keep;
+    private final int maxPending;
+    private final Duration flushInterval;
+
+    private final Map<Key, Instant> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean earlyFlushQueued = new AtomicBoolean();
+    private ScheduledExecutorService flusher;
+
+    public RecentlyViewedWriteBehind(RecentlyViewedRepository repository,
+                                     @Value("${recently-viewed.capacity:20}") int keep,
+                                     @Value("${recently-viewed.max-pending:10000}") int maxPending,
+                                     @Value("${recently-viewed.flush-interval:2s}") Duration flushInterval) {
+        this.repository = repository;
+        this.keep = keep;
+        this.maxPending = maxPending;
+        this.flushInterval = flushInterval;
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "recently-viewed-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flushQuietly();
+    }
+
+    public void record(long userId, long productId, Instant at) {
+        pending.merge(new Key(userId, productId), at, (a, b) -> a.isAfter(b) ? a : b);
+        if (pending.size() >= maxPending && earlyFlushQueued.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                earlyFlushQueued.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    /** Views of this user not yet written. */
+    public List<View> pending(long userId) {
+        List<View> out = new ArrayList<>();
+        pending.forEach((k, at) -> {
+            if (k.userId() == userId) out.add(new View(k.userId(), k.productId(), at));
+        });
+        return out;
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /** Writes everything buffered so far; returns the number of rows sent. */
+    public synchronized int flush() {
+        if (pending.isEmpty()) return 0;
+        List<View> batch = new ArrayList<>(pending.size());
+        Set<Long> users = new HashSet<>();
+        for (Map.Entry<Key, Instant> e : pending.entrySet()) {
+            Key k = e.getKey();
+            // Conditional remove: a newer view that raced in stays for the next flush
+            if (pending.remove(k, e.getValue())) {
+                batch.add(new View(k.userId(), k.productId(), e.getValue()));
+                users.add(k.userId());
+            }
+        }
+        repository.upsert(batch);
+        repository.trim(users, keep);
+        return batch.size();
+    }
+
+    private void flushQuietly() {
+        try {
+            int n = flush();
+            if (n > 0) log.debug("Flushed {} recently-viewed rows", n);
+        } catch (DataAccessException e) {
+            log.warn("Dropping a recently-viewed batch: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Recently-viewed flush failed", e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.shopwave.service;
+
+import com.shopwave.event.CacheInvalidationEvent;
+import com.shopwave.model.Category;
+import com.shopwave.model.Coupon;
+import com.shopwave.model.Product;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Cache;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies invalidations from other replicas to Hibernate's second-level
+ * cache. Local writes need nothing here: Hibernate maintains the regions
+ * itself, and counter updates evict their own row.
+ *
+ * Category changes also drop the cached query results, since a lookup by
+ * slug may now match a different row (or none).
+ */
+@Component
+@RequiredArgsConstructor
+public class SecondLevelCacheInvalidator {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @EventListener
+    public void onInvalidation(CacheInvalidationEvent event) {
+        Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        Class<?> entity = switch (event.kind()) {
+            case PRODUCT -> Product.class;
+            case CATEGORY -> Category.class;
+            case COUPON -> Coupon.class;
+            case SUGGESTION_RANKING -> null;
+        };
+        if (entity == null) return;
+        if (event.isFullResync()) {
+            cache.evictEntityData(entity);
+            cache.evictNaturalIdData(entity);
+        } else {
+            event.keys().forEach(id -> cache.evictEntityData(entity, Long.valueOf(id)));
+        }
+        if (event.kind() == CacheInvalidationEvent.Kind.CATEGORY) cache.evictQueryRegions();
+    }
+}
@@ -0,0 +1,12 @@
+-- Durable recently-viewed history, written behind by the app in batched
+-- upserts (one row per user and product, latest view wins) and trimmed to
+-- the newest recently-viewed.capacity rows per user.
+CREATE TABLE IF NOT EXISTS recently_viewed (
+    user_id    BIGINT    NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    product_id BIGINT    NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    viewed_at  TIMESTAMP NOT NULL,
+    PRIMARY KEY (user_id, product_id)
+);
+
+-- Newest-first read per user: WHERE user_id = ? ORDER BY viewed_at DESC LIMIT n
+CREATE INDEX IF NOT EXISTS idx_recently_viewed_user_time ON recently_viewed(user_id, viewed_at DESC);
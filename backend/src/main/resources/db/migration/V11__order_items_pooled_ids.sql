@@ -0,0 +1,5 @@
+-- order_items ids come from the BIGSERIAL sequence through Hibernate's pooled
+-- optimizer (allocationSize = 50 on OrderItem), so one nextval covers fifty
+-- rows and a checkout's items can be inserted as a single JDBC batch. The
+-- increment has to match allocationSize.
+ALTER SEQUENCE order_items_id_seq INCREMENT BY 50;
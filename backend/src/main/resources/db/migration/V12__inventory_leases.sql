@@ -0,0 +1,30 @@
+-- Inventory engine (InventoryEngine): each app instance ("holder") leases
+-- units of a product's stock into in-memory counters and sells from them.
+-- products.stock stays the physical total; what is free to lease is
+-- stock minus the sum of units held.
+CREATE TABLE IF NOT EXISTS inventory_holders (
+    holder       VARCHAR(64) PRIMARY KEY,
+    heartbeat_at TIMESTAMP   NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS inventory_leases (
+    holder     VARCHAR(64) NOT NULL,
+    product_id BIGINT      NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    units      INT         NOT NULL,
+    PRIMARY KEY (holder, product_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_inventory_leases_product ON inventory_leases(product_id);
+
+-- One row per product per order, written in the order's transaction, so a
+-- sale is durable before it reaches products.stock. Folded into stock and
+-- the holder's lease in batches, then deleted.
+CREATE TABLE IF NOT EXISTS inventory_journal (
+    id         BIGSERIAL   PRIMARY KEY,
+    holder     VARCHAR(64) NOT NULL,
+    product_id BIGINT      NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    quantity   INT         NOT NULL,
+    order_id   BIGINT
+);
+
+CREATE INDEX IF NOT EXISTS idx_inventory_journal_holder ON inventory_journal(holder, product_id);
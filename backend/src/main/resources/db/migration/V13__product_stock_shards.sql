@@ -0,0 +1,4 @@
+-- Hot-item mode: a product with stock_shards > 1 has its leased units split
+-- across that many in-memory counters on each instance (InventoryEngine),
+-- and leases that many chunks per refill. 1 means a single counter.
+ALTER TABLE products ADD COLUMN IF NOT EXISTS stock_shards SMALLINT NOT NULL DEFAULT 1;
@@ -0,0 +1,17 @@
+-- Responses to requests sent with an Idempotency-Key header (IdempotencyStore).
+-- key_hash is SHA-256 of user, endpoint and client key, so rows stay small
+-- whatever clients send; fingerprint is SHA-256 of the request body. A row
+-- with a null status is still executing on the instance that claimed it,
+-- until locked_until; after that another instance may take it over.
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    key_hash     BYTEA        PRIMARY KEY,
+    fingerprint  BYTEA        NOT NULL,
+    status       SMALLINT,
+    content_type VARCHAR(100),
+    location     VARCHAR(500),
+    body         BYTEA,
+    locked_until TIMESTAMP    NOT NULL,
+    expires_at   TIMESTAMP    NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires ON idempotency_keys(expires_at);
@@ -0,0 +1,4 @@
+-- Random per-claim token (IdempotencyStore): completing or releasing a key
+-- only touches the claim that was taken, not one another instance took
+-- over after this one's lock lapsed.
+ALTER TABLE idempotency_keys ADD COLUMN IF NOT EXISTS claim_token BYTEA;
@@ -0,0 +1,9 @@
+-- Autocomplete ranking weights last set through PUT /products/search/suggestions/ranking.
+-- One row; while it is absent the search.suggest.weight.* properties apply.
+CREATE TABLE IF NOT EXISTS suggestion_ranking (
+    id            SMALLINT         PRIMARY KEY DEFAULT 1 CHECK (id = 1),
+    weight_sold   DOUBLE PRECISION NOT NULL,
+    weight_views  DOUBLE PRECISION NOT NULL,
+    weight_rating DOUBLE PRECISION NOT NULL,
+    updated_at    TIMESTAMP        NOT NULL DEFAULT now()
+);
@@ -0,0 +1,3 @@
+-- Startup catch-up after restoring the search snapshot reads only rows
+-- changed since its watermark: WHERE updated_at >= ?
+CREATE INDEX IF NOT EXISTS idx_products_updated_at ON products(updated_at);
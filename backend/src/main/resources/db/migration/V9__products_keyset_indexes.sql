@@ -0,0 +1,18 @@
+-- Keyset paging for GET /products/scroll and /products/category/{id}/scroll:
+-- WHERE key >= ? AND (key > ? OR id > ?) ORDER BY key, id LIMIT n, one index per
+-- whitelisted sort field. Partial on the listing filter so they stay small;
+-- descending sorts scan the same indexes backwards.
+
+-- Catalog listing (is_active = true)
+CREATE INDEX IF NOT EXISTS idx_products_active_created_id ON products(created_at, id) WHERE is_active = TRUE;
+CREATE INDEX IF NOT EXISTS idx_products_active_price_id   ON products(price, id)      WHERE is_active = TRUE;
+CREATE INDEX IF NOT EXISTS idx_products_active_name_id    ON products(name, id)       WHERE is_active = TRUE;
+CREATE INDEX IF NOT EXISTS idx_products_active_rating_id  ON products((COALESCE(average_rating, 0)), id) WHERE is_active = TRUE;
+CREATE INDEX IF NOT EXISTS idx_products_active_sold_id    ON products((COALESCE(total_sold, 0)), id)     WHERE is_active = TRUE;
+
+-- Category listing (status = 'ACTIVE')
+CREATE INDEX IF NOT EXISTS idx_products_cat_created_id ON products(category_id, created_at, id) WHERE status = 'ACTIVE';
+CREATE INDEX IF NOT EXISTS idx_products_cat_price_id   ON products(category_id, price, id)      WHERE status = 'ACTIVE';
+CREATE INDEX IF NOT EXISTS idx_products_cat_name_id    ON products(category_id, name, id)       WHERE status = 'ACTIVE';
+CREATE INDEX IF NOT EXISTS idx_products_cat_rating_id  ON products(category_id, (COALESCE(average_rating, 0)), id) WHERE status = 'ACTIVE';
+CREATE INDEX IF NOT EXISTS idx_products_cat_sold_id    ON products(category_id, (COALESCE(total_sold, 0)), id)     WHERE status = 'ACTIVE';
@@ -0,0 +1,40 @@
+package com.shopwave;
+
+import com.shopwave.index.CompactTrie;
+import com.shopwave.service.ProductService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * The whole application context starts under the test profile (H2, schema
+ * generated from the entities, Flyway off) and finishes its startup work.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@DisplayName("Application Context Tests")
+class ShopWaveApplicationTest {
+
+    @Autowired private ProductService productService;
+
+    @Test
+    @DisplayName("starts, with the configured suggestion weights while none are stored")
+    void contextLoads() {
+        assertThat(productService.getSuggestionWeights()).isEqualTo(new CompactTrie.RankingWeights(1.0, 0.3, 0.5));
+    }
+
+    @Test
+    @DisplayName("stored suggestion weights are applied and read back")
+    void storesSuggestionWeights() {
+        CompactTrie.RankingWeights weights = productService.updateSuggestionWeights(2.0, 0.1, 0.0);
+        try {
+            assertThat(productService.getSuggestionWeights()).isEqualTo(weights);
+        } finally {
+            productService.updateSuggestionWeights(1.0, 0.3, 0.5);
+        }
+    }
+}
@@ -374,6 +374,37 @@ class DSAUtilsTest {
             List<Long> related = graph.getRelatedProducts(1L, 2);
             assertThat(related).doesNotHaveDuplicates();
         }
+
+        @Test
+        @DisplayName("repeated edges accumulate weight; strongest neighbours come heaviest first")
+        void strongestNeighbours() {
+            DSAUtils.ProductGraph graph = new DSAUtils.ProductGraph();
+            graph.addEdge(1L, 2L);
+            graph.addEdge(1L, 3L, 3);
+            graph.addEdge(2L, 1L);
+            graph.addEdge(1L, 4L, 2);
+            graph.addEdge(1L, 1L);
+            assertThat(graph.weight(1L, 2L)).isEqualTo(2);
+            assertThat(graph.weight(2L, 1L)).isEqualTo(2);
+            assertThat(graph.strongestNeighbours(1L, 2)).containsExactly(3L, 2L);
+            assertThat(graph.strongestNeighbours(1L, 5)).containsExactly(3L, 2L, 4L);
+            assertThat(graph.getRelatedProducts(1L, 1)).doesNotContain(1L);
+        }
+
+        @Test
+        @DisplayName("prune drops light edges, caps degree and removes isolated nodes")
+        void prune() {
+            DSAUtils.ProductGraph graph = new DSAUtils.ProductGraph();
+            graph.addEdge(1L, 2L, 5);
+            graph.addEdge(1L, 3L, 4);
+            graph.addEdge(1L, 4L, 3);
+            graph.addEdge(5L, 6L, 1);
+            graph.prune(2, 2);
+            assertThat(graph.strongestNeighbours(1L, 10)).containsExactly(2L, 3L);
+            assertThat(graph.strongestNeighbours(4L, 10)).containsExactly(1L);
+            assertThat(graph.getRelatedProducts(5L, 1)).isEmpty();
+            assertThat(graph.nodeCount()).isEqualTo(4);
+        }
     }
 
     // ================================================================
@@ -0,0 +1,107 @@
+package com.shopwave.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for EarlyRefreshCaffeineCache.
+ */
+@DisplayName("EarlyRefreshCaffeineCache Unit Tests")
+class EarlyRefreshCaffeineCacheTest {
+
+    private static EarlyRefreshCaffeineCache cache(DoubleSupplier random) {
+        return new EarlyRefreshCaffeineCache("products",
+                Caffeine.newBuilder().expireAfterWrite(Duration.ofSeconds(1)).build(), true, 1.0, random);
+    }
+
+    /** A loader slow enough that delta · −ln(1e-300) spans the whole TTL. */
+    private static <T> Callable<T> slow(Callable<T> loader) {
+        return () -> {
+            Thread.sleep(5);
+            return loader.call();
+        };
+    }
+
+    @Test
+    @DisplayName("concurrent misses for one key share a single load")
+    void singleFlight() throws Exception {
+        EarlyRefreshCaffeineCache cache = cache(() -> 1.0);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cache.get(42L, () -> {
+                        loads.incrementAndGet();
+                        Thread.sleep(100);
+                        return "product-42";
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> f : results) assertThat(f.get(5, TimeUnit.SECONDS)).isEqualTo("product-42");
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("a read that draws an early expiry reloads the entry ahead of its TTL")
+    void earlyRefresh() {
+        // -ln(1e-300) ≈ 690 load times: every read of a loaded key refreshes
+        EarlyRefreshCaffeineCache cache = cache(() -> 1e-300);
+        AtomicInteger loads = new AtomicInteger();
+        Callable<Integer> loader = slow(loads::incrementAndGet);
+        assertThat(cache.get(1L, loader)).isEqualTo(1);
+        assertThat(cache.get(1L, loader)).isEqualTo(2);
+        assertThat(cache.get(1L, Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("fresh entries are served without reloading")
+    void noEarlyRefresh() {
+        EarlyRefreshCaffeineCache cache = cache(() -> 1.0);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(1L, loads::incrementAndGet);
+        cache.get(1L, loads::incrementAndGet);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("a failed early refresh falls back to the cached value")
+    void failedRefresh() {
+        EarlyRefreshCaffeineCache cache = cache(() -> 1e-300);
+        cache.get(1L, slow(() -> "v1"));
+        Callable<String> failing = () -> {
+            throw new IllegalStateException("db down");
+        };
+        assertThat(cache.get(1L, failing)).isEqualTo("v1");
+    }
+
+    @Test
+    @DisplayName("an eviction while an early refresh is loading wins over the refreshed value")
+    void evictDuringRefreshWins() {
+        EarlyRefreshCaffeineCache cache = cache(() -> 1e-300);
+        cache.get(1L, slow(() -> "v1"));
+        String refreshed = cache.get(1L, slow(() -> {
+            cache.evict(1L);                        // the after-commit invalidation lands mid-load
+            return "v1-stale";
+        }));
+        assertThat(refreshed).isEqualTo("v1-stale");
+        assertThat(cache.get(1L)).isNull();
+    }
+}
@@ -0,0 +1,80 @@
+package com.shopwave.event;
+
+import com.shopwave.ShopWaveApplication;
+import com.shopwave.dto.ProductRequest;
+import com.shopwave.model.Product;
+import com.shopwave.repository.ProductRepository;
+import com.shopwave.service.ProductService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Two application contexts sharing one Postgres database: a write on one
+ * must reach the other's product cache over LISTEN/NOTIFY. Needs a real
+ * server, so it runs only when SHOPWAVE_PG_URL (plus SHOPWAVE_PG_USER /
+ * SHOPWAVE_PG_PASSWORD) points at a scratch database.
+ */
+@EnabledIfEnvironmentVariable(named = "SHOPWAVE_PG_URL", matches = "jdbc:postgresql:.+")
+@DisplayName("InvalidationBus Integration Tests")
+class InvalidationBusIntegrationTest {
+
+    private static ConfigurableApplicationContext replicaA;
+    private static ConfigurableApplicationContext replicaB;
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(ShopWaveApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + System.getenv("SHOPWAVE_PG_URL"),
+                "--spring.datasource.username=" + System.getenv().getOrDefault("SHOPWAVE_PG_USER", "postgres"),
+                "--spring.datasource.password=" + System.getenv().getOrDefault("SHOPWAVE_PG_PASSWORD", ""),
+                "--jwt.secret=test-jwt-secret-at-least-32-characters-long",
+                "--search.snapshot.enabled=false",
+                "--invalidation.bus.enabled=true",
+                "--invalidation.bus.batch-window=20ms");
+    }
+
+    @BeforeAll
+    static void startReplicas() {
+        replicaA = start();
+        replicaB = start();
+    }
+
+    @AfterAll
+    static void stopReplicas() {
+        if (replicaB != null) replicaB.close();
+        if (replicaA != null) replicaA.close();
+    }
+
+    @Test
+    @DisplayName("a price change on one replica evicts the other's cached product")
+    void crossReplicaEviction() throws InterruptedException {
+        Product any = replicaA.getBean(ProductRepository.class).findAll(PageRequest.of(0, 1)).getContent().get(0);
+        ProductService a = replicaA.getBean(ProductService.class);
+        ProductService b = replicaB.getBean(ProductService.class);
+
+        BigDecimal before = b.getProductById(any.getId()).getPrice();   // now cached on B
+        BigDecimal after = before.add(BigDecimal.ONE);
+        ProductRequest change = new ProductRequest();
+        change.setPrice(after);
+        a.updateProduct(any.getId(), change, "test@shopwave.local");
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (b.getProductById(any.getId()).getPrice().compareTo(after) != 0) {
+            assertThat(System.currentTimeMillis()).as("B still serves the old price").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+
+        change.setPrice(before);
+        a.updateProduct(any.getId(), change, "test@shopwave.local");
+    }
+}
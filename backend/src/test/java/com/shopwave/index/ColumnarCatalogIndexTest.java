@@ -0,0 +1,132 @@
+package com.shopwave.index;
+
+import com.shopwave.index.ColumnarCatalogIndex.Order;
+import com.shopwave.index.ColumnarCatalogIndex.Row;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for ColumnarCatalogIndex.
+ */
+@DisplayName("ColumnarCatalogIndex Unit Tests")
+class ColumnarCatalogIndexTest {
+
+    private static final long ANY_MIN = Long.MIN_VALUE, ANY_MAX = Long.MAX_VALUE;
+
+    private ColumnarCatalogIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ColumnarCatalogIndex();
+        index.upsert(new Row(1, 10L, 1_299_900, 4.5f, 3));
+        index.upsert(new Row(2, 10L, 49_900, 3.9f, 0));
+        index.upsert(new Row(3, 10L, 899_900, 4.8f, 12));
+        index.upsert(new Row(4, 10L, 49_900, 4.1f, 7));
+        index.upsert(new Row(5, 20L, 99_900, 4.0f, 1));
+    }
+
+    private long[] select(long category, Order order, long min, long max, boolean inStock, int offset, int limit) {
+        long[] out = new long[limit];
+        int n = index.select(category, order, min, max, inStock, offset, out);
+        return Arrays.copyOf(out, n);
+    }
+
+    @Test
+    @DisplayName("sorts by price both ways and by rating, ties broken by id")
+    void orders() {
+        assertThat(select(10, Order.PRICE_ASC, ANY_MIN, ANY_MAX, false, 0, 10)).containsExactly(2, 4, 3, 1);
+        assertThat(select(10, Order.PRICE_DESC, ANY_MIN, ANY_MAX, false, 0, 10)).containsExactly(1, 3, 4, 2);
+        assertThat(select(10, Order.RATING_DESC, ANY_MIN, ANY_MAX, false, 0, 10)).containsExactly(3, 1, 4, 2);
+    }
+
+    @Test
+    @DisplayName("price range bounds are inclusive and combine with paging and stock")
+    void priceRange() {
+        assertThat(select(10, Order.PRICE_ASC, 49_900, 899_900, false, 0, 10)).containsExactly(2, 4, 3);
+        assertThat(index.count(10, 49_900, 899_900, false)).isEqualTo(3);
+        assertThat(select(10, Order.PRICE_ASC, 49_900, 899_900, false, 1, 1)).containsExactly(4);
+        assertThat(select(10, Order.PRICE_ASC, 49_900, 899_900, true, 0, 10)).containsExactly(4, 3);
+        assertThat(index.count(10, 49_900, 899_900, true)).isEqualTo(2);
+        assertThat(select(10, Order.RATING_DESC, 0, 100_000, false, 0, 10)).containsExactly(4, 2);
+        assertThat(index.count(10, 900_000, 1_000_000, false)).isZero();
+    }
+
+    @Test
+    @DisplayName("top-k is the head of the price order; percentile reads one rank")
+    void topKAndPercentile() {
+        assertThat(select(10, Order.PRICE_ASC, ANY_MIN, ANY_MAX, false, 0, 2)).containsExactly(2, 4);
+        assertThat(index.percentile(10, 0.5)).isEqualTo(4);
+        assertThat(index.percentile(10, 1.0)).isEqualTo(1);
+        assertThat(index.percentile(10, 0.0)).isEqualTo(2);
+        assertThat(index.percentile(99, 0.5)).isEqualTo(-1);
+    }
+
+    @Test
+    @DisplayName("updates reposition a product and can move it between categories")
+    void updates() {
+        index.upsert(new Row(3, 10L, 10_000, 4.8f, 12));
+        assertThat(select(10, Order.PRICE_ASC, ANY_MIN, ANY_MAX, false, 0, 10)).containsExactly(3, 2, 4, 1);
+        index.upsert(new Row(3, 20L, 10_000, 4.8f, 12));
+        assertThat(index.size(10)).isEqualTo(3);
+        assertThat(select(20, Order.PRICE_ASC, ANY_MIN, ANY_MAX, false, 0, 10)).containsExactly(3, 5);
+        index.upsert(new Row(5, null, 99_900, 4.0f, 1));
+        assertThat(index.size(20)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("removal keeps both permutations ordered")
+    void removal() {
+        index.remove(2);
+        index.remove(42);
+        assertThat(select(10, Order.PRICE_ASC, ANY_MIN, ANY_MAX, false, 0, 10)).containsExactly(4, 3, 1);
+        assertThat(select(10, Order.RATING_DESC, ANY_MIN, ANY_MAX, false, 0, 10)).containsExactly(3, 1, 4);
+        index.remove(5);
+        assertThat(index.size(20)).isZero();
+    }
+
+    @Test
+    @DisplayName("random writes agree with sorting from scratch, and with a bulk build")
+    void randomAgainstNaive() {
+        Random rnd = new Random(11);
+        ColumnarCatalogIndex live = new ColumnarCatalogIndex();
+        Map<Long, Row> rows = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            long id = rnd.nextInt(800);
+            if (rnd.nextInt(5) == 0) {
+                live.remove(id);
+                rows.remove(id);
+            } else {
+                Row r = new Row(id, 1L, rnd.nextInt(50) * 10_000L, rnd.nextInt(10) / 2f, rnd.nextInt(3));
+                live.upsert(r);
+                rows.put(id, r);
+            }
+        }
+        ColumnarCatalogIndex bulk = new ColumnarCatalogIndex();
+        bulk.replaceAll(rows.values());
+
+        long[] byPrice = rows.values().stream()
+                .sorted(Comparator.comparingLong(Row::priceCents).thenComparingLong(Row::id))
+                .mapToLong(Row::id).toArray();
+        long[] byRating = rows.values().stream()
+                .sorted(Comparator.comparingDouble((Row r) -> -r.rating()).thenComparingLong(Row::id))
+                .mapToLong(Row::id).toArray();
+        for (ColumnarCatalogIndex idx : List.of(live, bulk)) {
+            long[] out = new long[rows.size() + 1];
+            assertThat(Arrays.copyOf(out, idx.select(1, Order.PRICE_ASC, ANY_MIN, ANY_MAX, false, 0, out)))
+                    .containsExactly(byPrice);
+            assertThat(Arrays.copyOf(out, idx.select(1, Order.RATING_DESC, ANY_MIN, ANY_MAX, false, 0, out)))
+                    .containsExactly(byRating);
+            long inRange = LongStream.of(byPrice).filter(id -> {
+                long p = rows.get(id).priceCents();
+                return p >= 100_000 && p <= 200_000;
+            }).count();
+            assertThat(idx.count(1, 100_000, 200_000, false)).isEqualTo(inRange);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.shopwave.index;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for CompactTrie.
+ *
+ * Mirrors the DSAUtils.Trie contract so the radix trie is a drop-in
+ * replacement, plus edge-splitting and snapshot-swap behaviour.
+ */
+@DisplayName("CompactTrie Unit Tests")
+class CompactTrieTest {
+
+    @Nested
+    @DisplayName("Autocomplete contract (same as DSAUtils.Trie)")
+    class ContractTests {
+
+        private CompactTrie trie;
+
+        @BeforeEach
+        void setUp() {
+            trie = new CompactTrie();
+            trie.insert("apple");
+            trie.insert("application");
+            trie.insert("apply");
+            trie.insert("banana");
+        }
+
+        @Test
+        @DisplayName("returns suggestions for valid prefix")
+        void suggestions_validPrefix() {
+            assertThat(trie.getSuggestions("app", 10))
+                    .containsExactlyInAnyOrder("apple", "application", "apply");
+        }
+
+        @Test
+        @DisplayName("respects limit parameter")
+        void suggestions_respectsLimit() {
+            assertThat(trie.getSuggestions("app", 2)).hasSize(2);
+        }
+
+        @Test
+        @DisplayName("returns empty list for unknown prefix")
+        void suggestions_unknownPrefix() {
+            assertThat(trie.getSuggestions("xyz", 10)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("handles null and empty prefix gracefully")
+        void suggestions_nullOrEmpty() {
+            assertThat(trie.getSuggestions(null, 10)).isEmpty();
+            assertThat(trie.getSuggestions("", 10)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("matching is case-insensitive, display word is preserved")
+        void insert_caseInsensitive() {
+            trie.insert("Mango");
+            assertThat(trie.getSuggestions("MAN", 5)).containsExactly("Mango");
+        }
+
+        @Test
+        @DisplayName("exact-match word is included in results")
+        void suggestions_exactMatch() {
+            assertThat(trie.getSuggestions("banana", 10)).contains("banana");
+        }
+    }
+
+    @Nested
+    @DisplayName("Radix edges")
+    class RadixTests {
+
+        @Test
+        @DisplayName("prefix ending inside a compressed edge still matches")
+        void prefixInsideEdge() {
+            CompactTrie trie = new CompactTrie();
+            trie.insert("samsung galaxy");
+            assertThat(trie.getSuggestions("sams", 10)).containsExactly("samsung galaxy");
+        }
+
+        @Test
+        @DisplayName("inserting a prefix of an existing key splits the edge")
+        void splitOnShorterKey() {
+            CompactTrie trie = new CompactTrie();
+            trie.insert("iphone 15");
+            trie.insert("iphone");
+            assertThat(trie.contains("iphone")).isTrue();
+            assertThat(trie.contains("iphone 15")).isTrue();
+            assertThat(trie.contains("iphon")).isFalse();
+            assertThat(trie.getSuggestions("iph", 10)).containsExactly("iphone", "iphone 15");
+        }
+
+        @Test
+        @DisplayName("diverging keys split the edge into a branch")
+        void splitOnDivergence() {
+            CompactTrie trie = new CompactTrie();
+            trie.insert("sony");
+            trie.insert("sonata");
+            assertThat(trie.getSuggestions("son", 10)).containsExactly("sonata", "sony");
+            assertThat(trie.getSuggestions("sonx", 10)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("suggestions come back in lexicographic order")
+        void lexicographicOrder() {
+            CompactTrie trie = new CompactTrie();
+            List.of("cc", "ca", "cb", "c").forEach(trie::insert);
+            assertThat(trie.getSuggestions("c", 10)).containsExactly("c", "ca", "cb", "cc");
+        }
+    }
+
+    @Nested
+    @DisplayName("Removal and rename")
+    class RemovalTests {
+
+        @Test
+        @DisplayName("removing a leaf merges the pass-through branch back into one edge")
+        void removeMergesBranch() {
+            CompactTrie trie = new CompactTrie();
+            trie.insert("sony");
+            trie.insert("sonata");
+            trie.delete("sonata");
+            assertThat(trie.contains("sonata")).isFalse();
+            assertThat(trie.getSuggestions("so", 10)).containsExactly("sony");
+            CompactTrie.Node only = trie.root().children[0];
+            assertThat(new String(only.label)).isEqualTo("sony");
+            assertThat(only.children).isEmpty();
+        }
+
+        @Test
+        @DisplayName("removing an inner term keeps its descendants")
+        void removeInnerTerm() {
+            CompactTrie trie = new CompactTrie();
+            trie.insert("iphone");
+            trie.insert("iphone 15");
+            trie.delete("iphone");
+            assertThat(trie.contains("iphone")).isFalse();
+            assertThat(trie.getSuggestions("iph", 10)).containsExactly("iphone 15");
+            assertThat(new String(trie.root().children[0].label)).isEqualTo("iphone 15");
+        }
+
+        @Test
+        @DisplayName("a shared term survives until every contributing product is removed")
+        void refCounted() {
+            CompactTrie trie = new CompactTrie();
+            CompactTrie.TermStats a = CompactTrie.TermStats.of(10, 0, 4.0);
+            CompactTrie.TermStats b = CompactTrie.TermStats.of(5, 0, 5.0);
+            trie.insert("Samsung", a);
+            trie.insert("Samsung", b);
+            trie.remove("samsung", a);
+            assertThat(trie.stats("samsung").sold()).isEqualTo(5);
+            trie.remove("Samsung", b);
+            assertThat(trie.contains("samsung")).isFalse();
+            assertThat(trie.getSuggestions("s", 10)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("rename moves the term and re-ranks ancestors")
+        void rename() {
+            CompactTrie trie = new CompactTrie(1, CompactTrie.RankingWeights.DEFAULT);
+            CompactTrie.TermStats hot = CompactTrie.TermStats.of(1_000, 0, 5.0);
+            trie.insert("sony bravia", CompactTrie.TermStats.of(1, 0, 3.0));
+            trie.insert("sony walkman", hot);
+            trie.replace("sony walkman", hot, "panasonic walkman", hot);
+            assertThat(trie.contains("sony walkman")).isFalse();
+            assertThat(trie.getSuggestions("sony", 1)).containsExactly("sony bravia");
+            assertThat(trie.getSuggestions("pana", 1)).containsExactly("panasonic walkman");
+        }
+
+        @Test
+        @DisplayName("removing an unknown word is a no-op")
+        void removeUnknown() {
+            CompactTrie trie = new CompactTrie();
+            trie.insert("kettle");
+            trie.delete("kettles");
+            trie.delete("kett");
+            trie.delete(null);
+            assertThat(trie.getSuggestions("k", 10)).containsExactly("kettle");
+        }
+    }
+
+    @Nested
+    @DisplayName("Popularity ranking")
+    class RankingTests {
+
+        private CompactTrie trie;
+
+        @BeforeEach
+        void setUp() {
+            trie = new CompactTrie(3, CompactTrie.RankingWeights.DEFAULT);
+            trie.insert("samsung galaxy s24", CompactTrie.TermStats.of(500, 100, 4.5));
+            trie.insert("samsung tv",         CompactTrie.TermStats.of(50, 10_000, 4.0));
+            trie.insert("sandisk ssd",        CompactTrie.TermStats.of(5, 5, 3.0));
+            trie.insert("sony headphones",    CompactTrie.TermStats.of(2_000, 50, 4.8));
+            trie.insert("saree",              CompactTrie.TermStats.of(0, 0, null));
+        }
+
+        @Test
+        @DisplayName("suggestions are ordered by score, not by key")
+        void orderedByScore() {
+            assertThat(trie.getSuggestions("s", 3))
+                    .containsExactly("sony headphones", "samsung galaxy s24", "samsung tv");
+            assertThat(trie.getSuggestions("sa", 3))
+                    .containsExactly("samsung galaxy s24", "samsung tv", "sandisk ssd");
+        }
+
+        @Test
+        @DisplayName("inserting the same term again adds to its stats")
+        void repeatedInsertAccumulates() {
+            trie.insert("SANDISK SSD", CompactTrie.TermStats.of(100_000, 0, null));
+            assertThat(trie.getSuggestions("s", 1)).containsExactly("sandisk ssd");
+            assertThat(trie.stats("sandisk ssd").refs()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("changing weights re-ranks without re-inserting")
+        void reweight() {
+            trie.setWeights(new CompactTrie.RankingWeights(0, 1, 0));   // views only
+            assertThat(trie.getSuggestions("sa", 1)).containsExactly("samsung tv");
+            assertThat(trie.getWeights().views()).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("limit above k ranks the whole subtree")
+        void limitAboveK() {
+            assertThat(trie.getSuggestions("s", 10)).hasSize(5)
+                    .startsWith("sony headphones")
+                    .endsWith("saree");
+        }
+
+        @Test
+        @DisplayName("bulk ranked load matches incremental inserts")
+        void bulkMatchesIncremental() {
+            CompactTrie bulk = new CompactTrie(3, CompactTrie.RankingWeights.DEFAULT);
+            bulk.replaceAllRanked(Map.of(
+                    "samsung galaxy s24", CompactTrie.TermStats.of(500, 100, 4.5),
+                    "samsung tv",         CompactTrie.TermStats.of(50, 10_000, 4.0),
+                    "sandisk ssd",        CompactTrie.TermStats.of(5, 5, 3.0),
+                    "sony headphones",    CompactTrie.TermStats.of(2_000, 50, 4.8),
+                    "saree",              CompactTrie.TermStats.of(0, 0, null)));
+            for (String p : List.of("s", "sa", "sam", "so", "x")) {
+                assertThat(bulk.getSuggestions(p, 3)).isEqualTo(trie.getSuggestions(p, 3));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Fuzzy suggestions — Levenshtein automaton")
+    class FuzzyTests {
+
+        private CompactTrie trie;
+
+        @BeforeEach
+        void setUp() {
+            trie = new CompactTrie();
+            trie.insert("samsung galaxy s24", CompactTrie.TermStats.of(500, 0, 4.5));
+            trie.insert("samsung",            CompactTrie.TermStats.of(900, 0, 4.4));
+            trie.insert("iphone 15 pro",      CompactTrie.TermStats.of(800, 0, 4.7));
+            trie.insert("ipad air",           CompactTrie.TermStats.of(100, 0, 4.6));
+            trie.insert("sony",               CompactTrie.TermStats.of(50, 0, 4.0));
+        }
+
+        @Test
+        @DisplayName("corrects adjacent transpositions with one edit")
+        void transposition() {
+            assertThat(trie.getFuzzySuggestions("samsnug", 1, 10))
+                    .containsExactly("samsung", "samsung galaxy s24");
+            assertThat(trie.getFuzzySuggestions("iphoen", 1, 10)).containsExactly("iphone 15 pro");
+        }
+
+        @Test
+        @DisplayName("corrects substitutions, insertions and deletions")
+        void basicEdits() {
+            assertThat(trie.getFuzzySuggestions("iphine", 1, 10)).contains("iphone 15 pro");   // substitution
+            assertThat(trie.getFuzzySuggestions("ipphone", 1, 10)).contains("iphone 15 pro");  // insertion
+            assertThat(trie.getFuzzySuggestions("ihone", 1, 10)).contains("iphone 15 pro");    // deletion
+        }
+
+        @Test
+        @DisplayName("nothing beyond the edit budget is returned")
+        void respectsBudget() {
+            assertThat(trie.getFuzzySuggestions("smasnug", 1, 10)).isEmpty();
+            assertThat(trie.getFuzzySuggestions("smasnug", 2, 10)).contains("samsung");
+        }
+
+        @Test
+        @DisplayName("exact prefix matches rank ahead of corrections")
+        void exactFirst() {
+            trie.insert("sonata", CompactTrie.TermStats.of(100_000, 0, null));
+            assertThat(trie.getFuzzySuggestions("sony", 1, 10).get(0)).isEqualTo("sony");
+        }
+
+        @Test
+        @DisplayName("zero edits degrades to plain prefix lookup")
+        void zeroEdits() {
+            assertThat(trie.getFuzzySuggestions("samsnug", 0, 10)).isEmpty();
+            assertThat(trie.getFuzzySuggestions("ipa", 0, 10)).containsExactly("ipad air");
+        }
+    }
+
+    @Nested
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    @DisplayName("Fuzzy suggestions — 100k-term dictionary")
+    class FuzzyScaleTests {
+
+        private static final int TERMS = 100_000;
+        private static final String[] BRANDS = {
+            "samsung", "apple", "sony", "lenovo", "dell", "philips", "boat", "nike", "adidas", "puma",
+            "xiaomi", "oneplus", "realme", "asus", "acer", "canon", "nikon", "bosch", "prestige", "havells"};
+        private static final String[] NOUNS = {
+            "phone", "laptop", "headphones", "speaker", "watch", "shoes", "camera", "mixer", "kettle", "trimmer",
+            "monitor", "keyboard", "charger", "tablet", "earbuds", "jacket", "backpack", "router", "iron", "fan"};
+
+        private CompactTrie trie;
+
+        @BeforeAll
+        void buildDictionary() {
+            Random rnd = new Random(42);
+            Map<String, CompactTrie.TermStats> terms = new HashMap<>(TERMS * 2);
+            while (terms.size() < TERMS) {
+                String term = BRANDS[rnd.nextInt(BRANDS.length)] + " " + NOUNS[rnd.nextInt(NOUNS.length)]
+                        + " " + Integer.toString(rnd.nextInt(1 << 20), 36);
+                terms.put(term, CompactTrie.TermStats.of(rnd.nextInt(1000), rnd.nextInt(10_000), 3 + rnd.nextDouble() * 2));
+            }
+            terms.put("samsung galaxy s24 ultra", CompactTrie.TermStats.of(1_000_000, 0, 4.9));
+            trie = new CompactTrie();
+            trie.replaceAllRanked(terms);
+        }
+
+        @Test
+        @DisplayName("finds the intended term through typos")
+        void findsThroughTypos() {
+            assertThat(trie.getFuzzySuggestions("samsnug galxy", 2, 10)).contains("samsung galaxy s24 ultra");
+            assertThat(trie.getFuzzySuggestions("lenvoo lap", 2, 10)).isNotEmpty()
+                    .allMatch(s -> s.startsWith("lenovo la"));
+        }
+
+        @Test
+        @DisplayName("results never exceed the requested limit")
+        void respectsLimit() {
+            assertThat(trie.getFuzzySuggestions("sony", 2, 10)).hasSize(10);
+        }
+
+        private static final String[] QUERIES = {"samsnug", "aplpe wat", "lenvoo", "phillips kettel", "adidsa shoes",
+            "xiaomi phnoe", "hvaells fan", "prestgie", "canon camrea", "oneplsu ear"};
+
+        @Test
+        @DisplayName("pruning keeps each lookup to a few hundred nodes of the whole trie (d ≤ 2)")
+        void prunes() {
+            int nodes = trie.nodeCount();
+            assertThat(nodes).isGreaterThan(TERMS);
+            for (String q : QUERIES) {
+                assertThat(trie.fuzzyVisits(q, 2)).as(q).isLessThan(500).isLessThan(nodes / 100);
+                assertThat(trie.fuzzyVisits(q, 1)).as(q).isLessThanOrEqualTo(trie.fuzzyVisits(q, 2));
+            }
+        }
+
+        /** Wall-clock, so opt-in like the other benchmarks: {@code -Dshopwave.benchmark=true}. */
+        @Test
+        @EnabledIfSystemProperty(named = "shopwave.benchmark", matches = "true")
+        @DisplayName("median query latency stays within the 1 ms budget (d ≤ 2)")
+        void latency() {
+            String[] queries = QUERIES;
+            for (int i = 0; i < 2_000; i++) trie.getFuzzySuggestions(queries[i % queries.length], 2, 10);  // warm-up
+
+            long[] nanos = new long[1_000];
+            for (int i = 0; i < nanos.length; i++) {
+                long t0 = System.nanoTime();
+                trie.getFuzzySuggestions(queries[i % queries.length], 2, 10);
+                nanos[i] = System.nanoTime() - t0;
+            }
+            Arrays.sort(nanos);
+            // Target is p99 < 1 ms on a dedicated core; the assertion uses the median.
+            assertThat(nanos[nanos.length / 2]).isLessThan(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    @Nested
+    @DisplayName("Snapshot publication")
+    class SnapshotTests {
+
+        @Test
+        @DisplayName("replaceAll matches incremental inserts")
+        void replaceAllEqualsInserts() {
+            List<String> words = List.of("apple", "Apple Watch", "apply", "banana", "band", "b", "application");
+            CompactTrie incremental = new CompactTrie();
+            words.forEach(incremental::insert);
+            CompactTrie bulk = new CompactTrie();
+            bulk.replaceAll(words);
+
+            for (String p : List.of("a", "app", "apple", "b", "ban", "z")) {
+                assertThat(bulk.getSuggestions(p, 20)).isEqualTo(incremental.getSuggestions(p, 20));
+            }
+        }
+
+        @Test
+        @DisplayName("replaceAll discards previous contents")
+        void replaceAllSwaps() {
+            CompactTrie trie = new CompactTrie();
+            trie.insert("old");
+            trie.replaceAll(List.of("new"));
+            assertThat(trie.contains("old")).isFalse();
+            assertThat(trie.contains("new")).isTrue();
+        }
+
+        @Test
+        @DisplayName("readers see a consistent trie while a writer inserts")
+        void concurrentReadsDuringWrites() throws Exception {
+            CompactTrie trie = new CompactTrie();
+            trie.insert("seed");
+            AtomicBoolean stop = new AtomicBoolean();
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(pool.submit(() -> {
+                    while (!stop.get()) {
+                        assertThat(trie.getSuggestions("see", 5)).containsExactly("seed");
+                        trie.getSuggestions("w", 10);
+                    }
+                }));
+            }
+            for (int i = 0; i < 5_000; i++) trie.insert("w" + i);
+            stop.set(true);
+            for (Future<?> f : readers) f.get(5, TimeUnit.SECONDS);
+            pool.shutdown();
+            assertThat(trie.contains("w4999")).isTrue();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.shopwave.index;
+
+import com.shopwave.config.DSAUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for CsrGraph.
+ */
+@DisplayName("CsrGraph Unit Tests")
+class CsrGraphTest {
+
+    private static CsrGraph undirected(long[]... edges) {
+        CsrGraph.Builder b = new CsrGraph.Builder();
+        for (long[] e : edges) {
+            b.addEdge(e[0], e[1], (int) e[2]);
+            b.addEdge(e[1], e[0], (int) e[2]);
+        }
+        return b.build();
+    }
+
+    private static long[] related(CsrGraph g, long id, int depth, int k) {
+        long[] out = new long[k];
+        return Arrays.copyOf(out, g.related(id, depth, x -> true, out));
+    }
+
+    @Test
+    @DisplayName("rows are heaviest first with ties by product id, and top-k is their prefix")
+    void neighboursByWeight() {
+        CsrGraph g = undirected(
+            new long[]{100, 7, 2}, new long[]{100, 3, 5}, new long[]{100, 9, 2}, new long[]{100, 42, 1});
+        assertThat(g.nodeCount()).isEqualTo(5);
+        assertThat(g.edgeCount()).isEqualTo(8);
+        long[] out = new long[3];
+        assertThat(g.neighbours(100, x -> true, out)).isEqualTo(3);
+        assertThat(out).containsExactly(3, 7, 9);
+        assertThat(g.neighbours(100, x -> x != 7, out)).isEqualTo(3);
+        assertThat(out).containsExactly(3, 9, 42);
+        assertThat(g.weight(100, 3)).isEqualTo(5);
+        assertThat(g.weight(3, 100)).isEqualTo(5);
+        assertThat(g.weight(3, 7)).isZero();
+        assertThat(g.neighbours(555, x -> true, out)).isZero();
+    }
+
+    @Test
+    @DisplayName("BFS returns depth 1 before depth 2, skips the start and stops when the buffer is full")
+    void breadthFirst() {
+        CsrGraph g = undirected(
+            new long[]{1, 2, 1}, new long[]{1, 3, 4},
+            new long[]{2, 4, 9}, new long[]{3, 5, 1}, new long[]{5, 6, 1});
+        assertThat(related(g, 1, 1, 10)).containsExactly(3, 2);
+        assertThat(related(g, 1, 2, 10)).containsExactly(3, 2, 5, 4);
+        assertThat(related(g, 1, 3, 10)).containsExactly(3, 2, 5, 4, 6);
+        assertThat(related(g, 1, 3, 3)).containsExactly(3, 2, 5);
+
+        long[] out = new long[10];
+        int n = g.related(1, 2, x -> x != 3, out);
+        assertThat(Arrays.copyOf(out, n)).containsExactly(2, 5, 4);
+    }
+
+    @Test
+    @DisplayName("the per-thread frontier is reused across graphs of different sizes")
+    void frontierReuse() {
+        CsrGraph small = undirected(new long[]{1, 2, 1});
+        CsrGraph large = undirected(new long[]{1, 2, 1}, new long[]{2, 3, 1}, new long[]{3, 4, 1}, new long[]{4, 5, 1});
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(related(small, 1, 5, 10)).containsExactly(2);
+            assertThat(related(large, 1, 5, 10)).containsExactly(2, 3, 4, 5);
+            assertThat(related(large, 3, 1, 10)).containsExactly(2, 4);
+        }
+    }
+
+    @Test
+    @DisplayName("random graphs agree with ProductGraph's BFS")
+    void randomAgainstProductGraph() {
+        Random rnd = new Random(5);
+        DSAUtils.ProductGraph reference = new DSAUtils.ProductGraph();
+        for (int i = 0; i < 3_000; i++) {
+            reference.addEdge((long) rnd.nextInt(400), (long) rnd.nextInt(400), 1 + rnd.nextInt(4));
+        }
+        CsrGraph.Builder b = new CsrGraph.Builder();
+        reference.forEachEdge(b::addEdge);
+        CsrGraph g = b.build();
+
+        for (long id = 0; id < 400; id += 7) {
+            for (int depth = 1; depth <= 3; depth++) {
+                assertThat(Arrays.stream(related(g, id, depth, 400)).boxed().toList())
+                    .containsExactlyInAnyOrderElementsOf(reference.getRelatedProducts(id, depth));
+            }
+            long[] top = new long[5];
+            int n = g.neighbours(id, x -> true, top);
+            assertThat(Arrays.stream(top, 0, n).boxed().toList()).containsExactlyElementsOf(reference.strongestNeighbours(id, 5));
+        }
+    }
+
+    @Test
+    @DisplayName("empty graph and invalid weights")
+    void edgeCases() {
+        assertThat(CsrGraph.EMPTY.nodeCount()).isZero();
+        assertThat(related(CsrGraph.EMPTY, 1, 3, 5)).isEmpty();
+        assertThatThrownBy(() -> new CsrGraph.Builder().addEdge(1, 2, 0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,144 @@
+package com.shopwave.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for FacetIndex and RoaringBitmap.
+ */
+@DisplayName("FacetIndex Unit Tests")
+class FacetIndexTest {
+
+    @Nested
+    @DisplayName("RoaringBitmap")
+    class BitmapTests {
+
+        @Test
+        @DisplayName("add, contains and remove across chunks")
+        void basics() {
+            RoaringBitmap bm = new RoaringBitmap();
+            bm.add(7);
+            bm.add(70_000);
+            bm.add(7);
+            assertThat(bm.cardinality()).isEqualTo(2);
+            assertThat(bm.contains(70_000)).isTrue();
+            assertThat(bm.contains(8)).isFalse();
+            bm.remove(7);
+            bm.remove(70_000);
+            assertThat(bm.isEmpty()).isTrue();
+        }
+
+        @Test
+        @DisplayName("dense chunks switch to a bitmap and back without losing values")
+        void containerConversion() {
+            RoaringBitmap bm = new RoaringBitmap();
+            for (int i = 0; i < 10_000; i += 2) bm.add(i);
+            assertThat(bm.cardinality()).isEqualTo(5_000);
+            for (int i = 0; i < 2_000; i += 2) bm.remove(i);
+            assertThat(bm.cardinality()).isEqualTo(4_000);
+            assertThat(bm.contains(2_000)).isTrue();
+            assertThat(bm.contains(1_998)).isFalse();
+        }
+
+        @Test
+        @DisplayName("intersections agree with a HashSet across container types")
+        void intersections() {
+            Random rnd = new Random(7);
+            Set<Integer> a = new HashSet<>(), b = new HashSet<>();
+            RoaringBitmap ra = new RoaringBitmap(), rb = new RoaringBitmap();
+            for (int i = 0; i < 20_000; i++) {
+                int x = rnd.nextInt(200_000);
+                a.add(x);
+                ra.add(x);
+            }
+            for (int i = 0; i < 500; i++) {
+                int y = rnd.nextInt(200_000);
+                b.add(y);
+                rb.add(y);
+            }
+            for (int i = 0; i < 6_000; i++) {
+                b.add(i);
+                rb.add(i);
+            }
+            Set<Integer> expected = new HashSet<>(a);
+            expected.retainAll(b);
+
+            assertThat(ra.andCardinality(rb)).isEqualTo(expected.size());
+            assertThat(rb.andCardinality(ra)).isEqualTo(expected.size());
+            Set<Integer> actual = new HashSet<>();
+            ra.and(rb).forEach(actual::add);
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @Nested
+    @DisplayName("Facet counts")
+    class CountTests {
+
+        private FacetIndex index;
+
+        @BeforeEach
+        void setUp() {
+            index = new FacetIndex();
+            index.upsert(new FacetIndex.FacetDocument(1, "Samsung", 10L, 124_999, true, 4.7, true));
+            index.upsert(new FacetIndex.FacetDocument(2, "Samsung", 10L, 8_999, false, 4.1, true));
+            index.upsert(new FacetIndex.FacetDocument(3, "Apple", 10L, 134_900, true, 4.8, true));
+            index.upsert(new FacetIndex.FacetDocument(4, "Nike", 20L, 4_999, true, 3.9, true));
+            index.upsert(new FacetIndex.FacetDocument(5, "Puma", 20L, 2_999, false, 4.0, false));
+        }
+
+        private RoaringBitmap ids(int... ids) {
+            RoaringBitmap bm = new RoaringBitmap();
+            for (int id : ids) bm.add(id);
+            return bm;
+        }
+
+        @Test
+        @DisplayName("counts every requested facet over the result set")
+        void counts() {
+            Map<String, Map<String, Integer>> facets =
+                    index.counts(ids(1, 2, 3), EnumSet.allOf(FacetIndex.Facet.class));
+            assertThat(facets.get("brand")).containsExactly(entry("Samsung", 2), entry("Apple", 1));
+            assertThat(facets.get("category")).containsExactly(entry("10", 3));
+            assertThat(facets.get("price")).containsExactly(entry("5000-10000", 1), entry("50000+", 2));
+            assertThat(facets.get("freeShipping")).containsOnly(entry("true", 2), entry("false", 1));
+            assertThat(facets.get("rating")).containsExactly(entry("4+", 3), entry("3+", 3),
+                    entry("2+", 3), entry("1+", 3));
+        }
+
+        @Test
+        @DisplayName("listed category members drive category-page counts")
+        void categoryMembers() {
+            assertThat(index.members(FacetIndex.Facet.CATEGORY, "20").cardinality()).isEqualTo(2);
+            RoaringBitmap members = index.listedMembers(FacetIndex.Facet.CATEGORY, "20");
+            assertThat(index.counts(members, EnumSet.of(FacetIndex.Facet.BRAND)).get("brand"))
+                    .containsExactly(entry("Nike", 1));
+        }
+
+        @Test
+        @DisplayName("updates move a product between facet values")
+        void update() {
+            index.upsert(new FacetIndex.FacetDocument(2, "Apple", 10L, 8_999, false, 4.1, true));
+            assertThat(index.counts(ids(1, 2, 3), EnumSet.of(FacetIndex.Facet.BRAND)).get("brand"))
+                    .containsExactly(entry("Apple", 2), entry("Samsung", 1));
+            index.remove(3);
+            assertThat(index.counts(ids(1, 2, 3), EnumSet.of(FacetIndex.Facet.BRAND)).get("brand"))
+                    .containsOnly(entry("Apple", 1), entry("Samsung", 1));
+        }
+
+        @Test
+        @DisplayName("parses the facets request parameter")
+        void parse() {
+            assertThat(FacetIndex.Facet.parse("brand, PRICE,bogus"))
+                    .containsExactlyInAnyOrder(FacetIndex.Facet.BRAND, FacetIndex.Facet.PRICE);
+            assertThat(FacetIndex.Facet.parse("all")).hasSize(5);
+            assertThat(FacetIndex.Facet.parse(null)).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.shopwave.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for IndexSnapshot.
+ */
+@DisplayName("IndexSnapshot Unit Tests")
+class IndexSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<IndexedProduct> sample() {
+        return List.of(
+                new IndexedProduct(1, "Samsung Galaxy S24 Ultra", "Samsung", "SGS24U-001",
+                        "Snapdragon 8 Gen 3, 200MP camera", "ram 12GB storage 256GB", 3L,
+                        124_999, true, true, 4.7, 120, 5_000, 40, 1_700_000_000_000L),
+                new IndexedProduct(2, "Plain Tee — ½ sleeve", null, null, null, null, null,
+                        499, false, false, null, 0, 0, 0, 0));
+    }
+
+    @Test
+    @DisplayName("round-trips every field, including nulls and non-ASCII text")
+    void roundTrip() throws IOException {
+        Path file = dir.resolve("index.snap");
+        IndexSnapshot.write(file, 42L, sample());
+        IndexSnapshot.Contents read = IndexSnapshot.read(file);
+        assertThat(read.watermark()).isEqualTo(42L);
+        assertThat(read.products()).containsExactlyElementsOf(sample());
+    }
+
+    @Test
+    @DisplayName("an empty catalog is a valid snapshot")
+    void empty() throws IOException {
+        Path file = dir.resolve("index.snap");
+        IndexSnapshot.write(file, 0L, List.of());
+        assertThat(IndexSnapshot.read(file).products()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("rewriting replaces the previous snapshot and leaves no temp files")
+    void atomicReplace() throws IOException {
+        Path file = dir.resolve("index.snap");
+        IndexSnapshot.write(file, 1L, sample());
+        IndexSnapshot.write(file, 2L, sample().subList(0, 1));
+        assertThat(IndexSnapshot.read(file).products()).hasSize(1);
+        try (var files = Files.list(dir)) {
+            assertThat(files).containsExactly(file);
+        }
+    }
+
+    @Test
+    @DisplayName("a flipped byte fails the checksum")
+    void corrupt() throws IOException {
+        Path file = dir.resolve("index.snap");
+        IndexSnapshot.write(file, 1L, sample());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(40);
+            int b = raf.read();
+            raf.seek(40);
+            raf.write(b ^ 0xFF);
+        }
+        assertThatThrownBy(() -> IndexSnapshot.read(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+    }
+
+    @Test
+    @DisplayName("a truncated file is rejected")
+    void truncated() throws IOException {
+        Path file = dir.resolve("index.snap");
+        IndexSnapshot.write(file, 1L, sample());
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThatThrownBy(() -> IndexSnapshot.read(file)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    @DisplayName("a snapshot from another format version is rejected")
+    void versionMismatch() throws IOException {
+        Path file = dir.resolve("index.snap");
+        IndexSnapshot.write(file, 1L, sample());
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[7] = 99;   // low byte of the version field
+        // recompute the trailing checksum so only the version differs
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        ByteBuffer.wrap(bytes).putLong(bytes.length - 8, crc.getValue());
+        Files.write(file, bytes);
+        assertThatThrownBy(() -> IndexSnapshot.read(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("version");
+    }
+
+    @Test
+    @DisplayName("a missing file surfaces as NoSuchFileException")
+    void missing() {
+        assertThatThrownBy(() -> IndexSnapshot.read(dir.resolve("nope.snap")))
+                .isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    @DisplayName("product ids the facet bitmaps can't hold are rejected, not truncated")
+    void idBeyondIntRange() {
+        assertThatThrownBy(() -> new IndexedProduct(1L << 31, "x", null, null, null, null, null,
+                1, false, true, null, 0, 0, 0, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,173 @@
+package com.shopwave.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for InvertedIndex and Tokenizer.
+ */
+@DisplayName("InvertedIndex Unit Tests")
+class InvertedIndexTest {
+
+    private static InvertedIndex.SearchDocument doc(long id, String name, String brand, String description) {
+        return new InvertedIndex.SearchDocument(id, name, brand, description, null);
+    }
+
+    private static List<Long> ids(InvertedIndex.SearchHits hits) {
+        return Arrays.stream(hits.productIds()).boxed().toList();
+    }
+
+    @Nested
+    @DisplayName("Tokenizer")
+    class TokenizerTests {
+
+        @Test
+        @DisplayName("lower-cases, splits on punctuation and drops stop words")
+        void tokenize() {
+            assertThat(Tokenizer.tokenize("The Sony WH-1000XM5, for Travel"))
+                    .containsExactly("sony", "wh", "1000xm5", "travel");
+        }
+
+        @Test
+        @DisplayName("keeps single digits but drops single letters")
+        void singleCharacters() {
+            assertThat(Tokenizer.tokenize("iPhone 5 s")).containsExactly("iphone", "5");
+        }
+
+        @Test
+        @DisplayName("handles null and blank input")
+        void blank() {
+            assertThat(Tokenizer.tokenize(null)).isEmpty();
+            assertThat(Tokenizer.tokenize("  ,. ")).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("Matching and ranking")
+    class RankingTests {
+
+        private InvertedIndex index;
+
+        @BeforeEach
+        void setUp() {
+            index = new InvertedIndex();
+            index.upsert(doc(1, "Samsung Galaxy S24", "Samsung", "Flagship phone with a great camera"));
+            index.upsert(doc(2, "Galaxy Buds", "Samsung", "Wireless earbuds"));
+            index.upsert(doc(3, "Pixel 8", "Google", "Phone with the best camera, pairs with any galaxy watch"));
+            index.upsert(new InvertedIndex.SearchDocument(4, "Running Shoes", "Nike", "Light and fast",
+                    "material mesh colour black"));
+        }
+
+        @Test
+        @DisplayName("name matches outrank description matches")
+        void fieldBoosts() {
+            List<Long> ranked = ids(index.search("galaxy", 0, 10));
+            assertThat(ranked).hasSize(3);
+            assertThat(ranked.subList(0, 2)).containsExactlyInAnyOrder(1L, 2L);
+        }
+
+        @Test
+        @DisplayName("all terms must match when some product has them all")
+        void conjunctive() {
+            InvertedIndex.SearchHits hits = index.search("phone camera samsung", 0, 10);
+            assertThat(ids(hits)).containsExactly(1L);
+            assertThat(hits.total()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("falls back to any-term matching when nothing has every term")
+        void disjunctiveFallback() {
+            assertThat(ids(index.search("earbuds pixel", 0, 10))).containsExactlyInAnyOrder(2L, 3L);
+        }
+
+        @Test
+        @DisplayName("adjacent query terms get a phrase boost")
+        void phraseBoost() {
+            index.upsert(doc(5, "Camera Phone Stand", "Generic", "Phone holder"));
+            // 3 has "best camera", 5 has "camera phone" adjacent in its name.
+            assertThat(ids(index.search("camera phone", 0, 10))).first().isEqualTo(5L);
+        }
+
+        @Test
+        @DisplayName("last token matches as a prefix")
+        void prefixOnLastToken() {
+            assertThat(ids(index.search("sams", 0, 10))).containsExactlyInAnyOrder(1L, 2L);
+            assertThat(ids(index.search("galaxy ear", 0, 10))).containsExactly(2L);
+        }
+
+        @Test
+        @DisplayName("specifications are searchable")
+        void specifications() {
+            assertThat(ids(index.search("mesh", 0, 10))).containsExactly(4L);
+        }
+
+        @Test
+        @DisplayName("unknown terms and blank queries return nothing")
+        void noMatch() {
+            assertThat(index.search("zzzz", 0, 10).total()).isZero();
+            assertThat(index.search("   ", 0, 10).total()).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("Updates and paging")
+    class MaintenanceTests {
+
+        @Test
+        @DisplayName("upsert replaces the previous text of a product")
+        void upsertReplaces() {
+            InvertedIndex index = new InvertedIndex();
+            index.upsert(doc(1, "Old Kettle", "Prestige", null));
+            index.upsert(doc(1, "New Toaster", "Prestige", null));
+            assertThat(index.search("kettle", 0, 10).total()).isZero();
+            assertThat(ids(index.search("toaster", 0, 10))).containsExactly(1L);
+            assertThat(index.size()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("removed products disappear from results")
+        void remove() {
+            InvertedIndex index = new InvertedIndex();
+            index.upsert(doc(1, "Steel Bottle", "Milton", null));
+            index.upsert(doc(2, "Glass Bottle", "Borosil", null));
+            index.remove(1);
+            assertThat(ids(index.search("bottle", 0, 10))).containsExactly(2L);
+            assertThat(index.contains(1)).isFalse();
+        }
+
+        @Test
+        @DisplayName("pages are disjoint, ordered and report the full total")
+        void paging() {
+            InvertedIndex index = new InvertedIndex();
+            for (long i = 1; i <= 95; i++) index.upsert(doc(i, "Cotton Shirt " + i, "Brand", null));
+            InvertedIndex.SearchHits first = index.search("shirt", 0, 40);
+            InvertedIndex.SearchHits third = index.search("shirt", 80, 40);
+            assertThat(first.total()).isEqualTo(95);
+            assertThat(first.productIds()).hasSize(40);
+            assertThat(third.productIds()).hasSize(15);
+            assertThat(ids(first)).doesNotContainAnyElementsOf(ids(third));
+            for (int i = 1; i < first.scores().length; i++) {
+                assertThat(first.scores()[i]).isLessThanOrEqualTo(first.scores()[i - 1]);
+            }
+        }
+
+        @Test
+        @DisplayName("results survive compaction of dead slots")
+        void compaction() {
+            InvertedIndex index = new InvertedIndex();
+            for (long i = 0; i < 5_000; i++) index.upsert(doc(i, "Widget " + i, "Acme", "gadget"));
+            for (long i = 0; i < 4_000; i++) index.remove(i);
+            for (long i = 4_000; i < 4_500; i++) index.upsert(doc(i, "Widget " + i, "Acme", "gizmo"));
+            assertThat(index.size()).isEqualTo(1_000);
+            assertThat(index.search("gadget", 0, 10).total()).isEqualTo(500);
+            assertThat(index.search("gizmo", 0, 10).total()).isEqualTo(500);
+            assertThat(ids(index.search("widget 4999", 0, 1))).containsExactly(4999L);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.shopwave.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for RecentIdRing.
+ */
+@DisplayName("RecentIdRing Unit Tests")
+class RecentIdRingTest {
+
+    @Test
+    @DisplayName("keeps the newest ids first and drops the oldest past capacity")
+    void wrapsAround() {
+        RecentIdRing ring = new RecentIdRing(3);
+        for (long id = 1; id <= 5; id++) ring.push(id);
+        assertThat(ring.newestFirst()).containsExactly(5, 4, 3);
+        assertThat(ring.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("seeing an id again moves it to the front without duplicating it")
+    void moveToFront() {
+        RecentIdRing ring = new RecentIdRing(4);
+        ring.push(1);
+        ring.push(2);
+        ring.push(3);
+        ring.push(1);
+        assertThat(ring.newestFirst()).containsExactly(1, 3, 2);
+        ring.push(1);
+        assertThat(ring.newestFirst()).containsExactly(1, 3, 2);
+    }
+
+    @Test
+    @DisplayName("remove closes the gap and frees a slot")
+    void remove() {
+        RecentIdRing ring = new RecentIdRing(3);
+        ring.push(1);
+        ring.push(2);
+        ring.push(3);
+        assertThat(ring.remove(2)).isTrue();
+        assertThat(ring.remove(9)).isFalse();
+        assertThat(ring.newestFirst()).containsExactly(3, 1);
+        ring.push(4);
+        assertThat(ring.newestFirst()).containsExactly(4, 3, 1);
+    }
+
+    @Test
+    @DisplayName("random pushes and removes agree with a move-to-front list")
+    void randomAgainstNaive() {
+        Random rnd = new Random(5);
+        RecentIdRing ring = new RecentIdRing(7);
+        LinkedList<Long> naive = new LinkedList<>();
+        for (int i = 0; i < 10_000; i++) {
+            long id = rnd.nextInt(15);
+            if (rnd.nextInt(6) == 0) {
+                assertThat(ring.remove(id)).isEqualTo(naive.remove(id));
+            } else {
+                ring.push(id);
+                naive.remove(id);
+                naive.addFirst(id);
+                if (naive.size() > 7) naive.removeLast();
+            }
+            assertThat(ring.newestFirst()).containsExactly(naive.stream().mapToLong(Long::longValue).toArray());
+        }
+    }
+}
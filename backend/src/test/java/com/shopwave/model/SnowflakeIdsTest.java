@@ -0,0 +1,109 @@
+package com.shopwave.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("SnowflakeIds Unit Tests")
+class SnowflakeIdsTest {
+
+    private static final long T0 = SnowflakeIds.EPOCH + 1_000_000;
+
+    @Test
+    @DisplayName("ids carry their millisecond and node")
+    void layout() {
+        SnowflakeIds ids = new SnowflakeIds(37, () -> T0);
+        long id = ids.nextId();
+        assertThat(id).isPositive();
+        assertThat(SnowflakeIds.timestamp(id)).isEqualTo(T0);
+        assertThat(SnowflakeIds.node(id)).isEqualTo(37);
+        assertThatThrownBy(() -> new SnowflakeIds(1024, () -> T0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("concurrent issuance is unique and increasing per thread")
+    void concurrentUnique() throws InterruptedException {
+        SnowflakeIds ids = new SnowflakeIds(1, System::currentTimeMillis);
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                long prev = 0;
+                for (int i = 0; i < 50_000; i++) {
+                    long id = ids.nextId();
+                    assertThat(id).isGreaterThan(prev);
+                    seen.add(id);
+                    prev = id;
+                }
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(seen).hasSize(400_000);
+    }
+
+    @Test
+    @DisplayName("a burst beyond the sequence or a clock step back borrows the next millisecond")
+    void neverGoesBackwards() {
+        AtomicLong clock = new AtomicLong(T0);
+        SnowflakeIds ids = new SnowflakeIds(5, clock::get);
+        long prev = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long id = ids.nextId();
+            assertThat(id).isGreaterThan(prev);
+            prev = id;
+        }
+        assertThat(SnowflakeIds.timestamp(prev)).isGreaterThan(T0);
+
+        clock.set(T0 - 5_000);
+        assertThat(ids.nextId()).isGreaterThan(prev);
+    }
+
+    @Test
+    @DisplayName("order numbers are 13 base32 characters sorting in issue order")
+    void orderNumbers() {
+        AtomicLong clock = new AtomicLong(T0);
+        SnowflakeIds ids = new SnowflakeIds(900, clock::get);
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            clock.addAndGet(i % 3);
+            numbers.add(ids.nextOrderNumber());
+        }
+        assertThat(numbers).isSorted();
+        assertThat(numbers.get(0)).matches("SW-[0-9A-HJKMNP-TV-Z]{13}");
+
+        long id = ids.nextId();
+        assertThat(SnowflakeIds.decode(SnowflakeIds.encode(id))).isEqualTo(id);
+        assertThat(SnowflakeIds.decode(SnowflakeIds.encode(Long.MAX_VALUE))).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    @DisplayName("typed order numbers are canonicalised; other strings pass through")
+    void canonical() {
+        String number = SnowflakeIds.orderNumber(0x123456789ABCDEFL);
+        String typed = number.toLowerCase().replace('0', 'o').replace('1', 'l');
+        assertThat(SnowflakeIds.canonicalOrderNumber(typed)).isEqualTo(number);
+        assertThat(SnowflakeIds.canonicalOrderNumber("SW-1A2B3C4D")).isEqualTo("SW-1A2B3C4D");
+        assertThat(SnowflakeIds.canonicalOrderNumber("SW-UUUUUUUUUUUUU")).isEqualTo("SW-UUUUUUUUUUUUU");
+    }
+
+    @Test
+    @DisplayName("host names spread over the node range")
+    void nodeFromHostName() {
+        Set<Integer> nodes = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            int node = SnowflakeIds.nodeFor("shopwave-backend-7d9f8c6b5-" + Integer.toString(i * 7919, 36));
+            assertThat(node).isBetween(0, SnowflakeIds.MAX_NODE);
+            nodes.add(node);
+        }
+        assertThat(nodes.size()).isGreaterThan(150);
+    }
+}
@@ -0,0 +1,107 @@
+package com.shopwave.repository;
+
+import com.shopwave.exception.BadRequestException;
+import com.shopwave.model.Category;
+import com.shopwave.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Keyset paging against H2 (profile = "test").
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@DisplayName("ProductSeekRepository Tests")
+class ProductSeekRepositoryTest {
+
+    @Autowired private ProductRepository productRepository;
+    @Autowired private CategoryRepository categoryRepository;
+
+    private Category phones;
+    private Category shoes;
+
+    @BeforeEach
+    void setUp() {
+        phones = categoryRepository.save(category("Phones", "phones"));
+        shoes = categoryRepository.save(category("Shoes", "shoes"));
+        // Duplicate prices and missing ratings exercise the id tie-break and the coalesce
+        save("Pixel 8", "59999.00", 4.6, phones, true);
+        save("iPhone 15", "79900.00", null, phones, true);
+        save("Galaxy A55", "39999.00", 4.2, phones, true);
+        save("Moto G84", "19999.00", 4.2, phones, true);
+        save("Nokia 105", "1299.00", 3.1, phones, false);
+        save("Redmi 13C", "19999.00", null, phones, true);
+        save("Air Max 90", "12995.00", 4.5, shoes, true);
+    }
+
+    private static Category category(String name, String slug) {
+        Category c = new Category();
+        c.setName(name);
+        c.setSlug(slug);
+        return c;
+    }
+
+    private void save(String name, String price, Double rating, Category category, boolean active) {
+        productRepository.save(Product.builder()
+                .name(name)
+                .price(new BigDecimal(price))
+                .averageRating(rating)
+                .category(category)
+                .isActive(active)
+                .status(active ? Product.ProductStatus.ACTIVE : Product.ProductStatus.INACTIVE)
+                .build());
+    }
+
+    /** Walks every slice through encoded tokens, as a client would. */
+    private List<String> walk(ProductCursor.SortKey key, boolean ascending, Long categoryId, int pageSize) {
+        List<String> names = new ArrayList<>();
+        ProductCursor cursor = ProductCursor.first(key, ascending);
+        while (true) {
+            List<Product> page = productRepository.seekActive(cursor, categoryId, pageSize);
+            page.forEach(p -> names.add(p.getName()));
+            if (page.size() < pageSize) return names;
+            cursor = ProductCursor.decode(cursor.after(page.get(page.size() - 1)).encode());
+        }
+    }
+
+    @Test
+    @DisplayName("price pages match a single sorted read, ties broken by id")
+    void priceAscending() {
+        assertThat(walk(ProductCursor.SortKey.PRICE, true, null, 2)).containsExactly(
+                "Air Max 90", "Moto G84", "Redmi 13C", "Galaxy A55", "Pixel 8", "iPhone 15");
+    }
+
+    @Test
+    @DisplayName("descending rating treats unrated as 0 and stays within the category")
+    void ratingDescendingInCategory() {
+        assertThat(walk(ProductCursor.SortKey.AVERAGE_RATING, false, phones.getId(), 2)).containsExactly(
+                "Pixel 8", "Moto G84", "Galaxy A55", "Redmi 13C", "iPhone 15");
+    }
+
+    @Test
+    @DisplayName("name keys containing the separator survive the token")
+    void nameWithColon() {
+        save("Case: clear", "499.00", null, phones, true);
+        assertThat(walk(ProductCursor.SortKey.NAME, true, phones.getId(), 1)).startsWith("Case: clear", "Galaxy A55");
+    }
+
+    @Test
+    @DisplayName("tampered tokens are rejected")
+    void badCursor() {
+        assertThatThrownBy(() -> ProductCursor.decode("not-a-cursor")).isInstanceOf(BadRequestException.class);
+        String wrongKey = java.util.Base64.getUrlEncoder().encodeToString("1:price:a:7:abc".getBytes());
+        assertThatThrownBy(() -> ProductCursor.decode(wrongKey)).isInstanceOf(BadRequestException.class);
+    }
+}
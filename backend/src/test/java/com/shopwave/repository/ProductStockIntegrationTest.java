@@ -0,0 +1,108 @@
+package com.shopwave.repository;
+
+import com.shopwave.ShopWaveApplication;
+import com.shopwave.model.Product;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * The set-based stock statements against a real Postgres server; they use
+ * unnest and a data-modifying CTE, which H2 doesn't run. Enabled only when
+ * SHOPWAVE_PG_URL (plus SHOPWAVE_PG_USER / SHOPWAVE_PG_PASSWORD) points at
+ * a scratch database.
+ */
+@EnabledIfEnvironmentVariable(named = "SHOPWAVE_PG_URL", matches = "jdbc:postgresql:.+")
+@DisplayName("ProductStockRepository Integration Tests")
+class ProductStockIntegrationTest {
+
+    private static ConfigurableApplicationContext context;
+    private static ProductRepository products;
+    private static TransactionTemplate tx;
+
+    @BeforeAll
+    static void start() {
+        context = new SpringApplicationBuilder(ShopWaveApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + System.getenv("SHOPWAVE_PG_URL"),
+                "--spring.datasource.username=" + System.getenv().getOrDefault("SHOPWAVE_PG_USER", "postgres"),
+                "--spring.datasource.password=" + System.getenv().getOrDefault("SHOPWAVE_PG_PASSWORD", ""),
+                "--jwt.secret=test-jwt-secret-at-least-32-characters-long",
+                "--search.snapshot.enabled=false",
+                "--invalidation.bus.enabled=false");
+        products = context.getBean(ProductRepository.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @AfterAll
+    static void stop() {
+        if (context != null) context.close();
+    }
+
+    private static int stock(long id) {
+        return products.findById(id).map(Product::getStock).orElseThrow();
+    }
+
+    private static long[] twoInStock() {
+        return products.findAll(PageRequest.of(0, 50)).stream()
+                .filter(p -> p.getStock() != null && p.getStock() >= 2)
+                .mapToLong(Product::getId).limit(2).toArray();
+    }
+
+    @Test
+    @DisplayName("one short line leaves every line untouched and is reported")
+    void allOrNothing() {
+        long[] ids = twoInStock();
+        int a = stock(ids[0]), b = stock(ids[1]);
+
+        List<Long> shortIds = tx.execute(s -> products.decrementStock(Map.of(ids[0], 1, ids[1], b + 1)));
+        assertThat(shortIds).containsExactly(ids[1]);
+        assertThat(stock(ids[0])).isEqualTo(a);
+        assertThat(stock(ids[1])).isEqualTo(b);
+
+        List<Long> none = tx.execute(s -> products.decrementStock(Map.of(ids[0], 1, ids[1], 2)));
+        assertThat(none).isEmpty();
+        assertThat(stock(ids[0])).isEqualTo(a - 1);
+        assertThat(stock(ids[1])).isEqualTo(b - 2);
+
+        Integer restored = tx.execute(s -> products.incrementStock(Map.of(ids[0], 1, ids[1], 2)));
+        assertThat(restored).isEqualTo(2);
+        assertThat(stock(ids[1])).isEqualTo(b);
+    }
+
+    @Test
+    @DisplayName("checkouts naming the same products in opposite order queue instead of deadlocking")
+    void noDeadlock() throws Exception {
+        long[] ids = twoInStock();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                Map<Long, Integer> lines = new LinkedHashMap<>();
+                lines.put(ids[i % 2], 1);
+                lines.put(ids[1 - i % 2], 1);
+                results.add(pool.submit(() -> tx.execute(s -> {
+                    List<Long> r = products.decrementStock(lines);
+                    try { Thread.sleep(20); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                    s.setRollbackOnly();
+                    return r;
+                })));
+            }
+            for (Future<List<Long>> f : results) assertThat(f.get(30, TimeUnit.SECONDS)).isEmpty();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.shopwave.repository;
+
+import com.shopwave.config.HibernateCacheConfig;
+import com.shopwave.model.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Second-level cache behaviour, measured with Hibernate statistics. Each
+ * repository call runs in its own transaction and session, as requests do.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // Every region must come from HibernateCacheConfig
+        "spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy=fail"})
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(HibernateCacheConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Second-level Cache Tests")
+class SecondLevelCacheTest {
+
+    @Autowired private CartRepository cartRepository;
+    @Autowired private CouponRepository couponRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private Statistics stats;
+    private Category category;
+    private User user;
+    private Product product;
+    private Coupon coupon;
+
+    @BeforeEach
+    void setUp() {
+        category = categoryRepository.save(new Category("Phones", "phones"));
+        product = productRepository.save(Product.builder()
+                .name("Pixel 8").price(new BigDecimal("59999.00")).stock(10).category(category).build());
+        user = userRepository.save(User.builder()
+                .email("buyer@shopwave.local").password("x").firstName("Buyer").build());
+        Cart cart = Cart.builder().user(user).build();
+        cart.addItem(CartItem.builder().product(product).quantity(1).unitPrice(product.getPrice()).build());
+        cartRepository.save(cart);
+        coupon = new Coupon();
+        coupon.setCode("SAVE10");
+        coupon.setDiscountType(Coupon.DiscountType.PERCENTAGE);
+        coupon.setDiscountValue(BigDecimal.TEN);
+        coupon.setActive(true);
+        coupon = couponRepository.save(coupon);
+
+        entityManagerFactory.getCache().evictAll();
+        stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartRepository.deleteAll();
+        couponRepository.deleteAll();
+        userRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    /** What a cart view followed by checkout reads: the cart, then the coupon by code. */
+    private void cartAndCheckoutReads() {
+        Cart cart = cartRepository.findByUserId(user.getId()).orElseThrow();
+        assertThat(cart.getItems().get(0).getProduct().getCategory().getName()).isEqualTo("Phones");
+        assertThat(couponRepository.findByCodeAndActiveTrue("SAVE10")).isPresent();
+    }
+
+    @Test
+    @DisplayName("a repeated cart and checkout flow re-selects neither category nor coupon")
+    void repeatedFlowHitsCache() {
+        cartAndCheckoutReads();
+        long categoryLoads = stats.getEntityStatistics(Category.class.getName()).getLoadCount();
+        long couponLoads = stats.getEntityStatistics(Coupon.class.getName()).getLoadCount();
+        assertThat(categoryLoads).isEqualTo(1);
+        assertThat(couponLoads).isEqualTo(1);
+
+        long statements = stats.getPrepareStatementCount();
+        long naturalIdHits = stats.getNaturalIdCacheHitCount();
+        cartAndCheckoutReads();
+        cartAndCheckoutReads();
+
+        assertThat(stats.getEntityStatistics(Category.class.getName()).getLoadCount()).isEqualTo(categoryLoads);
+        assertThat(stats.getEntityStatistics(Coupon.class.getName()).getLoadCount()).isEqualTo(couponLoads);
+        assertThat(stats.getNaturalIdCacheHitCount() - naturalIdHits).isEqualTo(2);
+        // Only the cart query and its (uncached) eager user still go to the database
+        assertThat(stats.getPrepareStatementCount() - statements).isEqualTo(2 * 2);
+    }
+
+    @Test
+    @DisplayName("counter updates evict only their own row and are visible on the next read")
+    void counterUpdatesEvictOneRow() {
+        productRepository.findById(product.getId());
+        cartAndCheckoutReads();
+        jakarta.persistence.Cache cache = entityManagerFactory.getCache();
+        assertThat(cache.contains(Product.class, product.getId())).isTrue();
+        assertThat(cache.contains(Coupon.class, coupon.getId())).isTrue();
+
+        assertThat(couponRepository.incrementUsedCount(coupon.getId())).isEqualTo(1);
+        assertThat(productRepository.decrementStock(product.getId(), 3)).isEqualTo(1);
+        assertThat(productRepository.decrementStock(product.getId(), 30)).isZero();
+
+        assertThat(cache.contains(Product.class, product.getId())).isFalse();
+        assertThat(cache.contains(Coupon.class, coupon.getId())).isFalse();
+        assertThat(cache.contains(Category.class, category.getId())).isTrue();
+        assertThat(couponRepository.findByCodeAndActiveTrue("SAVE10").orElseThrow().getUsedCount()).isEqualTo(1);
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("an entity write through the session updates the cached copy")
+    void entityWriteUpdatesCache() {
+        Category category = categoryRepository.findBySlug("phones").orElseThrow();
+        category.setName("Mobiles");
+        categoryRepository.save(category);
+        assertThat(categoryRepository.findBySlug("phones").orElseThrow().getName()).isEqualTo("Mobiles");
+    }
+}
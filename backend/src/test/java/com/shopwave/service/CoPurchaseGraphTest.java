@@ -0,0 +1,99 @@
+package com.shopwave.service;
+
+import com.shopwave.repository.CoPurchaseRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for CoPurchaseGraph, fed order lines directly instead of
+ * streaming them from the database.
+ */
+@DisplayName("CoPurchaseGraph Unit Tests")
+class CoPurchaseGraphTest {
+
+    private record Line(long order, long product) implements CoPurchaseRow {
+        public Long getOrderId() { return order; }
+        public Long getProductId() { return product; }
+    }
+
+    // min-weight 2, max-degree 2, baskets capped at 3 distinct products, direct neighbours only
+    private final CoPurchaseGraph graph =
+            new CoPurchaseGraph(null, null, 2, 2, 3, Duration.ofHours(6), Duration.ofSeconds(30), 1);
+
+    private static Iterator<CoPurchaseRow> lines(long[]... orderProduct) {
+        List<CoPurchaseRow> rows = new ArrayList<>();
+        for (long[] op : orderProduct) rows.add(new Line(op[0], op[1]));
+        return rows.iterator();
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("groups consecutive lines into baskets and ranks pairs by how often they co-occur")
+    void buildsWeightedEdges() {
+        graph.rebuild(lines(
+            new long[]{1, 10}, new long[]{1, 20}, new long[]{1, 30},
+            new long[]{2, 10}, new long[]{2, 20},
+            new long[]{3, 10}, new long[]{3, 30}, new long[]{3, 10},
+            new long[]{4, 10}, new long[]{4, 20}));
+        assertThat(graph.related(10, 5, id -> true)).containsExactly(20L, 30L);
+        assertThat(graph.related(20, 5, id -> true)).containsExactly(10L);
+        assertThat(graph.related(10, 5, id -> id != 20L)).containsExactly(30L);
+        assertThat(graph.related(99, 5, id -> true)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("prunes pairs below the minimum weight and beyond the degree cap, and caps basket size")
+    void prunesLongTail() {
+        List<long[]> rows = new ArrayList<>();
+        long order = 0;
+        for (long other : new long[]{2, 3, 4}) {
+            for (int i = 0; i < (int) other; i++) {
+                rows.add(new long[]{++order, 1});
+                rows.add(new long[]{order, other});
+            }
+        }
+        rows.add(new long[]{++order, 1});
+        rows.add(new long[]{order, 5});                        // once: below min-weight
+        for (int i = 0; i < 2; i++) {                          // 4th distinct item is past the cap
+            rows.add(new long[]{++order, 6});
+            rows.add(new long[]{order, 7});
+            rows.add(new long[]{order, 8});
+            rows.add(new long[]{order, 9});
+        }
+        graph.rebuild(lines(rows.toArray(long[][]::new)));
+
+        assertThat(graph.related(1, 10, id -> true)).containsExactly(4L, 3L);
+        assertThat(graph.related(2, 10, id -> true)).containsExactly(1L);
+        assertThat(graph.related(6, 10, id -> true)).containsExactly(7L, 8L);
+        assertThat(graph.related(9, 10, id -> true)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("placed orders are added after their transaction commits and seen from the next snapshot")
+    void incrementalAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        graph.recordOrder(List.of(1L, 2L));
+        graph.recordOrder(List.of(1L, 2L));
+        graph.publishIfDirty();
+        assertThat(graph.related(1, 5, id -> true)).isEmpty();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(graph.related(1, 5, id -> true)).isEmpty();
+        graph.publishIfDirty();
+        assertThat(graph.related(1, 5, id -> true)).containsExactly(2L);
+    }
+}
@@ -0,0 +1,127 @@
+package com.shopwave.service;
+
+import com.shopwave.event.InvalidationBus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Single-SKU checkout throughput against the shard count. Opt-in:
+ * {@code mvn test -Dtest=HotStockBenchmarkTest -Dshopwave.benchmark=true}.
+ *
+ * Buyers reserve one unit at a time from one product. The products row
+ * lock behind a lease refill is modelled as a {@value #ROW_LOCK_MICROS} µs
+ * critical section shared by all buyers. A refill leases one chunk per
+ * shard, so the chunk is scaled down as shards go up: every run leases
+ * {@value #LEASE_PER_REFILL} units per refill, and what differs is only
+ * contention on the in-memory counters. That contention needs cores to
+ * show: on a machine with few of them the runs come out about even, so
+ * the test reports the ratio to one shard rather than asserting one.
+ *
+ * {@link #counterContention} takes the database out altogether: the lease
+ * is big enough that no run refills, so only the compare-and-set on the
+ * shard counters is measured. With at least {@value #MIN_CORES} cores it
+ * asserts that spreading a hot product over shards pays off.
+ */
+@EnabledIfSystemProperty(named = "shopwave.benchmark", matches = "true")
+@DisplayName("Hot-item stock benchmark")
+class HotStockBenchmarkTest {
+
+    private static final int BUYERS = 16;
+    private static final long ROW_LOCK_MICROS = 500;
+    private static final Duration RUN = Duration.ofSeconds(2);
+    private static final int LEASE_PER_REFILL = 3_200;
+    private static final int MIN_CORES = 8;
+
+    /** Table model whose refill holds the "row lock" for a fixed time. */
+    static class SlowRow extends InventoryEngineTest.TableModel {
+        @Override
+        public synchronized Pool lockPool(long productId) {
+            long until = System.nanoTime() + ROW_LOCK_MICROS * 1_000;
+            while (System.nanoTime() < until) Thread.onSpinWait();
+            return super.lockPool(productId);
+        }
+    }
+
+    @Test
+    @DisplayName("checkout throughput for one SKU by shard count, at equal lease size")
+    void throughputByShards() throws InterruptedException {
+        System.out.printf("%n%d cores%n%-8s %14s %10s %8s%n",
+            Runtime.getRuntime().availableProcessors(), "shards", "orders/s", "refills", "vs 1");
+        long baseline = 0;
+        for (int shards : new int[] {1, 2, 4, 8, 16, 32}) {
+            SlowRow tables = new SlowRow();
+            tables.stock.put(1L, Integer.MAX_VALUE / 2);
+            tables.shards.put(1L, shards);
+            tables.register("bench");
+            InventoryEngine engine = new InventoryEngine(tables, new InvalidationBus(null, null, null, null),
+                new InventoryEngineTest.InlineTransactions(), true, "bench", LEASE_PER_REFILL / shards,
+                Duration.ofSeconds(1), Duration.ofMinutes(2), Duration.ofSeconds(60));
+
+            long perSecond = run(engine);
+            if (shards == 1) baseline = perSecond;
+            System.out.printf("%-8d %14d %10d %7.2fx%n", shards, perSecond, tables.refills,
+                (double) perSecond / baseline);
+            assertThat(tables.leased(1L)).isLessThanOrEqualTo(tables.stock.get(1L));
+            assertThat(tables.leased(1L)).isEqualTo((long) tables.refills * LEASE_PER_REFILL);
+        }
+        assertThat(baseline).isPositive();
+    }
+
+    @Test
+    @DisplayName("CAS contention on one SKU's counters, 1 shard vs N, no refills")
+    void counterContention() throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%n%d cores, %d buyers, in-memory counters only%n%-8s %14s %8s%n",
+            cores, BUYERS, "shards", "orders/s", "vs 1");
+        long baseline = 0, best = 0;
+        for (int shards : new int[] {1, 4, 16, 64}) {
+            InventoryEngineTest.TableModel tables = new InventoryEngineTest.TableModel();
+            tables.stock.put(1L, Integer.MAX_VALUE / 2);
+            tables.shards.put(1L, shards);
+            tables.register("bench");
+            InventoryEngine engine = new InventoryEngine(tables, new InvalidationBus(null, null, null, null),
+                new InventoryEngineTest.InlineTransactions(), true, "bench", Integer.MAX_VALUE / 8 / shards,
+                Duration.ofSeconds(1), Duration.ofMinutes(2), Duration.ofSeconds(60));
+            engine.reserve(Map.of(1L, 1));                 // the one refill, before the clock starts
+
+            long perSecond = run(engine);
+            if (shards == 1) baseline = perSecond;
+            else best = Math.max(best, perSecond);
+            System.out.printf("%-8d %14d %7.2fx%n", shards, perSecond, (double) perSecond / baseline);
+            assertThat(tables.refills).isEqualTo(1);
+        }
+        if (cores >= MIN_CORES) assertThat(best).isGreaterThan(baseline * 3 / 2);
+    }
+
+    private static long run(InventoryEngine engine) throws InterruptedException {
+        LongAdder sold = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] end = new long[1];
+        Thread[] buyers = new Thread[BUYERS];
+        for (int t = 0; t < BUYERS; t++) {
+            buyers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < end[0]) {
+                    if (engine.reserve(Map.of(1L, 1)).isComplete()) sold.increment();
+                }
+            });
+            buyers[t].start();
+        }
+        end[0] = System.nanoTime() + RUN.toNanos();
+        start.countDown();
+        for (Thread b : buyers) b.join();
+        return sold.sum() * 1_000 / RUN.toMillis();
+    }
+}
@@ -0,0 +1,237 @@
+package com.shopwave.service;
+
+import com.shopwave.repository.IdempotencyRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for IdempotencyStore against an in-memory idempotency_keys
+ * table, which two store instances can share like two replicas, and a
+ * transaction manager that records what happened inside a transaction.
+ */
+@DisplayName("IdempotencyStore Unit Tests")
+class IdempotencyStoreTest {
+
+    static class KeyTable extends IdempotencyRepository {
+        final Map<ByteBuffer, Row> rows = new ConcurrentHashMap<>();
+        final Map<ByteBuffer, ByteBuffer> tokens = new ConcurrentHashMap<>();
+        final Transactions transactions;
+        int completedInTransaction;
+
+        KeyTable(Transactions transactions) {
+            super(null);
+            this.transactions = transactions;
+        }
+
+        @Override
+        public boolean claim(byte[] keyHash, byte[] fingerprint, byte[] token, Duration lock, Duration ttl) {
+            boolean claimed = rows.putIfAbsent(ByteBuffer.wrap(keyHash), new Row(fingerprint, null, null, null, null)) == null;
+            if (claimed) tokens.put(ByteBuffer.wrap(keyHash), ByteBuffer.wrap(token));
+            return claimed;
+        }
+
+        /** What another instance does once this one's lock lapsed. */
+        void takeOver(byte[] keyHash) {
+            tokens.put(ByteBuffer.wrap(keyHash), ByteBuffer.wrap(new byte[] {42}));
+        }
+
+        private boolean holds(byte[] keyHash, byte[] token) {
+            return ByteBuffer.wrap(token).equals(tokens.get(ByteBuffer.wrap(keyHash)));
+        }
+
+        @Override
+        public Row find(byte[] keyHash) {
+            return rows.get(ByteBuffer.wrap(keyHash));
+        }
+
+        @Override
+        public boolean complete(byte[] keyHash, byte[] token, int status, String contentType, String location, byte[] body) {
+            if (!holds(keyHash, token)) return false;
+            if (transactions.active) completedInTransaction++;
+            rows.computeIfPresent(ByteBuffer.wrap(keyHash),
+                (k, r) -> new Row(r.fingerprint(), status, contentType, location, body));
+            return true;
+        }
+
+        @Override
+        public void release(byte[] keyHash, byte[] token) {
+            if (holds(keyHash, token)) rows.computeIfPresent(ByteBuffer.wrap(keyHash), (k, r) -> r.status() == null ? null : r);
+        }
+
+        @Override
+        public int purgeExpired() {
+            return 0;
+        }
+    }
+
+    static class Transactions implements PlatformTransactionManager {
+        volatile boolean active;
+        final AtomicInteger commits = new AtomicInteger();
+        final AtomicInteger rollbacks = new AtomicInteger();
+
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            active = true;
+            return new SimpleTransactionStatus();
+        }
+
+        public void commit(TransactionStatus status) {
+            active = false;
+            if (status.isRollbackOnly()) rollbacks.incrementAndGet();
+            else commits.incrementAndGet();
+        }
+
+        public void rollback(TransactionStatus status) {
+            active = false;
+            rollbacks.incrementAndGet();
+        }
+    }
+
+    private final Transactions transactions = new Transactions();
+    private final KeyTable table = new KeyTable(transactions);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private IdempotencyStore store(Duration wait) {
+        return new IdempotencyStore(table, transactions, Duration.ofHours(24), Duration.ofSeconds(30), wait,
+            DataSize.ofMegabytes(1));
+    }
+
+    private IdempotencyStore.StoredResponse created(String body) {
+        executions.incrementAndGet();
+        return new IdempotencyStore.StoredResponse(201, "application/json", null, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("a retry gets the stored response without executing again")
+    void replays() {
+        IdempotencyStore store = store(Duration.ofSeconds(1));
+        IdempotencyStore.Outcome first = store.execute("u\n/orders\nk1", bytes("{}"), () -> created("order 1"));
+        IdempotencyStore.Outcome retry = store.execute("u\n/orders\nk1", bytes("{}"), () -> created("order 2"));
+
+        assertThat(first.replayed()).isFalse();
+        assertThat(retry.replayed()).isTrue();
+        assertThat(retry.response().body()).isEqualTo(bytes("order 1"));
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("another instance replays from the table")
+    void replaysAcrossInstances() {
+        store(Duration.ofSeconds(1)).execute("k", bytes("{}"), () -> created("order 1"));
+        IdempotencyStore.Outcome retry = store(Duration.ofSeconds(1)).execute("k", bytes("{}"), () -> created("order 2"));
+
+        assertThat(retry.replayed()).isTrue();
+        assertThat(retry.response().status()).isEqualTo(201);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("in-flight duplicates wait for the first execution instead of racing it")
+    void duplicatesWait() throws Exception {
+        IdempotencyStore store = store(Duration.ofSeconds(5));
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        List<Future<IdempotencyStore.Outcome>> outcomes = new ArrayList<>();
+        outcomes.add(pool.submit(() -> store.execute("k", bytes("{}"), () -> {
+            running.countDown();
+            release.await();
+            return created("order 1");
+        })));
+        running.await();
+        for (int i = 0; i < 5; i++) {
+            outcomes.add(pool.submit(() -> store.execute("k", bytes("{}"), () -> created("duplicate"))));
+        }
+        Thread.sleep(50);
+        release.countDown();
+
+        for (Future<IdempotencyStore.Outcome> f : outcomes) {
+            assertThat(f.get(5, TimeUnit.SECONDS).response().body()).isEqualTo(bytes("order 1"));
+        }
+        assertThat(executions).hasValue(1);
+        pool.shutdown();
+    }
+
+    @Test
+    @DisplayName("a duplicate still executing elsewhere past the wait is reported, not run")
+    void inProgressElsewhere() {
+        store(Duration.ofSeconds(1));
+        table.claim(IdempotencyStore.sha256(bytes("k")), IdempotencyStore.sha256(bytes("{}")), new byte[] {1}, null, null);
+
+        assertThatThrownBy(() -> store(Duration.ofMillis(120)).execute("k", bytes("{}"), () -> created("twice")))
+            .isInstanceOf(IdempotencyStore.InProgressException.class);
+        assertThat(executions).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("a failed or non-2xx first attempt is not stored, so the retry runs")
+    void failuresAreNotStored() {
+        IdempotencyStore store = store(Duration.ofSeconds(1));
+        assertThatThrownBy(() -> store.execute("k", bytes("{}"), () -> {
+            throw new IllegalStateException("database down");
+        })).isInstanceOf(IllegalStateException.class);
+        IdempotencyStore.Outcome rejected = store.execute("k", bytes("{}"),
+            () -> new IdempotencyStore.StoredResponse(500, "application/json", null, bytes("{}")));
+        IdempotencyStore.Outcome retry = store.execute("k", bytes("{}"), () -> created("order 1"));
+
+        assertThat(rejected.replayed()).isFalse();
+        assertThat(retry.replayed()).isFalse();
+        assertThat(retry.response().status()).isEqualTo(201);
+        assertThat(transactions.rollbacks).hasValue(2);
+        assertThat(transactions.commits).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("the response is stored in the execution's own transaction")
+    void storedWithTheExecution() {
+        store(Duration.ofSeconds(1)).execute("k", bytes("{}"), () -> created("order 1"));
+
+        assertThat(table.completedInTransaction).isEqualTo(1);
+        assertThat(transactions.commits).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("an execution whose claim was taken over rolls back instead of committing a duplicate")
+    void lostClaimRollsBack() {
+        byte[] hash = IdempotencyStore.sha256(bytes("k"));
+        assertThatThrownBy(() -> store(Duration.ofSeconds(1)).execute("k", bytes("{}"), () -> {
+            table.takeOver(hash);
+            return created("order 1");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(transactions.rollbacks).hasValue(1);
+        assertThat(transactions.commits).hasValue(0);
+        assertThat(table.find(hash).status()).isNull();    // still the other instance's claim
+    }
+
+    @Test
+    @DisplayName("the same key with a different body is rejected")
+    void keyReuse() {
+        IdempotencyStore store = store(Duration.ofSeconds(1));
+        store.execute("k", bytes("{\"quantity\":1}"), () -> created("cart"));
+
+        assertThatThrownBy(() -> store.execute("k", bytes("{\"quantity\":2}"), () -> created("cart")))
+            .isInstanceOf(IdempotencyStore.KeyReusedException.class);
+        assertThatThrownBy(() -> store(Duration.ofSeconds(1)).execute("k", bytes("{\"quantity\":2}"), () -> created("cart")))
+            .isInstanceOf(IdempotencyStore.KeyReusedException.class);
+    }
+}
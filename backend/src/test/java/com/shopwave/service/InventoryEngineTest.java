@@ -0,0 +1,330 @@
+package com.shopwave.service;
+
+import com.shopwave.event.InvalidationBus;
+import com.shopwave.repository.InventoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for InventoryEngine, against an in-memory model of the lease,
+ * journal and stock tables.
+ */
+@DisplayName("InventoryEngine Unit Tests")
+class InventoryEngineTest {
+
+    static class TableModel extends InventoryRepository {
+        final Map<Long, Integer> stock = new HashMap<>();
+        final Map<Long, Integer> shards = new HashMap<>();
+        final Map<String, Map<Long, Integer>> leases = new HashMap<>();
+        final List<Map.Entry<Long, Integer>> journal = new ArrayList<>();
+        final Set<String> holders = new HashSet<>(Set.of("test"));
+        int refills;
+
+        TableModel() {
+            super(null);
+        }
+
+        int leased(long productId) {
+            return leases.values().stream().mapToInt(m -> m.getOrDefault(productId, 0)).sum();
+        }
+
+        @Override
+        public synchronized Pool lockPool(long productId) {
+            refills++;
+            Integer s = stock.get(productId);
+            return s == null ? null : new Pool(s - leased(productId), shards.getOrDefault(productId, 1));
+        }
+
+        @Override
+        public synchronized void addLease(String holder, long productId, int units) {
+            leases.computeIfAbsent(holder, k -> new HashMap<>()).merge(productId, units, Integer::sum);
+        }
+
+        @Override
+        public synchronized void returnUnits(String holder, long productId, int units) {
+            leases.get(holder).merge(productId, -units, Integer::sum);
+        }
+
+        @Override
+        public synchronized void journal(String holder, Long orderId, Map<Long, Integer> lines) {
+            lines.forEach((id, qty) -> journal.add(Map.entry(id, qty)));
+        }
+
+        @Override
+        public synchronized List<Long> fold(Collection<String> holders) {
+            Set<Long> changed = new TreeSet<>();
+            for (Map.Entry<Long, Integer> sale : journal) {
+                stock.merge(sale.getKey(), -sale.getValue(), Integer::sum);
+                leases.computeIfAbsent("test", k -> new HashMap<>()).merge(sale.getKey(), -sale.getValue(), Integer::sum);
+                changed.add(sale.getKey());
+            }
+            journal.clear();
+            return new ArrayList<>(changed);
+        }
+
+        @Override
+        public synchronized boolean setStock(long productId, int units) {
+            if (!stock.containsKey(productId)) return false;
+            journal.removeIf(sale -> {
+                if (sale.getKey() != productId) return false;
+                leases.get("test").merge(productId, -sale.getValue(), Integer::sum);
+                return true;
+            });
+            stock.put(productId, units);
+            return true;
+        }
+
+        @Override
+        public synchronized void removeUnits(long productId, int units) {
+            stock.merge(productId, -units, Integer::sum);
+        }
+
+        /** What another instance's reclaim does: fold, return the units, drop the holder. */
+        synchronized void reclaim(String holder) {
+            fold(List.of(holder));
+            leases.remove(holder);
+            holders.remove(holder);
+        }
+
+        @Override
+        public void forget(Collection<String> holders) {}
+
+        @Override
+        public List<String> lockReclaimable(Collection<String> holders, Duration timeout) {
+            return List.copyOf(holders);
+        }
+
+        @Override
+        public synchronized void register(String holder) {
+            holders.add(holder);
+        }
+
+        @Override
+        public synchronized boolean heartbeat(String holder) {
+            return holders.contains(holder);
+        }
+
+        @Override
+        public synchronized boolean lockHolder(String holder) {
+            return holders.contains(holder);
+        }
+
+        @Override
+        public List<String> deadHolders(String self, Duration timeout) {
+            return List.of();
+        }
+    }
+
+    /** Runs callbacks inline; synchronizations are driven by the tests. */
+    static class InlineTransactions implements PlatformTransactionManager {
+        public TransactionStatus getTransaction(TransactionDefinition definition) { return new SimpleTransactionStatus(); }
+        public void commit(TransactionStatus status) {}
+        public void rollback(TransactionStatus status) {}
+    }
+
+    private final TableModel tables = new TableModel();
+    private final InventoryEngine engine = new InventoryEngine(tables, new InvalidationBus(null, null, null, null),
+            new InlineTransactions(), true, "test", 50, Duration.ofSeconds(1), Duration.ofMinutes(2), Duration.ofSeconds(60));
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("concurrent checkouts sell exactly the stock, refilling the lease in chunks")
+    void neverOversells() throws InterruptedException {
+        tables.stock.put(1L, 1_000);
+        assertThat(sellOut(1L, 8, () -> {})).isEqualTo(1_000);
+        assertThat(tables.leased(1L)).isEqualTo(1_000);
+        assertThat(tables.refills).isLessThan(100);
+    }
+
+    @Test
+    @DisplayName("a hot product sells exactly its stock across shards, leasing a chunk per shard")
+    void shardedNeverOversells() throws InterruptedException {
+        tables.stock.put(1L, 5_000);
+        tables.shards.put(1L, 8);
+        assertThat(sellOut(1L, 8, () -> {})).isEqualTo(5_000);
+        assertThat(engine.shards(1L)).isEqualTo(8);
+        assertThat(engine.available(1L)).isZero();
+        assertThat(tables.refills).isLessThan(50);
+    }
+
+    @Test
+    @DisplayName("re-sharding while buyers are taking units loses none")
+    void reshardKeepsUnits() throws InterruptedException {
+        tables.stock.put(1L, 20_000);
+        int[] counts = {16, 3, 1, 64, 2};
+        int[] next = {0};
+        int sold = sellOut(1L, 8, () -> engine.reshard(1L, counts[next[0]++ % counts.length]));
+        assertThat(sold).isEqualTo(20_000);
+        assertThat(tables.leased(1L)).isEqualTo(20_000);
+    }
+
+    @Test
+    @DisplayName("available units are the sum over shards")
+    void availableSumsShards() {
+        tables.stock.put(1L, 100);
+        tables.shards.put(1L, 4);
+        assertThat(engine.reserve(Map.of(1L, 1)).isComplete()).isTrue();
+        assertThat(engine.available(1L)).isEqualTo(tables.leased(1L) - 1);
+        engine.reshard(1L, 1);
+        assertThat(engine.available(1L)).isEqualTo(tables.leased(1L) - 1);
+        assertThat(engine.ensureAvailable(1L, 60)).isTrue();
+        assertThat(engine.ensureAvailable(1L, 101)).isFalse();
+    }
+
+    /** Buyers take one unit at a time until it runs out, while the caller's thread runs {@code meanwhile}. */
+    private int sellOut(long productId, int buyers, Runnable meanwhile) throws InterruptedException {
+        AtomicInteger sold = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(buyers);
+        for (int t = 0; t < buyers; t++) {
+            pool.execute(() -> {
+                while (engine.reserve(Map.of(productId, 1)).isComplete()) sold.incrementAndGet();
+            });
+        }
+        pool.shutdown();
+        while (!pool.awaitTermination(1, TimeUnit.MILLISECONDS)) meanwhile.run();
+        return sold.get();
+    }
+
+    @Test
+    @DisplayName("a short line takes nothing and names the product")
+    void allOrNothing() {
+        tables.stock.put(1L, 10);
+        tables.stock.put(2L, 3);
+        InventoryEngine.Reservation r = engine.reserve(Map.of(1L, 2, 2L, 5));
+        assertThat(r.isComplete()).isFalse();
+        assertThat(r.shortProductId()).isEqualTo(2L);
+        assertThat(engine.reserve(Map.of(1L, 10)).isComplete()).isTrue();
+        assertThat(engine.reserve(Map.of(99L, 1)).shortProductId()).isEqualTo(99L);
+    }
+
+    @Test
+    @DisplayName("a rolled-back order returns its units; a committed one is folded into stock")
+    void journalAndFold() {
+        tables.stock.put(1L, 10);
+        TransactionSynchronizationManager.initSynchronization();
+        InventoryEngine.Reservation rolledBack = engine.reserve(Map.of(1L, 6));
+        rolledBack.commit(1L);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+        tables.journal.clear();                    // the insert rolled back with it
+
+        TransactionSynchronizationManager.initSynchronization();
+        InventoryEngine.Reservation committed = engine.reserve(Map.of(1L, 10));
+        assertThat(committed.isComplete()).isTrue();
+        committed.commit(2L);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        committed.release();                        // no effect once committed
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThat(tables.stock.get(1L)).isEqualTo(10);
+        engine.heartbeat();
+        engine.flush();
+        assertThat(tables.stock.get(1L)).isZero();
+        assertThat(tables.leased(1L)).isZero();
+        assertThat(engine.reserve(Map.of(1L, 1)).isComplete()).isFalse();
+    }
+
+    @Test
+    @DisplayName("a counted stock value settles unfolded sales instead of losing them again")
+    void setStockSettlesJournal() {
+        tables.stock.put(1L, 100);
+        TransactionSynchronizationManager.initSynchronization();
+        engine.reserve(Map.of(1L, 30)).commit(7L);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+        assertThat(tables.journal).hasSize(1);
+
+        assertThat(engine.setStock(1L, 80)).isTrue();
+        engine.flush();
+        assertThat(tables.stock.get(1L)).isEqualTo(80);
+        assertThat(tables.leased(1L)).isEqualTo(20);  // the unsold rest of the lease
+        assertThat(engine.setStock(99L, 1)).isFalse();
+    }
+
+    @Test
+    @DisplayName("a manual reduction only takes units no instance has leased")
+    void removeStockSparesLeases() {
+        tables.stock.put(1L, 100);
+        assertThat(engine.reserve(Map.of(1L, 1)).isComplete()).isTrue();   // leases 50
+        assertThat(engine.removeStock(1L, 51)).isFalse();
+        assertThat(engine.removeStock(1L, 50)).isTrue();
+        assertThat(tables.stock.get(1L)).isEqualTo(50);
+        assertThat(engine.removeStock(1L, 1)).isFalse();
+    }
+
+    @Test
+    @DisplayName("a holder whose heartbeat lapsed stops selling until it heartbeats again")
+    void fencedWhenHeartbeatLapses() throws InterruptedException {
+        InventoryEngine fenced = new InventoryEngine(tables, new InvalidationBus(null, null, null, null),
+                new InlineTransactions(), true, "test", 50, Duration.ofSeconds(1), Duration.ofMinutes(2), Duration.ofMillis(400));
+        tables.stock.put(1L, 100);
+        assertThat(fenced.reserve(Map.of(1L, 1)).isComplete()).isTrue();
+
+        Thread.sleep(250);                          // past half the holder timeout
+        assertThat(fenced.reserve(Map.of(1L, 1)).isComplete()).isFalse();
+        assertThat(fenced.ensureAvailable(1L, 1)).isFalse();
+
+        fenced.heartbeat();
+        assertThat(fenced.reserve(Map.of(1L, 1)).isComplete()).isTrue();
+    }
+
+    @Test
+    @DisplayName("a reclaimed holder drops its units and earlier reservations can't put theirs back")
+    void reclaimedHolderStopsSellingItsLease() {
+        tables.stock.put(1L, 100);
+        InventoryEngine.Reservation inFlight = engine.reserve(Map.of(1L, 5));
+        assertThat(engine.available(1L)).isEqualTo(45);
+
+        tables.reclaim("test");                     // e.g. after a long GC pause
+        assertThat(engine.reserve(Map.of(1L, 60)).isComplete()).isFalse();   // refill refused
+        engine.heartbeat();
+        assertThat(engine.available(1L)).isZero();
+        inFlight.release();
+        assertThat(engine.available(1L)).isZero();
+
+        assertThat(sellOutSerially(1L)).isEqualTo(100);
+        assertThat(tables.leased(1L)).isEqualTo(100);
+    }
+
+    private int sellOutSerially(long productId) {
+        int sold = 0;
+        while (engine.reserve(Map.of(productId, 1)).isComplete()) sold++;
+        return sold;
+    }
+
+    @Test
+    @DisplayName("leases grow by chunks but never take more than half the free pool beyond the need")
+    void grantPolicy() {
+        assertThat(InventoryEngine.grant(1_000, 1, 50)).isEqualTo(50);
+        assertThat(InventoryEngine.grant(1_000, 80, 50)).isEqualTo(80);
+        assertThat(InventoryEngine.grant(10, 1, 50)).isEqualTo(5);
+        assertThat(InventoryEngine.grant(1, 1, 50)).isEqualTo(1);
+        assertThat(InventoryEngine.grant(3, 4, 50)).isZero();
+        assertThat(InventoryEngine.grant(-1, 1, 50)).isZero();
+    }
+}
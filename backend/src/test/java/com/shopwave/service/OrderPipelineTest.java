@@ -0,0 +1,155 @@
+package com.shopwave.service;
+
+import com.shopwave.dto.OrderRequest;
+import com.shopwave.exception.ResourceNotFoundException;
+import com.shopwave.exception.ServiceUnavailableException;
+import com.shopwave.model.Order;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for OrderPipeline batching and failure isolation, against an
+ * OrderService stand-in: "nostock@" can't be reserved, "broken@" fails
+ * inside the order transaction.
+ */
+@DisplayName("OrderPipeline Unit Tests")
+class OrderPipelineTest {
+
+    static class StubOrders extends OrderService {
+        final List<String> placed = new ArrayList<>();
+        final AtomicInteger numbers = new AtomicInteger();
+        int singles;
+
+        StubOrders() {
+            super(null, null, null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        String generateOrderNumber() {
+            return "SW-" + numbers.incrementAndGet();
+        }
+
+        @Override
+        InventoryEngine.Reservation reserve(String userEmail) {
+            if (userEmail.startsWith("nostock@")) throw new RuntimeException("Insufficient stock: Lamp");
+            return null;
+        }
+
+        @Override
+        Order placeOrder(OrderRequest request, String userEmail, String orderNumber,
+                         InventoryEngine.Reservation reservation) {
+            if (userEmail.startsWith("broken@")) throw new RuntimeException("Invalid coupon");
+            placed.add(orderNumber);
+            return Order.builder().id((long) placed.size()).orderNumber(orderNumber).build();
+        }
+
+        @Override
+        Order placeOrder(OrderRequest request, String userEmail, String orderNumber) {
+            singles++;
+            return placeOrder(request, userEmail, orderNumber, reserve(userEmail));
+        }
+
+        @Override
+        public Order getOrderByNumber(String orderNumber, String userEmail) {
+            throw new ResourceNotFoundException("Order not found: " + orderNumber);
+        }
+    }
+
+    static class CountingTransactions implements PlatformTransactionManager {
+        int commits, rollbacks;
+        public TransactionStatus getTransaction(TransactionDefinition definition) { return new SimpleTransactionStatus(); }
+        public void commit(TransactionStatus status) { commits++; }
+        public void rollback(TransactionStatus status) { rollbacks++; }
+    }
+
+    private final StubOrders orders = new StubOrders();
+    private final CountingTransactions transactions = new CountingTransactions();
+
+    private OrderPipeline pipeline(int capacity, int batchSize) {
+        return new OrderPipeline(orders, transactions, true, capacity, batchSize,
+            Duration.ofMillis(10), 1, Duration.ofMinutes(15));
+    }
+
+    @Test
+    @DisplayName("queued orders are placed in batches, one commit per batch")
+    void groupCommit() {
+        OrderPipeline pipeline = pipeline(100, 4);
+        List<OrderPipeline.Status> accepted = new ArrayList<>();
+        for (int i = 0; i < 10; i++) accepted.add(pipeline.submit(new OrderRequest(), "user" + i + "@x"));
+        assertThat(accepted).allMatch(s -> s.state() == OrderPipeline.State.QUEUED);
+
+        pipeline.processQueued();
+
+        assertThat(transactions.commits).isEqualTo(3);
+        assertThat(orders.placed).hasSize(10);
+        OrderPipeline.Status last = pipeline.status(accepted.get(9).trackingId(), "user9@x");
+        assertThat(last.state()).isEqualTo(OrderPipeline.State.PLACED);
+        assertThat(last.orderId()).isEqualTo(10L);
+    }
+
+    @Test
+    @DisplayName("a failing order rolls its batch back and only it fails when retried alone")
+    void failureIsolation() {
+        OrderPipeline pipeline = pipeline(100, 10);
+        String a = pipeline.submit(new OrderRequest(), "a@x").trackingId();
+        String broken = pipeline.submit(new OrderRequest(), "broken@x").trackingId();
+        String b = pipeline.submit(new OrderRequest(), "b@x").trackingId();
+
+        pipeline.processQueued();
+
+        assertThat(transactions.rollbacks).isEqualTo(1);
+        assertThat(orders.singles).isEqualTo(3);
+        assertThat(pipeline.status(a, "a@x").state()).isEqualTo(OrderPipeline.State.PLACED);
+        assertThat(pipeline.status(b, "b@x").state()).isEqualTo(OrderPipeline.State.PLACED);
+        OrderPipeline.Status failed = pipeline.status(broken, "broken@x");
+        assertThat(failed.state()).isEqualTo(OrderPipeline.State.FAILED);
+        assertThat(failed.error()).isEqualTo("Invalid coupon");
+    }
+
+    @Test
+    @DisplayName("an order that can't be reserved fails without touching the batch")
+    void reservationFailure() {
+        OrderPipeline pipeline = pipeline(100, 10);
+        String a = pipeline.submit(new OrderRequest(), "a@x").trackingId();
+        String lacking = pipeline.submit(new OrderRequest(), "nostock@x").trackingId();
+
+        pipeline.processQueued();
+
+        assertThat(transactions.commits).isEqualTo(1);
+        assertThat(transactions.rollbacks).isZero();
+        assertThat(pipeline.status(a, "a@x").state()).isEqualTo(OrderPipeline.State.PLACED);
+        assertThat(pipeline.status(lacking, "nostock@x").error()).isEqualTo("Insufficient stock: Lamp");
+    }
+
+    @Test
+    @DisplayName("a full queue pushes back instead of growing")
+    void backpressure() {
+        OrderPipeline pipeline = pipeline(2, 10);
+        pipeline.submit(new OrderRequest(), "a@x");
+        pipeline.submit(new OrderRequest(), "b@x");
+        assertThatThrownBy(() -> pipeline.submit(new OrderRequest(), "c@x"))
+            .isInstanceOf(ServiceUnavailableException.class);
+
+        pipeline.processQueued();
+        assertThat(pipeline.submit(new OrderRequest(), "c@x").state()).isEqualTo(OrderPipeline.State.QUEUED);
+    }
+
+    @Test
+    @DisplayName("another user's tracking id is not found")
+    void statusIsPerUser() {
+        OrderPipeline pipeline = pipeline(10, 10);
+        String id = pipeline.submit(new OrderRequest(), "a@x").trackingId();
+        assertThatThrownBy(() -> pipeline.status(id, "b@x")).isInstanceOf(ResourceNotFoundException.class);
+    }
+}
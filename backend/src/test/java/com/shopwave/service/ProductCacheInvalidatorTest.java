@@ -0,0 +1,71 @@
+package com.shopwave.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopwave.config.CacheConfig;
+import com.shopwave.event.CacheInvalidationEvent;
+import com.shopwave.model.Product;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for ProductCacheInvalidator against loading list caches like
+ * the ones CacheConfig registers.
+ */
+@DisplayName("ProductCacheInvalidator Unit Tests")
+class ProductCacheInvalidatorTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CaffeineCacheManager manager = new CaffeineCacheManager();
+    private final ProductCacheInvalidator invalidator = new ProductCacheInvalidator(manager);
+
+    ProductCacheInvalidatorTest() {
+        for (String name : List.of(CacheConfig.FEATURED_PRODUCTS, CacheConfig.BESTSELLER_PRODUCTS,
+                CacheConfig.TRENDING_PRODUCTS)) {
+            manager.registerCustomCache(name, Caffeine.newBuilder()
+                .executor(Runnable::run)
+                .build(key -> {
+                    loads.incrementAndGet();
+                    return List.of(Product.builder().id(1L).name("v" + loads.get()).build());
+                }));
+        }
+    }
+
+    private static CacheInvalidationEvent changed(long id) {
+        return new CacheInvalidationEvent(CacheInvalidationEvent.Kind.PRODUCT, Set.of(String.valueOf(id)));
+    }
+
+    @Test
+    @DisplayName("checking an absent list does not load it")
+    void absentListsStayAbsent() {
+        invalidator.onInvalidation(changed(1));
+
+        assertThat(loads).hasValue(0);
+        assertThat(((CaffeineCache) manager.getCache(CacheConfig.FEATURED_PRODUCTS)).getNativeCache().asMap()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("a list holding the product is refreshed in place, not evicted")
+    void refreshesListsHoldingTheProduct() {
+        var bestsellers = manager.getCache(CacheConfig.BESTSELLER_PRODUCTS);
+        bestsellers.get(SimpleKey.EMPTY);               // loads through the cache loader
+        assertThat(loads).hasValue(1);
+
+        invalidator.onInvalidation(changed(2));
+        assertThat(loads).hasValue(1);
+
+        invalidator.onInvalidation(changed(1));
+        assertThat(loads).hasValue(2);
+        @SuppressWarnings("unchecked")
+        List<Product> list = bestsellers.get(SimpleKey.EMPTY, List.class);
+        assertThat(list).extracting(Product::getName).containsExactly("v2");
+    }
+}
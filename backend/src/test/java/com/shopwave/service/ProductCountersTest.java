@@ -0,0 +1,132 @@
+package com.shopwave.service;
+
+import com.shopwave.config.CacheConfig;
+import com.shopwave.model.Product;
+import com.shopwave.repository.ProductCounterRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for ProductCounters, against a repository that sums what it
+ * is asked to write.
+ */
+@DisplayName("ProductCounters Unit Tests")
+class ProductCountersTest {
+
+    static class SummingRepository extends ProductCounterRepository {
+        final Map<Long, long[]> totals = new HashMap<>();
+        int statements;
+        boolean failing;
+
+        SummingRepository() {
+            super(null);
+        }
+
+        @Override
+        public int addCounts(long[] ids, long[] views, long[] sold) {
+            if (failing) throw new IllegalStateException("database down");
+            statements++;
+            for (int i = 0; i < ids.length; i++) {
+                long[] t = totals.computeIfAbsent(ids[i], k -> new long[2]);
+                t[0] += views[i];
+                t[1] += sold[i];
+            }
+            return ids.length;
+        }
+    }
+
+    private final SummingRepository repository = new SummingRepository();
+    // Half-life equal to the flush interval: each flush halves older scores
+    private final CaffeineCacheManager caches = new CaffeineCacheManager();
+    private final ProductCounters counters = new ProductCounters(repository, new ProductCacheInvalidator(caches),
+            Duration.ofHours(1), 5.0, Duration.ofHours(1));
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("concurrent views of one product add up and go out as one statement")
+    void concurrentViews() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 10_000; i++) counters.recordView(i % 2 == 0 ? 1 : 2);
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(counters.flush()).isEqualTo(2);
+        assertThat(repository.statements).isEqualTo(1);
+        assertThat(repository.totals.get(1L)[0]).isEqualTo(40_000);
+        assertThat(repository.totals.get(2L)[0]).isEqualTo(40_000);
+        assertThat(counters.flush()).isZero();
+        assertThat(repository.statements).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("a failed flush keeps its counts for the next one")
+    void failedFlushRetries() {
+        counters.recordView(1);
+        counters.recordSold(1, 3);
+        repository.failing = true;
+        assertThatThrownBy(counters::flush).isInstanceOf(IllegalStateException.class);
+        counters.recordView(1);
+        repository.failing = false;
+        counters.flush();
+        assertThat(repository.totals.get(1L)).containsExactly(2, 3);
+    }
+
+    @Test
+    @DisplayName("a flush evicts the flushed products' cached entries")
+    void flushEvictsCachedProducts() {
+        caches.getCache(CacheConfig.PRODUCTS).put(1L, Product.builder().id(1L).viewCount(0).build());
+        caches.getCache(CacheConfig.PRODUCTS).put(2L, Product.builder().id(2L).viewCount(0).build());
+        counters.recordView(1);
+        counters.flush();
+        assertThat(caches.getCache(CacheConfig.PRODUCTS).get(1L)).isNull();
+        assertThat(caches.getCache(CacheConfig.PRODUCTS).get(2L)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("sales count only once their transaction commits")
+    void soldAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        counters.recordSold(1, 2);
+        counters.flush();
+        assertThat(repository.totals).isEmpty();
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        counters.flush();
+        assertThat(repository.totals.get(1L)).containsExactly(0, 2);
+    }
+
+    @Test
+    @DisplayName("trending weighs sales over views and lets old activity decay")
+    void trending() {
+        for (int i = 0; i < 8; i++) counters.recordView(1);
+        counters.recordSold(2, 2);                       // 10 points
+        counters.recordView(3);
+        counters.flush();
+        assertThat(counters.trending(2)).containsExactly(2L, 1L);
+
+        for (int i = 0; i < 7; i++) counters.recordView(3);
+        counters.flush();                                // 1: 4, 2: 5, 3: 0.5 + 7
+        assertThat(counters.trending(3)).containsExactly(3L, 2L, 1L);
+    }
+}
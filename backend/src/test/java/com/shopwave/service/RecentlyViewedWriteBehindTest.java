@@ -0,0 +1,101 @@
+package com.shopwave.service;
+
+import com.shopwave.repository.RecentlyViewedRepository;
+import com.shopwave.repository.RecentlyViewedRepository.View;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for RecentlyViewedWriteBehind, against a repository that
+ * records what it is asked to write.
+ */
+@DisplayName("RecentlyViewedWriteBehind Unit Tests")
+class RecentlyViewedWriteBehindTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    static class RecordingRepository extends RecentlyViewedRepository {
+        final List<List<View>> batches = new CopyOnWriteArrayList<>();
+        final List<Set<Long>> trimmed = new CopyOnWriteArrayList<>();
+
+        RecordingRepository() {
+            super(null);
+        }
+
+        @Override
+        public void upsert(List<View> views) {
+            batches.add(List.copyOf(views));
+        }
+
+        @Override
+        public int trim(Collection<Long> userIds, int keep) {
+            trimmed.add(Set.copyOf(userIds));
+            return 0;
+        }
+    }
+
+    private final RecordingRepository repository = new RecordingRepository();
+    private RecentlyViewedWriteBehind writeBehind;
+
+    private RecentlyViewedWriteBehind start(int maxPending) {
+        writeBehind = new RecentlyViewedWriteBehind(repository, 20, maxPending, Duration.ofHours(1));
+        writeBehind.start();
+        return writeBehind;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writeBehind.stop();
+    }
+
+    @Test
+    @DisplayName("repeat views coalesce into one row carrying the latest time")
+    void coalesces() {
+        start(1_000);
+        writeBehind.record(1, 10, T0.plusSeconds(5));
+        writeBehind.record(1, 10, T0);
+        writeBehind.record(1, 10, T0.plusSeconds(3));
+        writeBehind.record(1, 11, T0);
+        writeBehind.record(2, 10, T0);
+        assertThat(writeBehind.pendingCount()).isEqualTo(3);
+        assertThat(writeBehind.pending(1)).containsExactlyInAnyOrder(
+                new View(1, 10, T0.plusSeconds(5)), new View(1, 11, T0));
+
+        assertThat(writeBehind.flush()).isEqualTo(3);
+        assertThat(repository.batches).hasSize(1);
+        assertThat(repository.batches.get(0)).containsExactlyInAnyOrder(
+                new View(1, 10, T0.plusSeconds(5)), new View(1, 11, T0), new View(2, 10, T0));
+        assertThat(repository.trimmed).containsExactly(Set.of(1L, 2L));
+        assertThat(writeBehind.pendingCount()).isZero();
+        assertThat(writeBehind.flush()).isZero();
+        assertThat(repository.batches).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("a full buffer is flushed in the background without waiting for the interval")
+    void earlyFlush() throws InterruptedException {
+        start(3);
+        for (long product = 1; product <= 3; product++) writeBehind.record(7, product, T0);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (repository.batches.isEmpty() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertThat(repository.batches).hasSize(1);
+        assertThat(repository.batches.get(0)).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("stopping writes out whatever is still buffered")
+    void flushOnStop() throws InterruptedException {
+        start(1_000);
+        writeBehind.record(1, 10, T0);
+        writeBehind.stop();
+        assertThat(repository.batches).containsExactly(List.of(new View(1, 10, T0)));
+    }
+}